@@ -6,15 +6,29 @@ import android.support.test.runner.AndroidJUnit4;
 
 import com.chrisdisdero.crdlog.CRDLog;
 import com.chrisdisdero.crdlog.CRDLogContentInterface;
+import com.chrisdisdero.crdlog.CRDLogFormat;
 import com.chrisdisdero.crdlog.CRDLogHeaderInterface;
+import com.chrisdisdero.crdlog.CRDLogMetrics;
+import com.chrisdisdero.crdlog.CRDLogMetricsInterface;
+import com.chrisdisdero.crdlog.CRDLogOverflowPolicy;
+import com.chrisdisdero.crdlog.CRDLogSearchHit;
+import com.chrisdisdero.crdlog.CRDLogSearchInterface;
+import com.chrisdisdero.crdlog.CRDLogSettings;
+import com.chrisdisdero.crdlog.CRDLogStreamInterface;
 import com.chrisdisdero.crdtestexpectation.CRDTestExpectation;
 import com.chrisdisdero.crdtestexpectation.CRDTestExpectationStatus;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.HashMap;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -87,6 +101,37 @@ public class CRDLogTests {
         return count;
     }
 
+    /**
+     * Reads the content of the specified file as text.
+     *
+     * @param file The {@link File} to read.
+     *
+     * @return The content of the file.
+     *
+     * @throws IOException If the file could not be read.
+     */
+    static String readFile(File file) throws IOException {
+
+        InputStream inputStream = new FileInputStream(file);
+
+        try {
+
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) > 0) {
+
+                content.write(buffer, 0, count);
+            }
+
+            return new String(content.toByteArray(), Charset.forName("UTF-8"));
+
+        } finally {
+
+            inputStream.close();
+        }
+    }
+
     //endregion
 
     //region Tests
@@ -528,5 +573,564 @@ public class CRDLogTests {
         }
     }
 
+    @Test
+    public void testRollingSegments() throws Exception {
+
+        // Expected header to be written.
+        final String expectedHeader = "Header written";
+
+        // Total number of expected entries.
+        final int expectedEntries = 500;
+
+        // Expected entry format.
+        final String expectedEntry = "Log entry %d.";
+
+        // Maximum number of segments kept.
+        final int maxSegmentCount = 3;
+
+        expectation = new CRDTestExpectation();
+
+        // Context of the app under test.
+        Context appContext = InstrumentationRegistry.getTargetContext();
+
+        // Create a new log which rolls over every 4 KB.
+        File segmentDir = new File(appContext.getFilesDir(), "segments");
+        segmentDir.mkdirs();
+        CRDLog log = new CRDLog(new File(segmentDir, "testlog.txt"), new CRDLogHeaderInterface() {
+
+            @Override
+            public String onProvideHeader() {
+
+                // Return the header.
+                return expectedHeader + "\n";
+            }
+
+        }, new CRDLogSettings().setMaxSegmentSize(4096).setMaxSegmentCount(maxSegmentCount));
+
+        // Clear the log file.
+        log.clear();
+
+        // Log info entries.
+        for (int i = 0; i < expectedEntries; i++) {
+
+            log.info(TAG, String.format(expectedEntry, i));
+        }
+
+        // Get the log contents.
+        log.get(new CRDLogContentInterface() {
+
+            @Override
+            public void onLogContent(String logContent) {
+
+                // Return the current log content and signal success.
+                expectation.put("content", logContent);
+                expectation.fulfill(CRDTestExpectationStatus.SUCCESS);
+            }
+        });
+
+        // Wait for up to 5 seconds or until signalled by the above callback onLogContent().
+        CRDTestExpectationStatus status = expectation.waitFor(defaultTestTimeout);
+        assertEquals("unexpected status", CRDTestExpectationStatus.SUCCESS, status);
+
+        // Validate that only the maximum number of segments was kept.
+        String[] segmentNames = segmentDir.list();
+        assertNotNull("no segments", segmentNames);
+        assertEquals("unexpected segment count", maxSegmentCount, segmentNames.length);
+
+        // Validate the content - there should be one header per segment, the last entry and none of the first.
+        String actualContent = (String)expectation.get("content");
+        assertNotNull("content null", actualContent);
+        assertEquals("unexpected content", maxSegmentCount, countMatches(Pattern.compile(expectedHeader, Pattern.LITERAL), actualContent));
+        assertEquals("unexpected content", 1, countMatches(Pattern.compile(String.format(expectedEntry, expectedEntries - 1), Pattern.LITERAL), actualContent));
+        assertEquals("unexpected content", 0, countMatches(Pattern.compile(String.format(expectedEntry, 0), Pattern.LITERAL), actualContent));
+    }
+
+    @Test
+    public void testStreamingRead() throws Exception {
+
+        // Expected header to be written.
+        final String expectedHeader = "Header written";
+
+        // Total number of expected entries.
+        final int expectedEntries = 500;
+
+        // Expected entry format.
+        final String expectedEntry = "Log entry %d.";
+
+        expectation = new CRDTestExpectation();
+
+        // Context of the app under test.
+        Context appContext = InstrumentationRegistry.getTargetContext();
+
+        // Create a new log file.
+        CRDLog log = new CRDLog(new File(appContext.getFilesDir(), "testlog.txt"), new CRDLogHeaderInterface() {
+
+            @Override
+            public String onProvideHeader() {
+
+                // Return the header.
+                return expectedHeader + "\n";
+            }
+        });
+
+        // Clear the log file.
+        log.clear();
+
+        // Log info entries.
+        for (int i = 0; i < expectedEntries; i++) {
+
+            log.info(TAG, String.format(expectedEntry, i));
+        }
+
+        // Stream the log contents.
+        log.getStream(new CRDLogStreamInterface() {
+
+            @Override
+            public void onLogStream(InputStream logStream) {
+
+                // Copy the stream, which is only valid until we return.
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                int count;
+
+                try {
+
+                    while ((count = logStream.read(buffer)) > 0) {
+
+                        content.write(buffer, 0, count);
+                    }
+
+                } catch (IOException exception) {
+
+                    // Signal without any content, which fails the test below.
+                    expectation.fulfill(CRDTestExpectationStatus.SUCCESS);
+                    return;
+                }
+
+                // Return the streamed log content and signal success.
+                expectation.put("content", new String(content.toByteArray(), Charset.forName("UTF-8")));
+                expectation.fulfill(CRDTestExpectationStatus.SUCCESS);
+            }
+        });
+
+        // Wait for up to 5 seconds or until signalled by the above callback onLogStream().
+        CRDTestExpectationStatus status = expectation.waitFor(defaultTestTimeout);
+        assertEquals("unexpected status", CRDTestExpectationStatus.SUCCESS, status);
+
+        // Validate the content - there should be exactly one occurrence of the header and one of each log entry.
+        String actualContent = (String)expectation.get("content");
+        assertNotNull("content null", actualContent);
+        assertEquals("unexpected content", 1, countMatches(Pattern.compile(expectedHeader, Pattern.LITERAL), actualContent));
+        for (int i = 0; i < expectedEntries; i++) {
+
+            String entry = String.format(expectedEntry, i);
+            assertEquals("unexpected content", 1, countMatches(Pattern.compile(entry, Pattern.LITERAL), actualContent));
+        }
+    }
+
+    @Test
+    public void testBinaryFormat() throws Exception {
+
+        // Expected header to be written.
+        final String expectedHeader = "Header written";
+
+        // Total number of expected entries.
+        final int expectedEntries = 500;
+
+        // Expected entry format.
+        final String expectedEntry = "Log entry %d of %s.";
+
+        expectation = new CRDTestExpectation();
+
+        // Context of the app under test.
+        Context appContext = InstrumentationRegistry.getTargetContext();
+
+        // Create a new log file in the binary format.
+        CRDLog log = new CRDLog(new File(appContext.getFilesDir(), "binarylog.txt"), new CRDLogHeaderInterface() {
+
+            @Override
+            public String onProvideHeader() {
+
+                // Return the header.
+                return expectedHeader + "\n";
+            }
+
+        }, new CRDLogSettings().setLogFormat(CRDLogFormat.BINARY));
+
+        // Clear the log file.
+        log.clear();
+
+        // Log info entries, leaving the formatting to the log.
+        for (int i = 0; i < expectedEntries; i++) {
+
+            log.info(TAG, expectedEntry, i, "binary");
+        }
+
+        // Get the log contents.
+        log.get(new CRDLogContentInterface() {
+
+            @Override
+            public void onLogContent(String logContent) {
+
+                // Return the current log content and signal success.
+                expectation.put("content", logContent);
+                expectation.fulfill(CRDTestExpectationStatus.SUCCESS);
+            }
+        });
+
+        // Wait for up to 5 seconds or until signalled by the above callback onLogContent().
+        CRDTestExpectationStatus status = expectation.waitFor(defaultTestTimeout);
+        assertEquals("unexpected status", CRDTestExpectationStatus.SUCCESS, status);
+
+        // Validate the content - it should read as text, with one occurrence of the header and of each log entry.
+        String actualContent = (String)expectation.get("content");
+        assertNotNull("content null", actualContent);
+        assertEquals("unexpected content", 1, countMatches(Pattern.compile(expectedHeader, Pattern.LITERAL), actualContent));
+        for (int i = 0; i < expectedEntries; i++) {
+
+            String entry = String.format("(info) [%1s]: %2s\r\n", TAG, String.format(expectedEntry, i, "binary"));
+            assertEquals("unexpected content", 1, countMatches(Pattern.compile(entry, Pattern.LITERAL), actualContent));
+        }
+    }
+
+    @Test
+    public void testTailAndRange() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 2000;
+
+        // Number of entries to get from the end of the log.
+        final int tailEntries = 10;
+
+        // Expected entry format.
+        final String expectedEntry = "Log entry %d.";
+
+        expectation = new CRDTestExpectation();
+
+        // Context of the app under test.
+        Context appContext = InstrumentationRegistry.getTargetContext();
+
+        // Create a new log file indexed every 1 KB.
+        CRDLog log = new CRDLog(new File(appContext.getFilesDir(), "indexedlog.txt"), null, new CRDLogSettings().setIndexInterval(1024));
+
+        // Clear the log file.
+        log.clear();
+
+        // Log info entries.
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < expectedEntries; i++) {
+
+            log.info(TAG, String.format(expectedEntry, i));
+        }
+
+        // Get the end of the log.
+        log.tail(tailEntries, new CRDLogContentInterface() {
+
+            @Override
+            public void onLogContent(String logContent) {
+
+                // Return the end of the log content.
+                expectation.put("tail", logContent);
+            }
+        });
+
+        // Get the part of the log logged since the entries were started.
+        log.range(startTime, Long.MAX_VALUE, new CRDLogContentInterface() {
+
+            @Override
+            public void onLogContent(String logContent) {
+
+                // Return the log content in the range and signal success.
+                expectation.put("range", logContent);
+                expectation.fulfill(CRDTestExpectationStatus.SUCCESS);
+            }
+        });
+
+        // Wait for up to 5 seconds or until signalled by the above callback onLogContent().
+        CRDTestExpectationStatus status = expectation.waitFor(defaultTestTimeout);
+        assertEquals("unexpected status", CRDTestExpectationStatus.SUCCESS, status);
+
+        // Validate the end of the log - there should be exactly the last entries.
+        String tailContent = (String)expectation.get("tail");
+        assertNotNull("tail null", tailContent);
+        assertEquals("unexpected tail", tailEntries, countMatches(Pattern.compile("\r\n", Pattern.LITERAL), tailContent));
+        for (int i = expectedEntries - tailEntries; i < expectedEntries; i++) {
+
+            assertEquals("unexpected tail", 1, countMatches(Pattern.compile(String.format(expectedEntry, i), Pattern.LITERAL), tailContent));
+        }
+
+        // Validate the range - there should be every entry.
+        String rangeContent = (String)expectation.get("range");
+        assertNotNull("range null", rangeContent);
+        assertEquals("unexpected range", expectedEntries, countMatches(Pattern.compile("\r\n", Pattern.LITERAL), rangeContent));
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 2000;
+
+        // Every how many entries one is an error.
+        final int errorEvery = 100;
+
+        expectation = new CRDTestExpectation();
+
+        // Context of the app under test.
+        Context appContext = InstrumentationRegistry.getTargetContext();
+
+        // Create a new log file indexed for search.
+        CRDLog log = new CRDLog(new File(appContext.getFilesDir(), "searchlog.txt"), null, new CRDLogSettings().setSearchIndexEnabled(true));
+
+        // Clear the log file.
+        log.clear();
+
+        // Log info entries, with an error every so often.
+        for (int i = 0; i < expectedEntries; i++) {
+
+            if (i % errorEvery == 0) {
+
+                log.error(TAG, "Payment %d declined.", i);
+
+            } else {
+
+                log.info(TAG, "Payment %d accepted.", i);
+            }
+        }
+
+        // Search for the errors.
+        log.search("payment DECLINED", new CRDLogSearchInterface() {
+
+            @Override
+            public void onSearchResults(List<CRDLogSearchHit> hits) {
+
+                // Return the hits and signal success.
+                expectation.put("hits", hits);
+                expectation.fulfill(CRDTestExpectationStatus.SUCCESS);
+            }
+        });
+
+        // Wait for up to 5 seconds or until signalled by the above callback onSearchResults().
+        CRDTestExpectationStatus status = expectation.waitFor(defaultTestTimeout);
+        assertEquals("unexpected status", CRDTestExpectationStatus.SUCCESS, status);
+
+        // Validate the hits - there should be every error, in the order logged.
+        @SuppressWarnings("unchecked")
+        List<CRDLogSearchHit> hits = (List<CRDLogSearchHit>)expectation.get("hits");
+        assertNotNull("hits null", hits);
+        assertEquals("unexpected hit count", expectedEntries / errorEvery, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+
+            assertTrue("unexpected hit", hits.get(i).getEntry().contains(String.format("Payment %d declined.", i * errorEvery)));
+        }
+    }
+
+    @Test
+    public void testOverflowPolicy() throws Exception {
+
+        // Total number of entries logged.
+        final int loggedEntries = 5000;
+
+        expectation = new CRDTestExpectation();
+
+        // Context of the app under test.
+        Context appContext = InstrumentationRegistry.getTargetContext();
+
+        // Create a new log file with a tiny queue that drops the newest messages when full.
+        CRDLog log = new CRDLog(new File(appContext.getFilesDir(), "overflowlog.txt"), null, new CRDLogSettings().setQueueCapacity(16).setOverflowPolicy(CRDLogOverflowPolicy.DROP_NEWEST));
+
+        // Clear the log file.
+        log.clear();
+
+        // Log info entries as fast as possible.
+        for (int i = 0; i < loggedEntries; i++) {
+
+            log.info(TAG, "Log entry %d.", i);
+        }
+
+        // Get the log content.
+        log.get(new CRDLogContentInterface() {
+
+            @Override
+            public void onLogContent(String logContent) {
+
+                // Return the log content and signal success.
+                expectation.put("content", logContent);
+                expectation.fulfill(CRDTestExpectationStatus.SUCCESS);
+            }
+        });
+
+        // Wait for up to 5 seconds or until signalled by the above callback onLogContent().
+        CRDTestExpectationStatus status = expectation.waitFor(defaultTestTimeout);
+        assertEquals("unexpected status", CRDTestExpectationStatus.SUCCESS, status);
+
+        // Validate the log content - every entry is either in the log or counted as dropped.
+        String logContent = (String)expectation.get("content");
+        assertNotNull("logContent null", logContent);
+
+        int droppedEntries = 0;
+        Matcher matcher = Pattern.compile("(\\d+) messages? dropped").matcher(logContent);
+        while (matcher.find()) {
+
+            droppedEntries += Integer.parseInt(matcher.group(1));
+        }
+
+        int keptEntries = countMatches(Pattern.compile("Log entry \\d+\\."), logContent);
+        assertEquals("unexpected entry count", loggedEntries, keptEntries + droppedEntries);
+    }
+
+    @Test
+    public void testSyncPolicies() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 1000;
+
+        // Every how many entries one is an error.
+        final int errorEvery = 100;
+
+        expectation = new CRDTestExpectation();
+
+        // Context of the app under test.
+        Context appContext = InstrumentationRegistry.getTargetContext();
+
+        // Create a new log file synced on a timer, by size and after each error.
+        CRDLog log = new CRDLog(new File(appContext.getFilesDir(), "synclog.txt"), null, new CRDLogSettings().setSyncIntervalMillis(10).setSyncIntervalBytes(4096).setSyncOnError(true));
+
+        // Clear the log file.
+        log.clear();
+
+        // Log info entries, with an error every so often.
+        for (int i = 0; i < expectedEntries; i++) {
+
+            if (i % errorEvery == 0) {
+
+                log.error(TAG, "Log entry %d.", i);
+
+            } else {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+        }
+
+        // Get the log content.
+        log.get(new CRDLogContentInterface() {
+
+            @Override
+            public void onLogContent(String logContent) {
+
+                // Return the log content and signal success.
+                expectation.put("content", logContent);
+                expectation.fulfill(CRDTestExpectationStatus.SUCCESS);
+            }
+        });
+
+        // Wait for up to 5 seconds or until signalled by the above callback onLogContent().
+        CRDTestExpectationStatus status = expectation.waitFor(defaultTestTimeout);
+        assertEquals("unexpected status", CRDTestExpectationStatus.SUCCESS, status);
+
+        // Validate the log content - syncing should not lose or reorder anything.
+        String logContent = (String)expectation.get("content");
+        assertNotNull("logContent null", logContent);
+        assertEquals("unexpected entry count", expectedEntries, countMatches(Pattern.compile("Log entry \\d+\\."), logContent));
+        assertTrue("unexpected order", logContent.indexOf("Log entry 998.") < logContent.indexOf("Log entry 999."));
+    }
+
+    @Test
+    public void testFlushAndClose() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 1000;
+
+        // Context of the app under test.
+        Context appContext = InstrumentationRegistry.getTargetContext();
+
+        // Create a new log file.
+        File logFile = new File(appContext.getFilesDir(), "closelog.txt");
+        CRDLog log = new CRDLog(logFile, null);
+
+        // Clear the log file.
+        log.clear();
+
+        // Log info entries, then wait for them to reach the log file.
+        for (int i = 0; i < expectedEntries; i++) {
+
+            log.info(TAG, "Log entry %d.", i);
+        }
+
+        assertTrue("flushAndWait timed out", log.flushAndWait(defaultTestTimeout));
+        assertEquals("unexpected entry count after flush", expectedEntries, countMatches(Pattern.compile("Log entry \\d+\\."), readFile(logFile)));
+
+        // Log more entries, then close the log.
+        for (int i = expectedEntries; i < expectedEntries * 2; i++) {
+
+            log.info(TAG, "Log entry %d.", i);
+        }
+
+        log.close();
+
+        // Entries logged after closing are ignored.
+        log.info(TAG, "Log entry after close.");
+
+        // Validate the log file - every entry logged before the close should be in it.
+        String logContent = readFile(logFile);
+        assertEquals("unexpected entry count after close", expectedEntries * 2, countMatches(Pattern.compile("Log entry \\d+\\."), logContent));
+        assertEquals("unexpected entry after close", 0, countMatches(Pattern.compile("Log entry after close.", Pattern.LITERAL), logContent));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 1000;
+
+        expectation = new CRDTestExpectation();
+
+        // Context of the app under test.
+        Context appContext = InstrumentationRegistry.getTargetContext();
+
+        // Create a new log file with metrics.
+        File logFile = new File(appContext.getFilesDir(), "metricslog.txt");
+        CRDLog log = new CRDLog(logFile, null, new CRDLogSettings().setMetricsEnabled(true));
+
+        // Clear the log file.
+        log.clear();
+
+        // Report the metrics every 10 ms.
+        log.setMetricsListener(new CRDLogMetricsInterface() {
+
+            @Override
+            public void onLogMetrics(CRDLogMetrics metrics) {
+
+                // Return the first report and signal success.
+                if (expectation.get("metrics") == null) {
+
+                    expectation.put("metrics", metrics);
+                    expectation.fulfill(CRDTestExpectationStatus.SUCCESS);
+                }
+            }
+        }, 10);
+
+        // Log info entries.
+        for (int i = 0; i < expectedEntries; i++) {
+
+            log.info(TAG, "Log entry %d.", i);
+        }
+
+        // Wait for up to 5 seconds or until signalled by the above callback onLogMetrics().
+        CRDTestExpectationStatus status = expectation.waitFor(defaultTestTimeout);
+        assertEquals("unexpected status", CRDTestExpectationStatus.SUCCESS, status);
+        assertNotNull("metrics report null", expectation.get("metrics"));
+
+        // Validate a snapshot once everything is written - every entry should be counted.
+        assertTrue("flushAndWait timed out", log.flushAndWait(defaultTestTimeout));
+        CRDLogMetrics metrics = log.getMetrics();
+        assertNotNull("metrics null", metrics);
+        assertEquals("unexpected messages written", expectedEntries, metrics.getMessagesWritten());
+        assertEquals("unexpected messages dropped", 0, metrics.getMessagesDropped());
+        assertEquals("unexpected bytes written", logFile.length(), metrics.getBytesWritten());
+        assertEquals("unexpected enqueue count", expectedEntries, metrics.getEnqueueLatency().getCount());
+        assertTrue("unexpected peak queue depth", metrics.getPeakQueueDepth() >= 1);
+    }
+
     //endregion
 }
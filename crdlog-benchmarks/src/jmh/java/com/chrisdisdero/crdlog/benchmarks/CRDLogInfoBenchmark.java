@@ -0,0 +1,266 @@
+package com.chrisdisdero.crdlog.benchmarks;
+
+import com.chrisdisdero.crdlog.CRDLog;
+import com.chrisdisdero.crdlog.CRDLogConsole;
+import com.chrisdisdero.crdlog.CRDLogLevel;
+import com.chrisdisdero.crdlog.CRDLogSettings;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link CRDLog#info} as seen by the threads logging, measuring both the throughput and the latency of
+ * a call with 1, 4 and 16 threads logging at once.
+ *
+ * Each trial logs to its own log file in a temporary directory, rolled at a fixed size so the benchmark doesn't fill
+ * the disk, with a console that prints nothing, so only the log itself is measured.  The parameters are the length
+ * of the message and how it is formatted:
+ *
+ * CONSTANT logs a message without format parameters.
+ * FORMATTED logs a format with immutable parameters, formatted later on the writer thread.
+ * SNAPSHOT logs the same format with the sequence number passed as a mutable object instead, and the parameters
+ * snapshotted, so it is formatted on the calling thread.
+ *
+ * Run with ./gradlew :crdlog-benchmarks:jmh on any machine with a JDK.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CRDLogInfoBenchmark {
+
+    //region Private members
+
+    /**
+     * The tag of the messages logged.
+     */
+    private static final String TAG = "Benchmark";
+
+    /**
+     * The size in bytes at which the log file is rolled.
+     */
+    private static final long MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Console that prints nothing, but still has the messages written to the log file.
+     */
+    private static final CRDLogConsole SILENT_CONSOLE = new CRDLogConsole() {
+
+        @Override
+        public boolean print(CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+            return true;
+        }
+    };
+
+    /**
+     * The temporary directory of the log file of the trial.
+     */
+    private File directory;
+
+    /**
+     * The log benchmarked.
+     */
+    private CRDLog log;
+
+    /**
+     * The message logged in the CONSTANT case.
+     */
+    private String message;
+
+    /**
+     * The text parameter of the format logged in the FORMATTED and SNAPSHOT cases.
+     */
+    private String text;
+
+    //endregion
+
+    //region Parameters
+
+    /**
+     * The length in characters of the messages logged.
+     */
+    @Param({"16", "128", "1024"})
+    public int messageLength;
+
+    /**
+     * How the messages logged are formatted: CONSTANT, FORMATTED or SNAPSHOT.
+     */
+    @Param({"CONSTANT", "FORMATTED", "SNAPSHOT"})
+    public String formatting;
+
+    //endregion
+
+    //region Thread state
+
+    /**
+     * The state of each thread logging, which is also the mutable format parameter logged in the SNAPSHOT case.
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+
+        /**
+         * The number of messages logged by the thread, logged as a format parameter.
+         */
+        long sequence;
+
+        @Override
+        public String toString() {
+
+            return Long.toString(sequence);
+        }
+    }
+
+    //endregion
+
+    //region Setup
+
+    /**
+     * Creates the log file and the log for the trial.
+     *
+     * @throws IOException If the temporary directory can't be created.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        directory = File.createTempFile("crdlog-benchmark", "");
+        if (!directory.delete() || !directory.mkdir()) {
+
+            throw new IOException("Failed to create directory " + directory);
+        }
+
+        char[] characters = new char[messageLength];
+        Arrays.fill(characters, 'x');
+        message = new String(characters);
+
+        // The sequence number takes up to 20 characters of the formatted message.
+        text = message.substring(0, Math.max(0, messageLength - 20));
+
+        CRDLogSettings settings = new CRDLogSettings()
+                .setConsole(SILENT_CONSOLE)
+                .setSnapshotArguments("SNAPSHOT".equals(formatting))
+                .setMaxSegmentSize(MAX_SEGMENT_SIZE)
+                .setMaxSegmentCount(2);
+
+        log = new CRDLog(new File(directory, "benchmark.log"), null, settings);
+    }
+
+    /**
+     * Closes the log of the trial and deletes its files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        log.close();
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+
+            for (File file : files) {
+
+                file.delete();
+            }
+        }
+
+        directory.delete();
+    }
+
+    //endregion
+
+    //region Benchmarks
+
+    /**
+     * Logs a message from a single thread.
+     *
+     * @param producer The state of the thread.
+     */
+    @Benchmark
+    @Threads(1)
+    public void info1Thread(Producer producer) {
+
+        info(producer);
+    }
+
+    /**
+     * Logs a message from each of 4 threads.
+     *
+     * @param producer The state of the thread.
+     */
+    @Benchmark
+    @Threads(4)
+    public void info4Threads(Producer producer) {
+
+        info(producer);
+    }
+
+    /**
+     * Logs a message from each of 16 threads.
+     *
+     * @param producer The state of the thread.
+     */
+    @Benchmark
+    @Threads(16)
+    public void info16Threads(Producer producer) {
+
+        info(producer);
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Logs an info message formatted according to the formatting parameter.
+     *
+     * @param producer The state of the thread logging.
+     */
+    private void info(Producer producer) {
+
+        if ("CONSTANT".equals(formatting)) {
+
+            log.info(TAG, message);
+
+        } else if ("SNAPSHOT".equals(formatting)) {
+
+            // The producer is not one of the immutable types formatted on the writer thread, so it is snapshotted.
+            producer.sequence++;
+            log.info(TAG, "%s %s", text, producer);
+
+        } else {
+
+            log.info(TAG, "%s %d", text, producer.sequence++);
+        }
+    }
+
+    //endregion
+}
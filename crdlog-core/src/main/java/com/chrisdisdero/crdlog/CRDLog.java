@@ -0,0 +1,875 @@
+package com.chrisdisdero.crdlog;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class that represents an app-wide logging facility.
+ *
+ * @author cdisdero
+ *
+ Copyright © 2017 Christopher Disdero.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+public class CRDLog implements Closeable {
+
+    //region Private members
+
+    /**
+     * Log tag for this class.
+     */
+    private static final String TAG = CRDLog.class.getCanonicalName();
+
+    /**
+     * The character set the text of the log is written in, whatever the default of the platform.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The writer which queues up operations on the log file and performs them on a background thread.
+     */
+    private CRDLogWriter writer = null;
+
+    /**
+     * The log file reference.
+     */
+    private File logFile = null;
+
+    /**
+     * Flag to disable writing messages to the log file.
+     */
+    private AtomicBoolean disableLogFileWrites = new AtomicBoolean(false);
+
+    /**
+     * The minimum level of the messages logged.
+     */
+    private volatile CRDLogLevel minimumLevel = CRDLogLevel.DEBUG;
+
+    /**
+     * Flag to format messages with mutable parameters on the calling thread instead of the writer thread.
+     */
+    private boolean snapshotArguments = false;
+
+    /**
+     * The rate limits and sampling of the messages of each tag, or null if there are none.
+     */
+    private CRDLogRateLimiter rateLimiter = null;
+
+    /**
+     * Instance of {@link CRDLogHeaderInterface} which will provide a header for the log file when needed.
+     */
+    private CRDLogHeaderInterface logHeaderProvider = null;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLog} object.
+     *
+     * @param logFile A reference to the {@link File} representing the log file on disk.
+     * @param logHeaderProvider Instance of {@link CRDLogHeaderInterface} which will provide a header for the log file when needed.
+     */
+    public CRDLog(File logFile, CRDLogHeaderInterface logHeaderProvider) {
+
+        this(logFile, logHeaderProvider, new CRDLogSettings());
+    }
+
+    /**
+     * Instantiates a new {@link CRDLog} object with the specified settings.
+     *
+     * @param logFile A reference to the {@link File} representing the log file on disk.
+     * @param logHeaderProvider Instance of {@link CRDLogHeaderInterface} which will provide a header for the log file when needed.
+     * @param settings The {@link CRDLogSettings} to use for the log.
+     */
+    public CRDLog(File logFile, CRDLogHeaderInterface logHeaderProvider, @NonNull CRDLogSettings settings) {
+
+        // Store a reference to the log file passed in.
+        this.logFile = logFile;
+
+        // Store a reference to the log header provider passed in.
+        this.logHeaderProvider = logHeaderProvider;
+
+        this.snapshotArguments = settings.isSnapshotArguments();
+        this.rateLimiter = CRDLogRateLimiter.create(settings);
+
+        // Start the writer thread for log operations.
+        writer = new CRDLogWriter(logFile, logHeaderProvider, settings, rateLimiter);
+        writer.start();
+    }
+
+    //endregion
+
+    //region Public methods
+
+    /**
+     * Method to get the current contents of the log file.  The content is a snapshot of the log taken when the
+     * request comes up in the queue, read on a reader thread of its own so the messages logged in the meantime
+     * are written without waiting for it.  If the log file is to be cleared after getting the contents, it is
+     * read on the writer thread instead, so nothing logged between the read and the clear is lost.
+     *
+     * @param clearAfterGet Flag to indicate whether to clear the log file after getting the contents.
+     * @param completion A completion handler that implements {@link CRDLogContentInterface}.
+     */
+    public void get(final boolean clearAfterGet, @Nullable final CRDLogContentInterface completion) {
+
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                // If the completion handler passed in is null, then clear if specified and exit.
+                if (completion == null) {
+
+                    if (clearAfterGet) {
+
+                        writer.deleteContent();
+                    }
+
+                    return;
+                }
+
+                final InputStream fileInputStream = openContent();
+
+                if (clearAfterGet) {
+
+                    String logContent = readContent(fileInputStream);
+
+                    if (logContent != null) {
+
+                        writer.deleteContent();
+                    }
+
+                    // Call the completion handler with the log file content found.
+                    completion.onLogContent(logContent);
+                    return;
+                }
+
+                writer.executeRead(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        // Call the completion handler with the log file content found.
+                        completion.onLogContent(readContent(fileInputStream));
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Method to get the current contents of the log file and then clear it.
+     *
+     * @param completion A completion handler that implements {@link CRDLogContentInterface}.
+     */
+    public void get(@Nullable final CRDLogContentInterface completion) {
+
+        get(false, completion);
+    }
+
+    /**
+     * Method to stream the current contents of the log file, without reading it all into memory.  The bytes of
+     * the text of the log are passed along as they are, with no conversion of line endings, and a log in the
+     * {@link CRDLogFormat#BINARY} format is rendered as text.  The stream is over a snapshot of the log taken when
+     * the request comes up in the queue, so messages logged in the meantime are written as usual but left out.
+     *
+     * @param completion A completion handler that implements {@link CRDLogStreamInterface}, called on the log's
+     *                   reader thread.
+     */
+    public void getStream(@NonNull final CRDLogStreamInterface completion) {
+
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                final InputStream logStream = openContent();
+
+                writer.executeRead(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        try {
+
+                            // Call the completion handler with the stream over the log file content.
+                            completion.onLogStream(logStream);
+
+                        } finally {
+
+                            if (logStream != null) {
+
+                                try {
+
+                                    logStream.close();
+
+                                } catch (IOException exception) {
+
+                                    CRDLogPlatform.error(TAG, "Failed to close log file.", exception);
+                                }
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Method to get the most recent entries of the log.  If the log is indexed, as set with
+     * {@link CRDLogSettings#setIndexInterval(int)}, only the end of the log is read.  The entries are read from a
+     * snapshot of the log on the log's reader thread, without holding up the messages logged in the meantime.
+     *
+     * @param count The maximum number of entries to get.
+     * @param completion A completion handler that implements {@link CRDLogContentInterface}, passed the entries
+     *                   oldest first, or null if there is no log file or it could not be read.
+     */
+    public void tail(final int count, @NonNull final CRDLogContentInterface completion) {
+
+        if (count < 0) {
+
+            throw new IllegalArgumentException("count must not be negative");
+        }
+
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                final CRDLogReader reader = openReader();
+
+                writer.executeRead(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        String logContent = null;
+
+                        try {
+
+                            logContent = reader != null ? reader.tail(count) : null;
+
+                        } catch (IOException exception) {
+
+                            CRDLogPlatform.error(TAG, "Failed to read the end of the log file.", exception);
+
+                        } finally {
+
+                            closeReader(reader);
+                        }
+
+                        // Call the completion handler with the log file content found.
+                        completion.onLogContent(logContent);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Method to get the entries of the log logged within a range of time.  If the log is indexed, as set with
+     * {@link CRDLogSettings#setIndexInterval(int)}, only the part of the log around the range is read.  The
+     * entries are read from a snapshot of the log on the log's reader thread, without holding up the messages
+     * logged in the meantime.
+     *
+     * @param fromMillis The start of the range, in milliseconds since the epoch, inclusive.
+     * @param toMillis The end of the range, in milliseconds since the epoch, exclusive.
+     * @param completion A completion handler that implements {@link CRDLogContentInterface}, passed the entries
+     *                   oldest first, or null if there is no log file or it could not be read.
+     */
+    public void range(final long fromMillis, final long toMillis, @NonNull final CRDLogContentInterface completion) {
+
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                final CRDLogReader reader = openReader();
+
+                writer.executeRead(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        String logContent = null;
+
+                        try {
+
+                            logContent = reader != null ? reader.range(fromMillis, toMillis) : null;
+
+                        } catch (IOException exception) {
+
+                            CRDLogPlatform.error(TAG, "Failed to read the log file.", exception);
+
+                        } finally {
+
+                            closeReader(reader);
+                        }
+
+                        // Call the completion handler with the log file content found.
+                        completion.onLogContent(logContent);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Method to search the log for the entries holding all the words of a query, regardless of case.  Words are
+     * runs of letters and digits, so searching for "order 12345" finds the entries holding both "Order #12345"
+     * and "order-12345".  Words of a single character are ignored.  If the log is indexed for search, as set with
+     * {@link CRDLogSettings#setSearchIndexEnabled(boolean)}, only the entries found are read.  The search runs
+     * over a snapshot of the log on the log's reader thread, without holding up the messages logged in the
+     * meantime.
+     *
+     * @param query The words to search for in the tags and messages of the entries.
+     * @param completion A completion handler that implements {@link CRDLogSearchInterface}.
+     */
+    public void search(@NonNull final String query, @NonNull final CRDLogSearchInterface completion) {
+
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                final CRDLogReader reader = openReader();
+
+                if (reader != null) {
+
+                    // The tokens of the end of the log still held in memory can only be looked up on the writer thread.
+                    reader.searchPending(query);
+                }
+
+                writer.executeRead(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        List<CRDLogSearchHit> hits = null;
+
+                        try {
+
+                            hits = reader != null ? reader.search(query) : null;
+
+                        } catch (IOException exception) {
+
+                            CRDLogPlatform.error(TAG, "Failed to search the log file.", exception);
+
+                        } finally {
+
+                            closeReader(reader);
+                        }
+
+                        // Call the completion handler with the entries found.
+                        completion.onSearchResults(hits);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Method to clear the log file.
+     */
+    public void clear() {
+
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                writer.deleteContent();
+            }
+        });
+    }
+
+    /**
+     * Method to take over the content of the log, such as to upload it, and start the log over empty.  When the
+     * request comes up in the queue, the log file is closed and renamed out of the way, along with any segments,
+     * and the next message starts a new log file with its own header.  Unlike getting the content and then
+     * clearing the log, nothing is read or copied however large the log is, and no message can be lost in
+     * between: everything logged before the drain is in the files handed off, and everything logged after it
+     * is in the log.
+     *
+     * @param completion A completion handler that implements {@link CRDLogDrainInterface}, called on the log's
+     *                   reader thread with the files the content was moved to, which the caller deletes once
+     *                   done with them.
+     */
+    public void drain(@NonNull final CRDLogDrainInterface completion) {
+
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                final List<File> logFiles = writer.drainContent();
+
+                writer.executeRead(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        // Call the completion handler with the files handed off.
+                        completion.onLogDrained(logFiles);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Writes the messages held in memory by the flight recorder to the log file, such as when something has gone
+     * wrong that wasn't logged as an error.  Does nothing if the flight recorder is off.
+     */
+    public void dumpFlightRecorder() {
+
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                writer.dumpFlightRecorder();
+            }
+        });
+    }
+
+    /**
+     * Method to log an informational message to the log file.
+     *
+     * @param tag The message tag to use.
+     * @param format The message or format for the message.
+     * @param args Zero or more format message parameters.
+     */
+    public void info(@NonNull String tag, @NonNull String format, Object... args) {
+
+        log(CRDLogLevel.INFO, tag, format, args);
+    }
+
+    /**
+     * Method to log an informational message about a {@link Throwable} to the log file.
+     *
+     * @param tag The message tag to use.
+     * @param throwable The {@link Throwable} to log.
+     */
+    public void info(@NonNull String tag, @NonNull Throwable throwable) {
+
+        log(CRDLogLevel.INFO, tag, throwable);
+    }
+
+    /**
+     * Method to log an warning message to the log file.
+     *
+     * @param tag The message tag to use.
+     * @param format The message or format for the message.
+     * @param args Zero or more format message parameters.
+     */
+    public void warn(@NonNull String tag, @NonNull String format, Object... args) {
+
+        log(CRDLogLevel.WARN, tag, format, args);
+    }
+
+    /**
+     * Method to log a warning message about a {@link Throwable} to the log file.
+     *
+     * @param tag The message tag to use.
+     * @param throwable The {@link Throwable} to log.
+     */
+    public void warn(@NonNull String tag, @NonNull Throwable throwable) {
+
+        log(CRDLogLevel.WARN, tag, throwable);
+    }
+
+    /**
+     * Method to log a debug message to the log file.
+     *
+     * @param tag The message tag to use.
+     * @param format The message or format for the message.
+     * @param args Zero or more format message parameters.
+     */
+    public void debug(@NonNull String tag, @NonNull String format, Object... args) {
+
+        log(CRDLogLevel.DEBUG, tag, format, args);
+    }
+
+    /**
+     * Method to log a debug message about a {@link Throwable} to the log file.
+     *
+     * @param tag The message tag to use.
+     * @param throwable The {@link Throwable} to log.
+     */
+    public void debug(@NonNull String tag, @NonNull Throwable throwable) {
+
+        log(CRDLogLevel.DEBUG, tag, throwable);
+    }
+
+    /**
+     * Method to log an error message to the log file.
+     *
+     * @param tag The message tag to use.
+     * @param format The message or format for the message.
+     * @param args Zero or more format message parameters.
+     */
+    public void error(@NonNull String tag, @NonNull String format, Object... args) {
+
+        log(CRDLogLevel.ERROR, tag, format, args);
+    }
+
+    /**
+     * Method to log an error message about a {@link Throwable} to the log file.
+     *
+     * @param tag The message tag to use.
+     * @param throwable The {@link Throwable} to log.
+     */
+    public void error(@NonNull String tag, @NonNull Throwable throwable) {
+
+        log(CRDLogLevel.ERROR, tag, throwable);
+    }
+
+    /**
+     * Sets the minimum level of the messages logged.  Messages below this level are discarded right away, before
+     * they are formatted or written to the console or the log file.
+     *
+     * @param level The minimum {@link CRDLogLevel} to log.
+     */
+    public void setLevel(@NonNull CRDLogLevel level) {
+
+        minimumLevel = level;
+    }
+
+    /**
+     * Gets the minimum level of the messages logged.
+     *
+     * @return The minimum {@link CRDLogLevel} logged.
+     */
+    public CRDLogLevel getLevel() {
+
+        return minimumLevel;
+    }
+
+    /**
+     * Enables/disables logging messages to the log file.
+     *
+     * @param enable True to enable logging to the log file, false to disable.
+     */
+    public synchronized void enableLogging(boolean enable) {
+
+        disableLogFileWrites.set(!enable);
+    }
+
+    /**
+     * Gets a snapshot of the metrics of the log, if enabled with {@link CRDLogSettings#setMetricsEnabled(boolean)}.
+     *
+     * @return The {@link CRDLogMetrics} of the log since it was created, or null if metrics are not enabled.
+     */
+    @Nullable
+    public CRDLogMetrics getMetrics() {
+
+        return writer.getMetrics();
+    }
+
+    /**
+     * Sets a listener the metrics of the log are reported to on an interval, if enabled with
+     * {@link CRDLogSettings#setMetricsEnabled(boolean)}.  The listener is called on the writer thread, like the
+     * completion handlers, so it should return quickly.
+     *
+     * @param listener The {@link CRDLogMetricsInterface} to report to, or null to stop reporting.
+     * @param intervalMillis The time between reports in milliseconds.
+     */
+    public void setMetricsListener(@Nullable final CRDLogMetricsInterface listener, final long intervalMillis) {
+
+        if (intervalMillis < 1) {
+
+            throw new IllegalArgumentException("intervalMillis must be at least 1");
+        }
+
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                writer.setMetricsListener(listener, intervalMillis);
+            }
+        });
+    }
+
+    /**
+     * Waits until everything logged so far is written to the log file and synced to the storage device, for up
+     * to the specified time.  Does not wait when called on the writer thread, such as from the completion handler
+     * of {@link #get(boolean, CRDLogContentInterface)} with clearAfterGet set.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     *
+     * @return True if everything logged so far was written and synced in time, or false if not.
+     */
+    public boolean flushAndWait(long timeoutMillis) {
+
+        if (timeoutMillis < 0) {
+
+            throw new IllegalArgumentException("timeoutMillis must not be negative");
+        }
+
+        return writer.flushAndWait(timeoutMillis);
+    }
+
+    /**
+     * Writes everything logged so far to the log file and syncs it to the storage device, then closes the log file
+     * and ends the writer thread, waiting until it is done.  Anything logged or requested from the log afterwards
+     * is ignored, so completion handlers passed in afterwards are never called.
+     */
+    @Override
+    public void close() {
+
+        writer.close();
+    }
+
+    /**
+     * Installs a handler for uncaught exceptions that logs the exception as an error with the specified tag, then
+     * waits up to the specified time for it and everything logged before it to be written to the log file and
+     * synced to the storage device, before passing the exception on to the handler installed before it.  This
+     * keeps the messages leading up to a crash that would otherwise be lost with the app.
+     *
+     * @param tag The message tag to log the exception with.
+     * @param timeoutMillis The maximum time to hold up the crash in milliseconds.
+     */
+    public void installUncaughtExceptionHandler(@NonNull final String tag, final long timeoutMillis) {
+
+        if (timeoutMillis < 0) {
+
+            throw new IllegalArgumentException("timeoutMillis must not be negative");
+        }
+
+        final Thread.UncaughtExceptionHandler previousHandler = Thread.getDefaultUncaughtExceptionHandler();
+
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+
+            @Override
+            public void uncaughtException(Thread thread, Throwable throwable) {
+
+                try {
+
+                    error(tag, throwable);
+                    flushAndWait(timeoutMillis);
+
+                } catch (Throwable exception) {
+
+                    // Nothing more can be done while crashing, so go on to the previous handler.
+                }
+
+                if (previousHandler != null) {
+
+                    previousHandler.uncaughtException(thread, throwable);
+                }
+            }
+        });
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Method to queue up the specified message to be formatted and written on the writer thread.
+     *
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The message tag to use.
+     * @param format The message or format for the message.
+     * @param args Zero or more format message parameters.
+     */
+    private void log(CRDLogLevel level, String tag, String format, Object[] args) {
+
+        // Bail out before doing any work if the level is disabled, or the message is sampled out or over the rate limit.
+        if (level.compareTo(minimumLevel) < 0 || (rateLimiter != null && !rateLimiter.tryAcquire(level, tag))) {
+
+            return;
+        }
+
+        // Take the timestamp now rather than on the writer thread, where the message may wait in the queue.
+        long timestamp = System.currentTimeMillis();
+
+        // Format now if the parameters may change before the writer thread gets to them.
+        if (snapshotArguments && !isImmutable(args)) {
+
+            writer.write(timestamp, level, tag, null, null, CRDLogTextEncoder.format(format, args), null, !disableLogFileWrites.get());
+            return;
+        }
+
+        writer.write(timestamp, level, tag, format, args, null, null, !disableLogFileWrites.get());
+    }
+
+    /**
+     * Method to queue up a message about the specified {@link Throwable} to be written on the writer thread.
+     *
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The message tag to use.
+     * @param throwable The {@link Throwable} to log.
+     */
+    private void log(CRDLogLevel level, String tag, Throwable throwable) {
+
+        // Bail out before doing any work if the level is disabled, or the message is sampled out or over the rate limit.
+        if (level.compareTo(minimumLevel) < 0 || (rateLimiter != null && !rateLimiter.tryAcquire(level, tag))) {
+
+            return;
+        }
+
+        long timestamp = System.currentTimeMillis();
+
+        // The stack trace is rendered on the writer thread, and only written in full the first time in each file.
+        writer.write(timestamp, level, tag, null, null, null, throwable, !disableLogFileWrites.get());
+    }
+
+    /**
+     * Method to open a stream over a snapshot of the content of the log.  Must be called on the writer thread.
+     *
+     * @return An {@link InputStream} over the content of the log, or null if there is no log file or it could not
+     * be opened.
+     */
+    private InputStream openContent() {
+
+        try {
+
+            return writer.openContent();
+
+        } catch (IOException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to create input stream for log file.", exception);
+        }
+
+        return null;
+    }
+
+    /**
+     * Method to open a reader over a snapshot of the entries of the log.  Must be called on the writer thread.
+     *
+     * @return A {@link CRDLogReader} over the content of the log, or null if it could not be opened.
+     */
+    private CRDLogReader openReader() {
+
+        try {
+
+            return writer.openReader();
+
+        } catch (IOException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to open the log file.", exception);
+        }
+
+        return null;
+    }
+
+    /**
+     * Method to close a reader over a snapshot of the log, if one was opened.
+     *
+     * @param reader The {@link CRDLogReader} to close, or null.
+     */
+    private static void closeReader(CRDLogReader reader) {
+
+        if (reader != null) {
+
+            reader.close();
+        }
+    }
+
+    /**
+     * Method to read the text of the log from the specified stream and close it.
+     *
+     * @param fileInputStream The {@link InputStream} over the content of the log, or null if there is none.
+     *
+     * @return The content of the log, or null if there is none or it could not be read.
+     */
+    private static String readContent(InputStream fileInputStream) {
+
+        if (fileInputStream == null) {
+
+            return null;
+        }
+
+        boolean wasSuccessful = true;
+        InputStreamReader inputStreamReader = new InputStreamReader(fileInputStream, UTF8);
+        BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
+        String receiveString = "";
+        StringBuilder stringBuilder = new StringBuilder();
+
+        try {
+
+            while ((receiveString = bufferedReader.readLine()) != null) {
+
+                stringBuilder.append(receiveString).append("\r\n");
+            }
+
+        } catch (IOException exception) {
+
+            wasSuccessful = false;
+            CRDLogPlatform.error(TAG, "Failed to read contents of log file.", exception);
+        }
+
+        try {
+
+            fileInputStream.close();
+
+        } catch (IOException exception) {
+
+            wasSuccessful = false;
+            CRDLogPlatform.error(TAG, "Failed to close log file.", exception);
+        }
+
+        return wasSuccessful ? stringBuilder.toString() : null;
+    }
+
+    /**
+     * Checks whether the specified format message parameters are all of types whose values cannot change, so
+     * they can safely be formatted later on the writer thread.  Big numbers only count if they are of exactly
+     * those classes, as subclasses may be mutable, and enums don't count, as their constants may hold state.
+     *
+     * @param args The format message parameters.
+     *
+     * @return True if all the parameters are immutable.
+     */
+    private static boolean isImmutable(Object[] args) {
+
+        if (args == null) {
+
+            return true;
+        }
+
+        for (Object arg : args) {
+
+            if (arg == null || arg instanceof String || arg instanceof Integer || arg instanceof Long
+                    || arg instanceof Boolean || arg instanceof Double || arg instanceof Float
+                    || arg instanceof Character || arg instanceof Short || arg instanceof Byte
+                    || arg.getClass() == BigInteger.class || arg.getClass() == BigDecimal.class) {
+
+                continue;
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    //endregion
+}
@@ -0,0 +1,70 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface implemented by the classes that append encoded messages to a log file for the log writer thread.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+interface CRDLogAppender {
+
+    /**
+     * Gets the current size of the content written to the file, opening it if needed.
+     *
+     * @return The size of the content in bytes.
+     *
+     * @throws IOException If the file could not be opened.
+     */
+    long size() throws IOException;
+
+    /**
+     * Checks whether the file is open.
+     *
+     * @return True if the file is open.
+     */
+    boolean isOpen();
+
+    /**
+     * Appends the remaining content of the specified buffer to the file, opening it if needed.
+     *
+     * @param buffer The {@link java.nio.ByteBuffer} containing the bytes to write.
+     *
+     * @throws IOException If the write failed.
+     */
+    void write(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Forces the content written so far to the storage device, so it survives a crash of the device, if the file
+     * is open.
+     *
+     * @throws IOException If the content could not be forced to the storage device.
+     */
+    void sync() throws IOException;
+
+    /**
+     * Closes the file if it is open.
+     */
+    void close();
+
+    /**
+     * Closes the file and deletes it.
+     */
+    void delete();
+}
@@ -0,0 +1,677 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class that reads a log file in the {@link CRDLogFormat#BINARY} format written by {@link CRDLogBinaryEncoder}.
+ *
+ * Read as an {@link InputStream}, the file is rendered on demand as the same text a {@link CRDLogFormat#TEXT} log
+ * file would hold, so a large log is never rendered in memory as a whole.  The file can also be read one message
+ * at a time with {@link #nextMessage()}, along with the offset in the file of each message.  Records of an
+ * unknown type, and messages referring to ids missing from the dictionary, are skipped.  Reading stops at a record
+ * cut short, such as one left by a failed write.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogBinaryDecoder extends InputStream {
+
+    //region Private members
+
+    /**
+     * The character set of the text in the records.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The levels, indexed by the ordinal stored in a record.
+     */
+    private static final CRDLogLevel[] LEVELS = CRDLogLevel.values();
+
+    /**
+     * The stream of records.
+     */
+    private final InputStream in;
+
+    /**
+     * The encoder rendering messages as lines of text.
+     */
+    private final CRDLogTextEncoder textEncoder = new CRDLogTextEncoder();
+
+    /**
+     * The text rendered from the current record.
+     */
+    private final CRDLogByteBuffer rendered = new CRDLogByteBuffer(256);
+
+    /**
+     * The position in the rendered text of the next byte to read.
+     */
+    private int renderedPosition = 0;
+
+    /**
+     * The tags defined so far, by id.
+     */
+    private final Map<Integer, String> tags = new HashMap<>();
+
+    /**
+     * The formats defined so far, by id.
+     */
+    private final Map<Integer, String> formats = new HashMap<>();
+
+    /**
+     * The reusable buffer holding the payload of the current record.
+     */
+    private byte[] payload = new byte[256];
+
+    /**
+     * The length of the payload of the current record.
+     */
+    private int payloadLength = 0;
+
+    /**
+     * The position in the payload of the next byte to decode.
+     */
+    private int payloadPosition = 0;
+
+    /**
+     * The offset in the file of the next record.
+     */
+    private long position;
+
+    /**
+     * The timestamp of the previous message record.
+     */
+    private long previousTimestamp = 0;
+
+    /**
+     * Flag indicating whether the end of the records was reached.
+     */
+    private boolean finished = false;
+
+    /**
+     * The offset in the file at which the next entry starts, which is where the writer started encoding it, before
+     * any dictionary records it brought along.
+     */
+    private long entryOffset;
+
+    /**
+     * The offset in the file at which the current message starts.
+     */
+    private long messageOffset = 0;
+
+    /**
+     * The timestamp of the current message.
+     */
+    private long messageTimestamp = 0;
+
+    /**
+     * The level of the current message, or null if the current record is not a message that can be rendered.
+     */
+    private CRDLogLevel messageLevel = null;
+
+    /**
+     * The tag of the current message.
+     */
+    private String messageTag = null;
+
+    /**
+     * The formatted current message, or null if it was not formatted.
+     */
+    private String message = null;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogBinaryDecoder} object.
+     *
+     * @param in The stream of records, positioned at the start of a record, after the magic bytes.
+     * @param position The offset in the file of the next record.
+     */
+    CRDLogBinaryDecoder(InputStream in, long position) {
+
+        this.in = new BufferedInputStream(in);
+        this.position = position;
+        this.entryOffset = position;
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Wraps the specified stream over a log file so it reads as text whatever the format of the file.
+     *
+     * @param stream The {@link InputStream} over the log file, from its start.
+     *
+     * @return An {@link InputStream} rendering the file as text if it is in the binary format, or reading the file
+     * as is otherwise.
+     *
+     * @throws IOException If the start of the file could not be read.
+     */
+    static InputStream wrap(InputStream stream) throws IOException {
+
+        byte[] start = new byte[CRDLogBinaryEncoder.MAGIC.length];
+        int length = readStart(stream, start);
+
+        if (isMagic(start, length)) {
+
+            return new CRDLogBinaryDecoder(stream, length);
+        }
+
+        PushbackInputStream pushback = new PushbackInputStream(stream, start.length);
+        pushback.unread(start, 0, length);
+
+        return pushback;
+    }
+
+    /**
+     * Reads the start of a log file, to tell its format.
+     *
+     * @param stream The {@link InputStream} over the log file, from its start.
+     * @param start The buffer to read into, at least as long as {@link CRDLogBinaryEncoder#MAGIC}.
+     *
+     * @return The number of bytes read, which is less than the length of the magic bytes only for a shorter file.
+     *
+     * @throws IOException If the file could not be read.
+     */
+    static int readStart(InputStream stream, byte[] start) throws IOException {
+
+        int magicLength = CRDLogBinaryEncoder.MAGIC.length;
+        int length = 0;
+        int count;
+        while (length < magicLength && (count = stream.read(start, length, magicLength - length)) > 0) {
+
+            length += count;
+        }
+
+        return length;
+    }
+
+    /**
+     * Checks whether the start of a log file read with {@link #readStart} marks it as in the binary format.
+     *
+     * @param start The start of the file.
+     * @param length The number of bytes read.
+     *
+     * @return True if the file is in the binary format.
+     */
+    static boolean isMagic(byte[] start, int length) {
+
+        byte[] magic = CRDLogBinaryEncoder.MAGIC;
+        if (length != magic.length) {
+
+            return false;
+        }
+
+        for (int i = 0; i < magic.length; i++) {
+
+            if (start[i] != magic[i]) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Decodes the records up to the specified offset without rendering any messages, keeping track of the
+     * dictionary and timestamps they define.
+     *
+     * @param offset The offset in the file of the record to stop at.
+     *
+     * @throws IOException If the records could not be read.
+     */
+    void skipTo(long offset) throws IOException {
+
+        while (position < offset && decodeRecord(false) >= 0) {
+
+            // Nothing to render while skipping.
+        }
+    }
+
+    /**
+     * Decodes records up to the next message that can be rendered.
+     *
+     * @return True if a message was decoded, or false if the records ran out.
+     *
+     * @throws IOException If the records could not be read.
+     */
+    boolean nextMessage() throws IOException {
+
+        while (true) {
+
+            int type = decodeRecord(true);
+            if (type < 0) {
+
+                return false;
+            }
+
+            if (messageLevel != null) {
+
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gets the offset in the file at which the message decoded by {@link #nextMessage()} starts, including any
+     * dictionary records written along with it.
+     *
+     * @return The offset of the message.
+     */
+    long messageOffset() {
+
+        return messageOffset;
+    }
+
+    /**
+     * Gets the timestamp of the message decoded by {@link #nextMessage()}.
+     *
+     * @return The time the message was logged, in milliseconds since the epoch.
+     */
+    long messageTimestamp() {
+
+        return messageTimestamp;
+    }
+
+    /**
+     * Renders the message decoded by {@link #nextMessage()} as a line of text.
+     *
+     * @return The line of text, including the line break ending it.
+     */
+    String messageLine() {
+
+        return textEncoder.formatLine(messageTimestamp, messageLevel, messageTag, message);
+    }
+
+    //endregion
+
+    //region InputStream
+
+    @Override
+    public int read() throws IOException {
+
+        if (!fill()) {
+
+            return -1;
+        }
+
+        return rendered.array()[renderedPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+
+        if (length == 0) {
+
+            return 0;
+        }
+
+        if (!fill()) {
+
+            return -1;
+        }
+
+        int count = Math.min(length, rendered.size() - renderedPosition);
+        System.arraycopy(rendered.array(), renderedPosition, buffer, offset, count);
+        renderedPosition += count;
+
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        in.close();
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Decodes records until there is rendered text left to read or the records run out.
+     *
+     * @return True if there is rendered text left to read.
+     *
+     * @throws IOException If the records could not be read.
+     */
+    private boolean fill() throws IOException {
+
+        while (renderedPosition >= rendered.size()) {
+
+            rendered.clear();
+            renderedPosition = 0;
+
+            int type = decodeRecord(true);
+            if (type < 0) {
+
+                return false;
+            }
+
+            if (type == CRDLogBinaryEncoder.RECORD_HEADER) {
+
+                rendered.writeBytes(payload, 0, payloadLength);
+
+            } else if (messageLevel != null) {
+
+                textEncoder.encodeLine(messageTimestamp, messageLevel, messageTag, message, rendered);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Decodes the next record.  A message record is decoded into the current message.
+     *
+     * @param formatMessage True to format the message of a message record, false to only keep track of its
+     *                      timestamp.
+     *
+     * @return The type of the record, or -1 if the records ran out.
+     *
+     * @throws IOException If the records could not be read.
+     */
+    private int decodeRecord(boolean formatMessage) throws IOException {
+
+        messageLevel = null;
+
+        if (finished) {
+
+            return -1;
+        }
+
+        int type = in.read();
+        if (type < 0) {
+
+            finished = true;
+            return -1;
+        }
+
+        position++;
+
+        if (type == CRDLogBinaryEncoder.BATCH_END) {
+
+            entryOffset = position;
+            return type;
+        }
+
+        long length = readStreamVarint();
+        if (length < 0 || length > Integer.MAX_VALUE || !readPayload((int) length)) {
+
+            finished = true;
+            return -1;
+        }
+
+        switch (type) {
+
+            case CRDLogBinaryEncoder.RECORD_RESET:
+                tags.clear();
+                formats.clear();
+                previousTimestamp = 0;
+                return type;
+
+            case CRDLogBinaryEncoder.RECORD_TAG:
+                tags.put((int) readVarint(), readRemainingText());
+                return type;
+
+            case CRDLogBinaryEncoder.RECORD_FORMAT:
+                formats.put((int) readVarint(), readRemainingText());
+                return type;
+
+            case CRDLogBinaryEncoder.RECORD_MESSAGE:
+            case CRDLogBinaryEncoder.RECORD_TEXT:
+                messageOffset = entryOffset;
+                decodeMessage(type, formatMessage);
+                break;
+
+            default:
+                // A header, or a record type from a later version, which can be skipped.
+                break;
+        }
+
+        // The dictionary records returned above belong to the entry that follows them.
+        entryOffset = position;
+
+        return type;
+    }
+
+    /**
+     * Decodes the message record in the payload into the current message.
+     *
+     * @param type The record type.
+     * @param formatMessage True to format the message, false to only keep track of its timestamp.
+     */
+    private void decodeMessage(int type, boolean formatMessage) {
+
+        int levelOrdinal = readByte();
+        int tagId = (int) readVarint();
+        messageTimestamp = previousTimestamp + readZigZag();
+        previousTimestamp = messageTimestamp;
+
+        if (!formatMessage || levelOrdinal >= LEVELS.length || (tagId != CRDLogBinaryEncoder.NULL_TAG && !tags.containsKey(tagId))) {
+
+            return;
+        }
+
+        if (type == CRDLogBinaryEncoder.RECORD_TEXT) {
+
+            message = readRemainingText();
+
+        } else {
+
+            String format = formats.get((int) readVarint());
+            if (format == null) {
+
+                return;
+            }
+
+            Object[] args = new Object[(int) readVarint()];
+            for (int i = 0; i < args.length; i++) {
+
+                args[i] = readArg();
+            }
+
+            message = CRDLogTextEncoder.format(format, args);
+        }
+
+        messageTag = tags.get(tagId);
+        messageLevel = LEVELS[levelOrdinal];
+    }
+
+    /**
+     * Decodes a format message parameter from the payload.
+     *
+     * @return The parameter.
+     */
+    private Object readArg() {
+
+        switch (readByte()) {
+
+            case CRDLogBinaryEncoder.ARG_STRING:
+                int length = (int) readVarint();
+                String value = new String(payload, payloadPosition, Math.min(length, payloadLength - payloadPosition), UTF8);
+                payloadPosition += length;
+                return value;
+
+            case CRDLogBinaryEncoder.ARG_INT:
+                return (int) readZigZag();
+
+            case CRDLogBinaryEncoder.ARG_LONG:
+                return readZigZag();
+
+            case CRDLogBinaryEncoder.ARG_SHORT:
+                return (short) readZigZag();
+
+            case CRDLogBinaryEncoder.ARG_BYTE:
+                return (byte) readByte();
+
+            case CRDLogBinaryEncoder.ARG_BOOLEAN:
+                return readByte() != 0;
+
+            case CRDLogBinaryEncoder.ARG_CHAR:
+                return (char) readVarint();
+
+            case CRDLogBinaryEncoder.ARG_FLOAT:
+                return Float.intBitsToFloat((int) readVarint());
+
+            case CRDLogBinaryEncoder.ARG_DOUBLE:
+                long bits = 0;
+                for (int i = 0; i < 8; i++) {
+
+                    bits = (bits << 8) | readByte();
+                }
+                return Double.longBitsToDouble(bits);
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Reads the payload of the current record from the stream.
+     *
+     * @param length The length of the payload.
+     *
+     * @return True if the whole payload was read, or false if the records ran out first.
+     *
+     * @throws IOException If the records could not be read.
+     */
+    private boolean readPayload(int length) throws IOException {
+
+        if (payload.length < length) {
+
+            payload = new byte[Math.max(length, payload.length * 2)];
+        }
+
+        int read = 0;
+        while (read < length) {
+
+            int count = in.read(payload, read, length - read);
+            if (count < 0) {
+
+                return false;
+            }
+
+            read += count;
+        }
+
+        position += length;
+        payloadLength = length;
+        payloadPosition = 0;
+
+        return true;
+    }
+
+    /**
+     * Reads a variable-length integer from the stream.
+     *
+     * @return The value, or -1 if the records ran out first.
+     *
+     * @throws IOException If the records could not be read.
+     */
+    private long readStreamVarint() throws IOException {
+
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+
+            int b = in.read();
+            if (b < 0) {
+
+                return -1;
+            }
+
+            position++;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+
+                return value;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Decodes a byte from the payload.
+     *
+     * @return The byte as an unsigned value, or zero past the end of the payload.
+     */
+    private int readByte() {
+
+        return payloadPosition < payloadLength ? payload[payloadPosition++] & 0xFF : 0;
+    }
+
+    /**
+     * Decodes a variable-length integer from the payload.
+     *
+     * @return The value.
+     */
+    private long readVarint() {
+
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+
+                break;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Decodes a zigzag-encoded variable-length integer from the payload.
+     *
+     * @return The value.
+     */
+    private long readZigZag() {
+
+        long value = readVarint();
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Decodes the rest of the payload as UTF-8 text.
+     *
+     * @return The text.
+     */
+    private String readRemainingText() {
+
+        String text = new String(payload, payloadPosition, payloadLength - payloadPosition, UTF8);
+        payloadPosition = payloadLength;
+
+        return text;
+    }
+
+    //endregion
+}
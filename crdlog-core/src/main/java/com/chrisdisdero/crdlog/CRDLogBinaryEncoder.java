@@ -0,0 +1,401 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class that encodes messages as compact binary records, for the {@link CRDLogFormat#BINARY} format.
+ *
+ * A binary log file starts with {@link #MAGIC}, followed by records each laid out as a record type byte, the
+ * length of the payload as a variable-length integer, and the payload, so a reader can skip any record it does
+ * not need.  Tags and format strings are given ids in a dictionary the first time they are used in a file, which
+ * is written as a definition record, so a message record only holds the level, the tag id, the time since the
+ * previous message as a zigzag variable-length integer, the format id and the typed format message parameters.
+ * A message whose parameters cannot be stored by type, or that has no parameters at all, is stored as a text
+ * record holding the formatted message instead.
+ *
+ * Because ids and timestamps depend on the records before them, a reset record is written whenever the encoder
+ * starts from scratch, such as when it starts appending to a file left by a previous run, and a reader clears its
+ * dictionary on a reset record.  Each batch of records ends with {@link #BATCH_END}, which keeps the last byte of
+ * the content from being zero, as the {@link CRDLogMappedAppender} requires.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogBinaryEncoder implements CRDLogRecordEncoder {
+
+    //region Package members
+
+    /**
+     * The bytes at the start of a binary log file.  A text log file can never start with a zero byte.
+     */
+    static final byte[] MAGIC = { 0, 'C', 'R', 'D', 'L', 1 };
+
+    /**
+     * Record that clears the dictionary and the previous timestamp.  It has no payload.
+     */
+    static final int RECORD_RESET = 1;
+
+    /**
+     * Record holding the header provided for the log file, as UTF-8 text.
+     */
+    static final int RECORD_HEADER = 2;
+
+    /**
+     * Record defining a tag: its id, then the tag as UTF-8 text.
+     */
+    static final int RECORD_TAG = 3;
+
+    /**
+     * Record defining a format: its id, then the format as UTF-8 text.
+     */
+    static final int RECORD_FORMAT = 4;
+
+    /**
+     * Record holding a message by its format: the level, the tag id, the timestamp delta, the format id, the
+     * number of parameters and the typed parameters.
+     */
+    static final int RECORD_MESSAGE = 5;
+
+    /**
+     * Record holding a formatted message: the level, the tag id, the timestamp delta, then the message as UTF-8
+     * text.
+     */
+    static final int RECORD_TEXT = 6;
+
+    /**
+     * Byte written on its own at the end of each batch of records.
+     */
+    static final int BATCH_END = 0xFF;
+
+    /**
+     * The tag id standing for a null tag.
+     */
+    static final int NULL_TAG = 0;
+
+    /**
+     * The types of the format message parameters stored in a message record.
+     */
+    static final int ARG_NULL = 0;
+    static final int ARG_STRING = 1;
+    static final int ARG_INT = 2;
+    static final int ARG_LONG = 3;
+    static final int ARG_SHORT = 4;
+    static final int ARG_BYTE = 5;
+    static final int ARG_BOOLEAN = 6;
+    static final int ARG_CHAR = 7;
+    static final int ARG_FLOAT = 8;
+    static final int ARG_DOUBLE = 9;
+
+    //endregion
+
+    //region Private members
+
+    /**
+     * The number of tags or formats in the dictionary beyond which it is started over, so a log that uses
+     * many different ones does not keep growing it.
+     */
+    private static final int MAX_DICTIONARY_SIZE = 4096;
+
+    /**
+     * The ids of the tags defined in the file being written.
+     */
+    private final Map<String, Integer> tags = new HashMap<>();
+
+    /**
+     * The ids of the formats defined in the file being written.
+     */
+    private final Map<String, Integer> formats = new HashMap<>();
+
+    /**
+     * The reusable buffer in which the payload of each record is encoded.
+     */
+    private final CRDLogByteBuffer payload = new CRDLogByteBuffer(256);
+
+    /**
+     * Flag indicating whether a reset record was written for the current state of the encoder.
+     */
+    private boolean started = false;
+
+    /**
+     * The timestamp of the previous message record.
+     */
+    private long previousTimestamp = 0;
+
+    //endregion
+
+    //region CRDLogRecordEncoder
+
+    @Override
+    public void encodeHeader(String header, CRDLogByteBuffer out) {
+
+        reset();
+        out.writeBytes(MAGIC, 0, MAGIC.length);
+        startIfNeeded(out);
+
+        if (header != null && header.length() > 0) {
+
+            payload.clear();
+            payload.writeUtf8(header);
+            writeRecord(RECORD_HEADER, out);
+        }
+    }
+
+    @Override
+    public void encode(CRDLogEvent event, CRDLogByteBuffer out) {
+
+        if (tags.size() >= MAX_DICTIONARY_SIZE || formats.size() >= MAX_DICTIONARY_SIZE) {
+
+            reset();
+        }
+
+        startIfNeeded(out);
+
+        int tagId = defineTag(event.tag, out);
+
+        // Messages without parameters gain nothing from a format, and would only fill up the dictionary.  A
+        // malformed format, which the writer falls back to as the message itself, is stored as text as well.
+        boolean byFormat = event.format != null && event.message != event.format && event.args != null
+                && event.args.length > 0 && isEncodable(event.args);
+        int formatId = byFormat ? defineFormat(event.format, out) : 0;
+
+        payload.clear();
+        payload.writeByte(event.level.ordinal());
+        payload.writeVarint(tagId);
+        payload.writeZigZag(event.timestamp - previousTimestamp);
+        previousTimestamp = event.timestamp;
+
+        if (byFormat) {
+
+            payload.writeVarint(formatId);
+            payload.writeVarint(event.args.length);
+            for (Object arg : event.args) {
+
+                writeArg(arg);
+            }
+
+            writeRecord(RECORD_MESSAGE, out);
+
+        } else {
+
+            payload.writeUtf8(event.message != null ? event.message : "null");
+            writeRecord(RECORD_TEXT, out);
+        }
+    }
+
+    @Override
+    public void encodeBatchEnd(CRDLogByteBuffer out) {
+
+        out.writeByte(BATCH_END);
+    }
+
+    @Override
+    public void reset() {
+
+        // Nothing needs forgetting if no message was encoded since the last reset record.
+        if (started && tags.isEmpty() && formats.isEmpty() && previousTimestamp == 0) {
+
+            return;
+        }
+
+        tags.clear();
+        formats.clear();
+        started = false;
+        previousTimestamp = 0;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Writes a reset record if none was written since the encoder was last reset.
+     *
+     * @param out The {@link CRDLogByteBuffer} to encode into.
+     */
+    private void startIfNeeded(CRDLogByteBuffer out) {
+
+        if (started) {
+
+            return;
+        }
+
+        out.writeByte(RECORD_RESET);
+        out.writeVarint(0);
+        started = true;
+    }
+
+    /**
+     * Gets the id of the specified tag, writing a definition record for it first if it is new.
+     *
+     * @param tag The tag, or null.
+     * @param out The {@link CRDLogByteBuffer} to encode into.
+     *
+     * @return The id of the tag.
+     */
+    private int defineTag(String tag, CRDLogByteBuffer out) {
+
+        if (tag == null) {
+
+            return NULL_TAG;
+        }
+
+        Integer id = tags.get(tag);
+        if (id == null) {
+
+            id = tags.size() + 1;
+            tags.put(tag, id);
+            writeDefinition(RECORD_TAG, id, tag, out);
+        }
+
+        return id;
+    }
+
+    /**
+     * Gets the id of the specified format, writing a definition record for it first if it is new.
+     *
+     * @param format The format.
+     * @param out The {@link CRDLogByteBuffer} to encode into.
+     *
+     * @return The id of the format.
+     */
+    private int defineFormat(String format, CRDLogByteBuffer out) {
+
+        Integer id = formats.get(format);
+        if (id == null) {
+
+            id = formats.size() + 1;
+            formats.put(format, id);
+            writeDefinition(RECORD_FORMAT, id, format, out);
+        }
+
+        return id;
+    }
+
+    /**
+     * Writes a dictionary definition record.
+     *
+     * @param type The record type.
+     * @param id The id being defined.
+     * @param value The value the id stands for.
+     * @param out The {@link CRDLogByteBuffer} to encode into.
+     */
+    private void writeDefinition(int type, int id, String value, CRDLogByteBuffer out) {
+
+        payload.clear();
+        payload.writeVarint(id);
+        payload.writeUtf8(value);
+        writeRecord(type, out);
+    }
+
+    /**
+     * Writes a record holding the payload encoded so far.
+     *
+     * @param type The record type.
+     * @param out The {@link CRDLogByteBuffer} to encode into.
+     */
+    private void writeRecord(int type, CRDLogByteBuffer out) {
+
+        out.writeByte(type);
+        out.writeVarint(payload.size());
+        out.writeBuffer(payload);
+    }
+
+    /**
+     * Checks whether all the specified format message parameters can be stored by type.
+     *
+     * @param args The format message parameters.
+     *
+     * @return True if all the parameters can be stored by type.
+     */
+    private static boolean isEncodable(Object[] args) {
+
+        for (Object arg : args) {
+
+            if (arg != null && !(arg instanceof String) && !(arg instanceof Integer) && !(arg instanceof Long)
+                    && !(arg instanceof Short) && !(arg instanceof Byte) && !(arg instanceof Boolean)
+                    && !(arg instanceof Character) && !(arg instanceof Float) && !(arg instanceof Double)) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes a format message parameter to the payload, preceded by its type.
+     *
+     * @param arg The parameter, which must be one accepted by {@link #isEncodable(Object[])}.
+     */
+    private void writeArg(Object arg) {
+
+        if (arg == null) {
+
+            payload.writeByte(ARG_NULL);
+
+        } else if (arg instanceof String) {
+
+            String value = (String) arg;
+            payload.writeByte(ARG_STRING);
+            payload.writeVarint(CRDLogByteBuffer.utf8Length(value));
+            payload.writeUtf8(value);
+
+        } else if (arg instanceof Integer) {
+
+            payload.writeByte(ARG_INT);
+            payload.writeZigZag((Integer) arg);
+
+        } else if (arg instanceof Long) {
+
+            payload.writeByte(ARG_LONG);
+            payload.writeZigZag((Long) arg);
+
+        } else if (arg instanceof Short) {
+
+            payload.writeByte(ARG_SHORT);
+            payload.writeZigZag((Short) arg);
+
+        } else if (arg instanceof Byte) {
+
+            payload.writeByte(ARG_BYTE);
+            payload.writeByte((Byte) arg);
+
+        } else if (arg instanceof Boolean) {
+
+            payload.writeByte(ARG_BOOLEAN);
+            payload.writeByte((Boolean) arg ? 1 : 0);
+
+        } else if (arg instanceof Character) {
+
+            payload.writeByte(ARG_CHAR);
+            payload.writeVarint((Character) arg);
+
+        } else if (arg instanceof Float) {
+
+            payload.writeByte(ARG_FLOAT);
+            payload.writeVarint(Float.floatToRawIntBits((Float) arg) & 0xFFFFFFFFL);
+
+        } else {
+
+            payload.writeByte(ARG_DOUBLE);
+            payload.writeLong(Double.doubleToRawLongBits((Double) arg));
+        }
+    }
+
+    //endregion
+}
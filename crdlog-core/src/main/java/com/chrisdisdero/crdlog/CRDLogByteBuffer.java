@@ -0,0 +1,371 @@
+package com.chrisdisdero.crdlog;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Class that represents a reusable, growable buffer of bytes into which log content is encoded.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogByteBuffer {
+
+    //region Private members
+
+    /**
+     * The bytes of the buffer.
+     */
+    private byte[] data;
+
+    /**
+     * The number of bytes written to the buffer.
+     */
+    private int size = 0;
+
+    /**
+     * The reusable array the characters to encode as UTF-8 are copied into.
+     */
+    private char[] chars = new char[256];
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogByteBuffer} object.
+     *
+     * @param capacity The initial capacity of the buffer in bytes.
+     */
+    CRDLogByteBuffer(int capacity) {
+
+        data = new byte[capacity];
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Gets the number of bytes written to the buffer.
+     *
+     * @return The size of the buffer in bytes.
+     */
+    int size() {
+
+        return size;
+    }
+
+    /**
+     * Empties the buffer, keeping its capacity for reuse.
+     */
+    void clear() {
+
+        size = 0;
+    }
+
+    /**
+     * Gets the bytes of the buffer, valid up to {@link #size()} until the next write.
+     *
+     * @return The array backing the buffer.
+     */
+    byte[] array() {
+
+        return data;
+    }
+
+    /**
+     * Wraps the bytes written to the buffer for writing to a channel.
+     *
+     * @return A {@link ByteBuffer} over the bytes written to the buffer.
+     */
+    ByteBuffer toByteBuffer() {
+
+        return ByteBuffer.wrap(data, 0, size);
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param value The byte to write, in the low 8 bits.
+     */
+    void writeByte(int value) {
+
+        ensureCapacity(1);
+        data[size++] = (byte) value;
+    }
+
+    /**
+     * Writes a range of bytes.
+     *
+     * @param bytes The array holding the bytes to write.
+     * @param offset The offset of the first byte to write.
+     * @param length The number of bytes to write.
+     */
+    void writeBytes(byte[] bytes, int offset, int length) {
+
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, data, size, length);
+        size += length;
+    }
+
+    /**
+     * Writes the content of another buffer.
+     *
+     * @param buffer The {@link CRDLogByteBuffer} to write.
+     */
+    void writeBuffer(CRDLogByteBuffer buffer) {
+
+        writeBytes(buffer.data, 0, buffer.size);
+    }
+
+    /**
+     * Writes an unsigned value as a variable-length integer of 7 bits per byte, low bits first.
+     *
+     * @param value The value to write, treated as unsigned.
+     */
+    void writeVarint(long value) {
+
+        ensureCapacity(10);
+
+        while ((value & ~0x7FL) != 0) {
+
+            data[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        data[size++] = (byte) value;
+    }
+
+    /**
+     * Writes a signed value as a zigzag-encoded variable-length integer, so small negative values stay short.
+     *
+     * @param value The value to write.
+     */
+    void writeZigZag(long value) {
+
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a value as 4 bytes, high bits first.
+     *
+     * @param value The value to write.
+     */
+    void writeInt(int value) {
+
+        ensureCapacity(4);
+
+        for (int shift = 24; shift >= 0; shift -= 8) {
+
+            data[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes a value as 8 bytes, high bits first.
+     *
+     * @param value The value to write.
+     */
+    void writeLong(long value) {
+
+        ensureCapacity(8);
+
+        for (int shift = 56; shift >= 0; shift -= 8) {
+
+            data[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes the specified characters, all of which must be ASCII, a byte per character.
+     *
+     * @param chars The array holding the characters to write.
+     * @param offset The offset of the first character to write.
+     * @param length The number of characters to write.
+     */
+    void writeAscii(char[] chars, int offset, int length) {
+
+        ensureCapacity(length);
+
+        for (int i = offset; i < offset + length; i++) {
+
+            data[size++] = (byte) chars[i];
+        }
+    }
+
+    /**
+     * Writes the specified number of spaces.
+     *
+     * @param count The number of spaces to write, or zero or less to write none.
+     */
+    void writeSpaces(int count) {
+
+        if (count <= 0) {
+
+            return;
+        }
+
+        ensureCapacity(count);
+
+        for (int i = 0; i < count; i++) {
+
+            data[size++] = ' ';
+        }
+    }
+
+    /**
+     * Writes the specified string encoded as UTF-8.  The characters are copied out of the string in bulk first, so
+     * they are encoded from an array rather than one call at a time.
+     *
+     * @param string The string to write.
+     */
+    void writeUtf8(String string) {
+
+        int length = string.length();
+        if (chars.length < length) {
+
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+
+        string.getChars(0, length, chars, 0);
+        writeUtf8(chars, length);
+    }
+
+    /**
+     * Gets the number of bytes the specified characters take when encoded as UTF-8 by {@link #writeUtf8(String)}.
+     *
+     * @param chars The characters to measure.
+     *
+     * @return The length of the characters in bytes.
+     */
+    static int utf8Length(CharSequence chars) {
+
+        int length = chars.length();
+        int bytes = 0;
+
+        for (int i = 0; i < length; i++) {
+
+            char c = chars.charAt(i);
+
+            if (c < 0x80) {
+
+                bytes++;
+
+            } else if (c < 0x800) {
+
+                bytes += 2;
+
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+
+                bytes += 4;
+                i++;
+
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+
+                bytes++;
+
+            } else {
+
+                bytes += 3;
+            }
+        }
+
+        return bytes;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Writes the specified characters encoded as UTF-8.
+     *
+     * @param chars The array holding the characters to write.
+     * @param length The number of characters to write, from the start of the array.
+     */
+    private void writeUtf8(char[] chars, int length) {
+
+        ensureCapacity(length * 3);
+
+        // Most of what is logged is ASCII, so copy a byte per character up to the first one that isn't.
+        int i = 0;
+        for (; i < length; i++) {
+
+            char c = chars[i];
+            if (c >= 0x80) {
+
+                break;
+            }
+
+            data[size++] = (byte) c;
+        }
+
+        for (; i < length; i++) {
+
+            char c = chars[i];
+
+            if (c < 0x80) {
+
+                data[size++] = (byte) c;
+
+            } else if (c < 0x800) {
+
+                data[size++] = (byte) (0xC0 | (c >> 6));
+                data[size++] = (byte) (0x80 | (c & 0x3F));
+
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+
+                int codePoint = Character.toCodePoint(c, chars[++i]);
+                data[size++] = (byte) (0xF0 | (codePoint >> 18));
+                data[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                data[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                data[size++] = (byte) (0x80 | (codePoint & 0x3F));
+
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+
+                // An unpaired surrogate cannot be encoded, so write a replacement, as String.getBytes() would.
+                data[size++] = (byte) '?';
+
+            } else {
+
+                data[size++] = (byte) (0xE0 | (c >> 12));
+                data[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                data[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Grows the buffer if needed so it can take the specified number of additional bytes.
+     *
+     * @param additional The number of bytes about to be written.
+     */
+    private void ensureCapacity(int additional) {
+
+        int required = size + additional;
+        if (required <= data.length) {
+
+            return;
+        }
+
+        byte[] grown = new byte[Math.max(required, data.length * 2)];
+        System.arraycopy(data, 0, grown, 0, size);
+        data = grown;
+    }
+
+    //endregion
+}
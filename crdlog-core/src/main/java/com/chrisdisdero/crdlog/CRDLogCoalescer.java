@@ -0,0 +1,273 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Class that recognizes repeats of recent messages of a {@link CRDLog}, so they can be left out and summed up in a
+ * single line instead, such as when a retry loop logs the same warning over and over.
+ *
+ * The recent messages are watched in a table with a fixed number of slots, each message going to the slot picked
+ * by the hash of its level, tag and text, so each check is a single lookup.  A message that is not a repeat takes
+ * over its slot, and if the message it pushes out was repeated, the summary of the repeats is handed back to be
+ * written first.  Repeats are coalesced until the window of the message has passed, after which its summary is
+ * handed back by {@link #nextExpired(long, CRDLogEvent)} and the next repeat is written again.  It is only used on
+ * the writer thread of the log.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogCoalescer {
+
+    //region Private members
+
+    /**
+     * The time in milliseconds after a message is written over which its repeats are coalesced.
+     */
+    private final long windowMillis;
+
+    /**
+     * The slots of the recent messages watched, each holding the message written and the number of repeats left
+     * out since, or null if empty.
+     */
+    private final CRDLogEvent[] slots;
+
+    /**
+     * The timestamp of the last repeat left out of the message in each slot.
+     */
+    private final long[] lastRepeats;
+
+    /**
+     * The number of repeats left out of the message in each slot, not yet summed up.
+     */
+    private final long[] repeats;
+
+    /**
+     * The slot of the message last written, or -1 if another line was written since, to tell whether a summary
+     * follows right after the message repeated.
+     */
+    private int lastSlot = -1;
+
+    /**
+     * The number of slots with repeats not yet summed up.
+     */
+    private int repeating = 0;
+
+    /**
+     * The slot from which {@link #nextExpired(long, CRDLogEvent)} carries on looking.
+     */
+    private int scanPosition = 0;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogCoalescer} object.
+     *
+     * @param windowMillis The time in milliseconds after a message is written over which its repeats are coalesced.
+     * @param capacity The number of distinct recent messages watched, which must be a power of two.
+     */
+    CRDLogCoalescer(long windowMillis, int capacity) {
+
+        this.windowMillis = windowMillis;
+        this.slots = new CRDLogEvent[capacity];
+        this.lastRepeats = new long[capacity];
+        this.repeats = new long[capacity];
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Checks whether a message is a repeat to leave out.  If not, the message is watched from now on in place of
+     * the one in its slot, and if that one was repeated, the summary of its repeats is set in the specified event,
+     * to be written before the message.
+     *
+     * @param event The {@link CRDLogEvent} of the message, whose message is already formatted.
+     * @param summary The {@link CRDLogEvent} set to the summary of the repeats of the message pushed out, if any.
+     *
+     * @return True if the message is a repeat to leave out.
+     */
+    boolean coalesce(CRDLogEvent event, CRDLogEvent summary) {
+
+        int hash = event.level.ordinal() * 31 + (event.tag != null ? event.tag.hashCode() : 0);
+        hash = hash * 31 + event.message.hashCode();
+
+        // Spread the high bits into the low ones used to pick the slot.
+        hash ^= hash >>> 16;
+        int slot = hash & (slots.length - 1);
+
+        CRDLogEvent watched = slots[slot];
+
+        if (watched != null && event.timestamp - watched.timestamp < windowMillis && watched.level == event.level
+                && equals(watched.tag, event.tag) && watched.message.equals(event.message)) {
+
+            if (repeats[slot]++ == 0) {
+
+                repeating++;
+            }
+
+            lastRepeats[slot] = event.timestamp;
+
+            return true;
+        }
+
+        if (watched != null) {
+
+            summarize(slot, lastSlot == slot, summary);
+
+        } else {
+
+            watched = new CRDLogEvent();
+            slots[slot] = watched;
+        }
+
+        // Only a message written counts as the last one, not a repeat left out.
+        lastSlot = slot;
+
+        watched.timestamp = event.timestamp;
+        watched.level = event.level;
+        watched.tag = event.tag;
+        watched.message = event.message;
+        watched.writeToFile = event.writeToFile;
+
+        return false;
+    }
+
+    /**
+     * Finds the next message whose window has passed with repeats not yet summed up, and sets the summary of its
+     * repeats in the specified event.  Called until it returns false, it goes through all the slots once.
+     *
+     * @param now The current time in milliseconds since the epoch, or Long.MAX_VALUE to sum up all the repeats.
+     * @param summary The {@link CRDLogEvent} set to the summary of the repeats, if any.
+     *
+     * @return True if a summary was set, or false if there are no more.
+     */
+    boolean nextExpired(long now, CRDLogEvent summary) {
+
+        while (repeating > 0 && scanPosition < slots.length) {
+
+            int slot = scanPosition++;
+
+            if (repeats[slot] > 0 && (now == Long.MAX_VALUE || now - slots[slot].timestamp >= windowMillis)) {
+
+                summarize(slot, lastSlot == slot, summary);
+
+                // The window is over, so the next repeat is written again.
+                slots[slot].clear();
+                slots[slot] = null;
+
+                // The summary is written after the message, so it is no longer the last one.
+                lastSlot = -1;
+
+                return true;
+            }
+        }
+
+        scanPosition = 0;
+
+        return false;
+    }
+
+    /**
+     * Notes that a line was written that the coalescer did not check, so a summary that follows doesn't refer to
+     * the message last written as the last message.
+     */
+    void otherLineWritten() {
+
+        lastSlot = -1;
+    }
+
+    /**
+     * Forgets all the messages watched and the repeats left out of them, not yet summed up, such as when the log
+     * is cleared and the messages are no longer in the log file.
+     */
+    void reset() {
+
+        for (int slot = 0; slot < slots.length; slot++) {
+
+            if (slots[slot] != null) {
+
+                slots[slot].clear();
+                slots[slot] = null;
+            }
+
+            repeats[slot] = 0;
+        }
+
+        lastSlot = -1;
+        repeating = 0;
+        scanPosition = 0;
+    }
+
+    /**
+     * Checks whether any repeats are not yet summed up.
+     *
+     * @return True if there are repeats to sum up once their window has passed.
+     */
+    boolean hasRepeats() {
+
+        return repeating > 0;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Sets the summary of the repeats of the message in the specified slot, if any, and resets the count.
+     *
+     * @param slot The slot of the message.
+     * @param consecutive True if no other message was checked since the last repeat.
+     * @param summary The {@link CRDLogEvent} set to the summary of the repeats, if any.
+     */
+    private void summarize(int slot, boolean consecutive, CRDLogEvent summary) {
+
+        long count = repeats[slot];
+        if (count == 0) {
+
+            return;
+        }
+
+        CRDLogEvent watched = slots[slot];
+        long elapsed = lastRepeats[slot] - watched.timestamp;
+        String times = count + (count == 1 ? " time" : " times") + " in " + elapsed + " ms";
+
+        summary.timestamp = lastRepeats[slot];
+        summary.level = watched.level;
+        summary.tag = watched.tag;
+        summary.message = consecutive ? "Last message repeated " + times + "." : "Message repeated " + times + ": " + watched.message;
+        summary.writeToFile = watched.writeToFile;
+
+        repeats[slot] = 0;
+        repeating--;
+    }
+
+    /**
+     * Compares two tags, either of which may be null.
+     *
+     * @param first The first tag.
+     * @param second The second tag.
+     *
+     * @return True if the tags are the same.
+     */
+    private static boolean equals(String first, String second) {
+
+        return first == null ? second == null : first.equals(second);
+    }
+
+    //endregion
+}
@@ -0,0 +1,221 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Class that compresses closed log segments with GZIP on a low priority background thread.
+ *
+ * A segment is compressed into a temporary file next to it, which is then renamed to the segment name with a
+ * ".gz" extension added, after which the uncompressed segment is deleted.  The rename and delete are done while
+ * holding the lock of the {@link CRDLogSegments}, so the log writer thread never sees a segment vanish while it
+ * lists or opens the segments, and a segment deleted by the writer in the meantime is not brought back.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogCompressor {
+
+    //region Package members
+
+    /**
+     * The extension added to the name of a compressed segment.
+     */
+    static final String EXTENSION = ".gz";
+
+    //endregion
+
+    //region Private members
+
+    /**
+     * Log tag for this class.
+     */
+    private static final String TAG = CRDLogCompressor.class.getCanonicalName();
+
+    /**
+     * The extension added to the name of a segment while it is being compressed.
+     */
+    private static final String TEMPORARY_EXTENSION = ".gz.tmp";
+
+    /**
+     * The size of the buffer used to copy a segment into its compressed file.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The segments of the log, whose lock guards the files being replaced.
+     */
+    private final CRDLogSegments segments;
+
+    /**
+     * The execution queue for the compression tasks, on a single low priority thread.
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+            Thread thread = new Thread(runnable, "CRDLog-compressor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            return thread;
+        }
+    });
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogCompressor} object.
+     *
+     * @param segments The {@link CRDLogSegments} of the log.
+     */
+    CRDLogCompressor(CRDLogSegments segments) {
+
+        this.segments = segments;
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Queues up the specified closed segment to be compressed.
+     *
+     * @param segment The {@link File} of the segment, which is no longer written to.
+     */
+    void compress(final File segment) {
+
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                compressNow(segment);
+            }
+        });
+    }
+
+    /**
+     * Lets the compressor thread end once the segments already queued up are compressed.
+     */
+    void shutdown() {
+
+        executor.shutdown();
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Compresses the specified segment and replaces it with the compressed file.
+     *
+     * @param segment The {@link File} of the segment.
+     */
+    private void compressNow(File segment) {
+
+        File temporary = new File(segment.getPath() + TEMPORARY_EXTENSION);
+        InputStream inputStream = null;
+        FileOutputStream fileOutputStream = null;
+        GZIPOutputStream outputStream = null;
+        boolean wasSuccessful = false;
+
+        try {
+
+            inputStream = new FileInputStream(segment);
+            fileOutputStream = new FileOutputStream(temporary);
+            outputStream = new GZIPOutputStream(fileOutputStream, BUFFER_SIZE);
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = inputStream.read(buffer)) > 0) {
+
+                outputStream.write(buffer, 0, count);
+            }
+
+            // The segment is deleted once replaced, so the compressed file must be complete on the storage device first.
+            outputStream.finish();
+            fileOutputStream.getFD().sync();
+
+            outputStream.close();
+            outputStream = null;
+            wasSuccessful = true;
+
+        } catch (IOException exception) {
+
+            // The segment may simply have been deleted by a clear in the meantime.
+            if (segment.exists()) {
+
+                CRDLogPlatform.error(TAG, "Failed to compress log segment.", exception);
+            }
+
+        } finally {
+
+            close(inputStream);
+            close(outputStream);
+            close(fileOutputStream);
+        }
+
+        synchronized (segments) {
+
+            // Only replace the segment if the log writer has not deleted it in the meantime.
+            if (wasSuccessful && segment.exists() && temporary.renameTo(new File(segment.getPath() + EXTENSION))) {
+
+                segment.delete();
+
+            } else {
+
+                temporary.delete();
+            }
+        }
+    }
+
+    /**
+     * Closes the specified stream, ignoring any error.
+     *
+     * @param stream The stream to close, or null.
+     */
+    private static void close(Closeable stream) {
+
+        if (stream == null) {
+
+            return;
+        }
+
+        try {
+
+            stream.close();
+
+        } catch (IOException exception) {
+
+            // Nothing more to do.
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,40 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Interface that prints the messages logged by {@link CRDLog} to the console of the platform, such as logcat on
+ * Android or the standard output of a plain Java process.
+ *
+ * The console is called on the writer thread of the log, one message at a time and in the order they were logged,
+ * so an implementation doesn't have to be thread safe but should return quickly.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public interface CRDLogConsole {
+
+    /**
+     * Prints a message to the console.
+     *
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The tag of the message.
+     * @param message The message, or the stack trace of the throwable if one was logged.
+     * @param throwable The {@link Throwable} logged, or null if none.
+     *
+     * @return True if the message was printed and should also be written to the log file.
+     */
+    boolean print(CRDLogLevel level, String tag, String message, Throwable throwable);
+}
@@ -0,0 +1,38 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Interface that allows the caller to take over the files holding the contents of the log represented by
+ * {@link CRDLog}, such as to upload them, while the log starts over with new ones.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public interface CRDLogDrainInterface {
+
+    /**
+     * The files the content of the log was moved to, which are no longer part of the log and are the caller's to
+     * delete once done with them.
+     *
+     * @param logFiles The {@link List} of {@link File}s holding the content of the log, oldest first, in the
+     *                 format of the log file, each compressed with GZIP if its name ends with '.gz'.  The list is
+     *                 empty if there was no content.
+     */
+    void onLogDrained(List<File> logFiles);
+}
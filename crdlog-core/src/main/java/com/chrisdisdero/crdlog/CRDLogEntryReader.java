@@ -0,0 +1,412 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Class that reads the content of a log file one entry at a time, along with the timestamp of each entry and its
+ * offset in the file, whatever the format of the file.
+ *
+ * An entry is the text of one message, from its timestamp up to and including the "\r\n" ending it, so an entry
+ * keeps any line breaks within its message.  A "\r\n" only ends an entry if the next entry starts with a
+ * timestamp right after it, or the file ends there, so one within the message doesn't.  When reading a text file from its start, the header the file may
+ * start with is skipped.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogEntryReader {
+
+    //region Private members
+
+    /**
+     * The character set of the text of the log.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The stream over the log file.
+     */
+    private final InputStream stream;
+
+    /**
+     * The decoder of the log file if it is in the binary format, or null if it is a text file.
+     */
+    private final CRDLogBinaryDecoder decoder;
+
+    /**
+     * The decoder for the timestamp at the start of each entry of a text file.
+     */
+    private final CRDLogTimestampEncoder timestampDecoder;
+
+    /**
+     * The buffer of bytes read from a text file.
+     */
+    private final byte[] buffer = new byte[8192];
+
+    /**
+     * The position in the buffer of the next byte to read.
+     */
+    private int bufferPosition = 0;
+
+    /**
+     * The number of bytes in the buffer.
+     */
+    private int bufferLength = 0;
+
+    /**
+     * The bytes of the current entry of a text file.
+     */
+    private final CRDLogByteBuffer entryBytes = new CRDLogByteBuffer(256);
+
+    /**
+     * The offset in a text file of the next byte to read.
+     */
+    private long position;
+
+    /**
+     * Flag indicating whether the header of a text file is still to be skipped.
+     */
+    private boolean skippingHeader;
+
+    /**
+     * The text of the current entry.
+     */
+    private String entry = null;
+
+    /**
+     * The offset in the file of the current entry.
+     */
+    private long entryOffset = 0;
+
+    /**
+     * The timestamp of the current entry, or {@link Long#MIN_VALUE} if it does not start with one.
+     */
+    private long timestamp = Long.MIN_VALUE;
+
+    /**
+     * The text of the buffer from the next byte to read, to look ahead for the timestamp of the next entry.
+     */
+    private final CharSequence lookahead = new CharSequence() {
+
+        @Override
+        public int length() {
+
+            return bufferLength - bufferPosition;
+        }
+
+        @Override
+        public char charAt(int index) {
+
+            return (char) (buffer[bufferPosition + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+
+            return new String(buffer, bufferPosition + start, end - start, UTF8);
+        }
+    };
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogEntryReader} object.
+     *
+     * @param stream The {@link InputStream} over the log file, from its start, which the reader takes over.
+     * @param checkpoint The offset in the file of an index point at or before the start, from which a file in
+     *                   the binary format can be decoded, or zero to decode it from its start.
+     * @param start The offset in the file of the first entry to read, or zero to read the file from its start.
+     * @param timestampDecoder The {@link CRDLogTimestampEncoder} used to decode the timestamp of each entry.
+     *
+     * @throws IOException If the file could not be read up to the start.
+     */
+    CRDLogEntryReader(InputStream stream, long checkpoint, long start, CRDLogTimestampEncoder timestampDecoder) throws IOException {
+
+        this.stream = stream;
+        this.timestampDecoder = timestampDecoder;
+
+        try {
+
+            int length = CRDLogBinaryDecoder.readStart(stream, buffer);
+
+            if (CRDLogBinaryDecoder.isMagic(buffer, length)) {
+
+                decoder = new CRDLogBinaryDecoder(stream, skip(length, Math.min(checkpoint, start)));
+                decoder.skipTo(start);
+
+            } else {
+
+                decoder = null;
+                skippingHeader = start == 0;
+
+                // Keep whatever was read of the start of the file that is past the start of the entries.
+                if (start < length) {
+
+                    bufferPosition = (int) start;
+                    bufferLength = length;
+                    position = start;
+
+                } else {
+
+                    position = skip(length, start);
+                }
+            }
+
+        } catch (IOException exception) {
+
+            close();
+            throw exception;
+        }
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Reads the next entry.
+     *
+     * @return True if an entry was read, or false if there are no more entries.
+     *
+     * @throws IOException If the log could not be read.
+     */
+    boolean next() throws IOException {
+
+        if (decoder != null) {
+
+            if (!decoder.nextMessage()) {
+
+                return false;
+            }
+
+            entry = decoder.messageLine();
+            entryOffset = decoder.messageOffset();
+            timestamp = decoder.messageTimestamp();
+
+            return true;
+        }
+
+        while (true) {
+
+            entryBytes.clear();
+            entryOffset = position;
+
+            int previous = -1;
+            int b;
+            while ((b = readByte()) >= 0) {
+
+                entryBytes.writeByte(b);
+                if (b == '\n' && previous == '\r' && isAtEntryStart()) {
+
+                    break;
+                }
+
+                previous = b;
+            }
+
+            if (entryBytes.size() == 0) {
+
+                return false;
+            }
+
+            entry = new String(entryBytes.array(), 0, entryBytes.size(), UTF8);
+
+            if (skippingHeader && !skipHeader()) {
+
+                continue;
+            }
+
+            timestamp = timestampDecoder.decode(entry, 0);
+
+            return true;
+        }
+    }
+
+    /**
+     * Gets the text of the current entry.
+     *
+     * @return The text of the entry, including the line break ending it.
+     */
+    String entry() {
+
+        return entry;
+    }
+
+    /**
+     * Gets the offset in the file of the current entry.
+     *
+     * @return The offset of the entry.
+     */
+    long offset() {
+
+        return entryOffset;
+    }
+
+    /**
+     * Gets the timestamp of the current entry.
+     *
+     * @return The time in milliseconds since the epoch, or {@link Long#MIN_VALUE} if the entry does not start
+     * with a timestamp.
+     */
+    long timestamp() {
+
+        return timestamp;
+    }
+
+    /**
+     * Closes the stream over the log file.
+     */
+    void close() {
+
+        try {
+
+            stream.close();
+
+        } catch (IOException exception) {
+
+            // Nothing more to do.
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Skips ahead in the stream over the log file.
+     *
+     * @param position The offset in the file the stream is at.
+     * @param offset The offset in the file to skip to.
+     *
+     * @return The offset in the file reached, which is short of the offset only if the file is.
+     *
+     * @throws IOException If the file could not be read.
+     */
+    private long skip(long position, long offset) throws IOException {
+
+        while (position < offset) {
+
+            long skipped = stream.skip(offset - position);
+            if (skipped <= 0) {
+
+                if (stream.read() < 0) {
+
+                    break;
+                }
+
+                skipped = 1;
+            }
+
+            position += skipped;
+        }
+
+        return position;
+    }
+
+    /**
+     * Reads the next byte of a text file.
+     *
+     * @return The byte, or -1 at the end of the file.
+     *
+     * @throws IOException If the file could not be read.
+     */
+    private int readByte() throws IOException {
+
+        if (bufferPosition >= bufferLength) {
+
+            bufferLength = stream.read(buffer, 0, buffer.length);
+            bufferPosition = 0;
+
+            if (bufferLength <= 0) {
+
+                bufferLength = 0;
+                return -1;
+            }
+        }
+
+        position++;
+
+        return buffer[bufferPosition++] & 0xFF;
+    }
+
+    /**
+     * Checks whether the next byte to read of a text file starts an entry, which is when it starts a timestamp or
+     * the file ends there.  Reads ahead as far as a timestamp without taking the bytes read.
+     *
+     * @return True if the next byte starts an entry or there are no more bytes.
+     *
+     * @throws IOException If the file could not be read.
+     */
+    private boolean isAtEntryStart() throws IOException {
+
+        if (bufferLength - bufferPosition < CRDLogTimestampEncoder.LENGTH) {
+
+            // Move what is left of the buffer to its start, and fill it up to hold a whole timestamp if there is one.
+            bufferLength -= bufferPosition;
+            System.arraycopy(buffer, bufferPosition, buffer, 0, bufferLength);
+            bufferPosition = 0;
+
+            while (bufferLength < CRDLogTimestampEncoder.LENGTH) {
+
+                int count = stream.read(buffer, bufferLength, buffer.length - bufferLength);
+                if (count <= 0) {
+
+                    break;
+                }
+
+                bufferLength += count;
+            }
+        }
+
+        return bufferPosition >= bufferLength || CRDLogTimestampEncoder.isTimestamp(lookahead, 0);
+    }
+
+    /**
+     * Removes the header from the start of the current entry, which is the text before the first line starting
+     * with a timestamp.
+     *
+     * @return True if the entry has a message left once the header is removed, or false if it was all header.
+     */
+    private boolean skipHeader() {
+
+        for (int start = 0; start >= 0 && start < entry.length(); ) {
+
+            if (timestampDecoder.decode(entry, start) != Long.MIN_VALUE) {
+
+                entryOffset += CRDLogByteBuffer.utf8Length(entry.substring(0, start));
+                entry = entry.substring(start);
+                skippingHeader = false;
+
+                return true;
+            }
+
+            start = entry.indexOf('\n', start);
+            if (start >= 0) {
+
+                start++;
+            }
+        }
+
+        return false;
+    }
+
+    //endregion
+}
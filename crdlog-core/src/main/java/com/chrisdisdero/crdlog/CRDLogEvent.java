@@ -0,0 +1,143 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Class that represents an operation queued up for the log writer thread: either a message to write to the log
+ * file or a command to run in order with the messages.
+ *
+ * Events are preallocated slots of a {@link CRDLogRingBuffer} and are reused once the writer is done with them.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogEvent {
+
+    //region Package members
+
+    /**
+     * The time the message was logged, in milliseconds since the epoch.
+     */
+    long timestamp = 0;
+
+    /**
+     * The level of the message.
+     */
+    CRDLogLevel level = null;
+
+    /**
+     * The message tag to write.
+     */
+    String tag = null;
+
+    /**
+     * The message or format for the message, formatted on the writer thread.
+     */
+    String format = null;
+
+    /**
+     * The format message parameters, or null if the message is already formatted.
+     */
+    Object[] args = null;
+
+    /**
+     * The message content to write, or null if it is still to be formatted.
+     */
+    String message = null;
+
+    /**
+     * The {@link Throwable} the message is about, if any, whose stack trace is rendered on the writer thread if
+     * there is no message, passed along to the console.
+     */
+    Throwable throwable = null;
+
+    /**
+     * The fingerprint of the stack trace of the throwable, or zero if none is written.
+     */
+    long fingerprint = 0;
+
+    /**
+     * Flag indicating that the message is a reference to a stack trace written in full before, rather than the
+     * stack trace itself.
+     */
+    boolean traceReference = false;
+
+    /**
+     * Flag indicating that the message should be written to the log file as well as the console.
+     */
+    boolean writeToFile = false;
+
+    /**
+     * The estimated size in bytes of the message counted against the limit on the size of the queue, or zero if
+     * the size of the queue is not limited.
+     */
+    int size = 0;
+
+    /**
+     * The number of messages for a sink dropped just before this event because the queue of the sink was full.
+     */
+    long droppedBefore = 0;
+
+    /**
+     * The command to run instead of writing a message, or null if this event is a message.
+     */
+    Runnable command = null;
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Clears the references held by this event so the slot does not keep them alive until it is reused.
+     */
+    void clear() {
+
+        level = null;
+        tag = null;
+        format = null;
+        args = null;
+        message = null;
+        throwable = null;
+        fingerprint = 0;
+        traceReference = false;
+        size = 0;
+        droppedBefore = 0;
+        command = null;
+    }
+
+    /**
+     * Copies all the fields of the specified event into this one.
+     *
+     * @param event The {@link CRDLogEvent} to copy.
+     */
+    void copyFrom(CRDLogEvent event) {
+
+        timestamp = event.timestamp;
+        level = event.level;
+        tag = event.tag;
+        format = event.format;
+        args = event.args;
+        message = event.message;
+        throwable = event.throwable;
+        fingerprint = event.fingerprint;
+        traceReference = event.traceReference;
+        writeToFile = event.writeToFile;
+        size = event.size;
+        droppedBefore = event.droppedBefore;
+        command = event.command;
+    }
+
+    //endregion
+}
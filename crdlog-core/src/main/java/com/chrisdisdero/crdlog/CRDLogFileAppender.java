@@ -0,0 +1,181 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class that keeps a single append channel open on the log file for the life of a {@link CRDLog}.
+ *
+ * The channel is opened lazily on the first write and the size of the file is tracked in memory from then on,
+ * so a steady-state write costs a single system call.  The channel is only reopened after {@link #close()},
+ * {@link #delete()} or a failed write.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogFileAppender implements CRDLogAppender {
+
+    //region Private members
+
+    /**
+     * Log tag for this class.
+     */
+    private static final String TAG = CRDLogFileAppender.class.getCanonicalName();
+
+    /**
+     * The file appended to.
+     */
+    private final File file;
+
+    /**
+     * The open channel on the file, or null if the file is not currently open.
+     */
+    private FileChannel channel = null;
+
+    /**
+     * The current size of the file in bytes, valid while the channel is open.
+     */
+    private long size = 0;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogFileAppender} object.
+     *
+     * @param file The {@link File} to append to.
+     */
+    CRDLogFileAppender(File file) {
+
+        this.file = file;
+    }
+
+    //endregion
+
+    //region CRDLogAppender
+
+    @Override
+    public long size() throws IOException {
+
+        open();
+
+        return size;
+    }
+
+    @Override
+    public boolean isOpen() {
+
+        return channel != null;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+
+        open();
+
+        try {
+
+            while (buffer.hasRemaining()) {
+
+                size += channel.write(buffer);
+            }
+
+        } catch (IOException exception) {
+
+            close();
+            throw exception;
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+
+        if (channel != null) {
+
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public void close() {
+
+        if (channel == null) {
+
+            return;
+        }
+
+        try {
+
+            channel.close();
+
+        } catch (IOException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to close the log file.", exception);
+        }
+
+        channel = null;
+        size = 0;
+    }
+
+    @Override
+    public void delete() {
+
+        close();
+
+        if (file.exists()) {
+
+            file.delete();
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Opens an append channel on the file, creating the file if needed.
+     *
+     * @throws IOException If the file could not be opened.
+     */
+    private void open() throws IOException {
+
+        if (channel != null) {
+
+            return;
+        }
+
+        FileChannel newChannel = new FileOutputStream(file, true).getChannel();
+
+        try {
+
+            size = newChannel.size();
+
+        } catch (IOException exception) {
+
+            newChannel.close();
+            throw exception;
+        }
+
+        channel = newChannel;
+    }
+
+    //endregion
+}
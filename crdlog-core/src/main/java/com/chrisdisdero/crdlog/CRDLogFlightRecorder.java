@@ -0,0 +1,125 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Class that holds the most recent messages of a {@link CRDLog} in memory instead of writing them to the log file,
+ * so they can be written later, only if they turn out to be needed as context for an error.
+ *
+ * The recorder is a ring of preallocated {@link CRDLogEvent} slots, so recording a message allocates nothing.
+ * Once it is full, each new message replaces the oldest one.  It is only used on the writer thread of the log.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogFlightRecorder {
+
+    //region Private members
+
+    /**
+     * The preallocated slots of the messages recorded.
+     */
+    private final CRDLogEvent[] records;
+
+    /**
+     * The index of the slot the next message is recorded in.
+     */
+    private int next = 0;
+
+    /**
+     * The number of messages recorded.
+     */
+    private int count = 0;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogFlightRecorder} object.
+     *
+     * @param capacity The number of most recent messages held.
+     */
+    CRDLogFlightRecorder(int capacity) {
+
+        records = new CRDLogEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+
+            records[i] = new CRDLogEvent();
+        }
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Records a message, replacing the oldest one if the recorder is full.
+     *
+     * @param event The {@link CRDLogEvent} of the message, whose message is already formatted.
+     */
+    void record(CRDLogEvent event) {
+
+        CRDLogEvent record = records[next];
+        record.timestamp = event.timestamp;
+        record.level = event.level;
+        record.tag = event.tag;
+        record.message = event.message;
+        record.throwable = event.throwable;
+        record.fingerprint = event.fingerprint;
+        record.traceReference = event.traceReference;
+
+        next = (next + 1) % records.length;
+        count = Math.min(count + 1, records.length);
+    }
+
+    /**
+     * Gets the number of messages recorded.
+     *
+     * @return The number of messages held.
+     */
+    int size() {
+
+        return count;
+    }
+
+    /**
+     * Gets a recorded message, oldest first.
+     *
+     * @param position The position of the message, from zero for the oldest to {@link #size()} - 1 for the newest.
+     *
+     * @return The {@link CRDLogEvent} of the message.
+     */
+    CRDLogEvent get(int position) {
+
+        return records[(next - count + position + records.length) % records.length];
+    }
+
+    /**
+     * Discards the messages recorded.
+     */
+    void clear() {
+
+        for (int i = 0; i < count; i++) {
+
+            get(i).clear();
+        }
+
+        next = 0;
+        count = 0;
+    }
+
+    //endregion
+}
@@ -0,0 +1,37 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Enumeration of the formats in which {@link CRDLog} can store messages in the log file.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public enum CRDLogFormat {
+
+    /**
+     * Each message is stored as a line of text.  This is the default.
+     */
+    TEXT,
+
+    /**
+     * Each message is stored as a compact binary record.  Tags and format strings are stored once per file in a
+     * dictionary, and each message stores only their ids, the time since the previous message and the format
+     * message parameters.  The content returned by {@link CRDLog#get} and {@link CRDLog#getStream} is rendered
+     * back to the same text as the {@link #TEXT} format.
+     */
+    BINARY
+}
@@ -0,0 +1,148 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.Locale;
+
+/**
+ * Class that represents a snapshot of the distribution of a latency measured by {@link CRDLog}, in nanoseconds.
+ *
+ * Values are counted in buckets an eighth of their magnitude wide, so a percentile is the highest value counted in
+ * the same bucket as the value at that percentile, which is never more than 12.5% above it.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public class CRDLogHistogram {
+
+    //region Private members
+
+    /**
+     * The number of values counted in each bucket.
+     */
+    private final long[] counts;
+
+    /**
+     * The number of values recorded.
+     */
+    private final long count;
+
+    /**
+     * The sum of the values recorded.
+     */
+    private final long sum;
+
+    /**
+     * The largest value recorded.
+     */
+    private final long max;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogHistogram} object.
+     *
+     * @param counts The number of values counted in each bucket of a {@link CRDLogHistogramRecorder}.
+     * @param count The number of values recorded.
+     * @param sum The sum of the values recorded.
+     * @param max The largest value recorded.
+     */
+    CRDLogHistogram(long[] counts, long count, long sum, long max) {
+
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    //endregion
+
+    //region Public methods
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+
+        return count;
+    }
+
+    /**
+     * Gets the largest value recorded.
+     *
+     * @return The largest value in nanoseconds, or zero if there are none.
+     */
+    public long getMax() {
+
+        return max;
+    }
+
+    /**
+     * Gets the mean of the values recorded.
+     *
+     * @return The mean in nanoseconds, or zero if there are none.
+     */
+    public double getMean() {
+
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    /**
+     * Gets the value at the specified percentile of the values recorded, such as 99 for the value that 99% of the
+     * values are at or below.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     *
+     * @return The value at the percentile in nanoseconds, or zero if there are none.
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        if (percentile < 0 || percentile > 100) {
+
+            throw new IllegalArgumentException("percentile must be from 0 to 100");
+        }
+
+        if (count == 0) {
+
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+
+            seen += counts[i];
+            if (seen >= rank) {
+
+                return Math.min(CRDLogHistogramRecorder.highestValueOf(i), max);
+            }
+        }
+
+        return max;
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format(Locale.US, "count=%d mean=%.0f p50=%d p99=%d p99.9=%d max=%d", count, getMean(),
+                getValueAtPercentile(50), getValueAtPercentile(99), getValueAtPercentile(99.9), max);
+    }
+
+    //endregion
+}
@@ -0,0 +1,155 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class that records a distribution of latencies in nanoseconds, lock-free, from any number of threads.
+ *
+ * Values are counted in log-linear buckets, in the manner of an HdrHistogram: each power of two is split into
+ * {@link #SUB_BUCKET_COUNT} equal buckets, so any value is counted with a precision of 1/{@link #SUB_BUCKET_COUNT}
+ * of its magnitude, and the whole range of a long fits in a few hundred counters.  Recording a value is a few bit
+ * operations and an atomic increment, and allocates nothing.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogHistogramRecorder {
+
+    //region Package members
+
+    /**
+     * The number of bits of a value kept within its power of two.
+     */
+    static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * The number of buckets each power of two is split into.
+     */
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of buckets needed to count any non-negative long.
+     */
+    static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    //endregion
+
+    //region Private members
+
+    /**
+     * The number of values counted in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * The sum of the values recorded, for the mean.
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * The largest value recorded.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Records the specified value.
+     *
+     * @param value The value in nanoseconds, where a negative value counts as zero.
+     */
+    void record(long value) {
+
+        if (value < 0) {
+
+            value = 0;
+        }
+
+        counts.incrementAndGet(bucketOf(value));
+        sum.addAndGet(value);
+
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+
+            // Another thread raised the maximum in between, so check against the new one.
+        }
+    }
+
+    /**
+     * Takes a snapshot of the values recorded so far.  Values recorded while the snapshot is taken may or may not
+     * be part of it.
+     *
+     * @return The {@link CRDLogHistogram} of the values recorded so far.
+     */
+    CRDLogHistogram snapshot() {
+
+        long[] snapshotCounts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+
+            snapshotCounts[i] = counts.get(i);
+            count += snapshotCounts[i];
+        }
+
+        return new CRDLogHistogram(snapshotCounts, count, sum.get(), max.get());
+    }
+
+    /**
+     * Gets the bucket counting the specified value.
+     *
+     * @param value The non-negative value.
+     *
+     * @return The index of the bucket.
+     */
+    static int bucketOf(long value) {
+
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (magnitude < SUB_BUCKET_BITS) {
+
+            return (int) value;
+        }
+
+        int shift = magnitude - SUB_BUCKET_BITS;
+
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    /**
+     * Gets the highest value counted by the specified bucket.
+     *
+     * @param bucket The index of the bucket.
+     *
+     * @return The highest value counted by the bucket.
+     */
+    static long highestValueOf(int bucket) {
+
+        if (bucket < SUB_BUCKET_COUNT) {
+
+            return bucket;
+        }
+
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT + (bucket & (SUB_BUCKET_COUNT - 1))) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+
+    //endregion
+}
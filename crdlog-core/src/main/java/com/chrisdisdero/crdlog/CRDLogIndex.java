@@ -0,0 +1,243 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * Class that maintains the sparse time index kept next to each file of a log, so the log can be read starting
+ * from a point in time or from near its end without scanning it from the start.
+ *
+ * The index of a file, such as "applog.0.txt.idx" for "applog.0.txt", is a series of index points, each being
+ * the timestamp of a message and the offset in the file at which the message starts, as two 8 byte values.  An
+ * index point is added for the first message the writer appends to a file and then for the first message after
+ * every interval of content, and the file is encoded so that it can be read starting at any index point.  The
+ * offsets are in the uncompressed content, so the index of a segment still applies once it is compressed.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogIndex {
+
+    //region Package members
+
+    /**
+     * The extension added to the name of a log file to name its index.
+     */
+    static final String EXTENSION = ".idx";
+
+    //endregion
+
+    //region Private members
+
+    /**
+     * Log tag for this class.
+     */
+    private static final String TAG = CRDLogIndex.class.getCanonicalName();
+
+    /**
+     * The size in bytes of an index point in the index file.
+     */
+    private static final int POINT_SIZE = 16;
+
+    /**
+     * The size in bytes of content between index points.
+     */
+    private final long interval;
+
+    /**
+     * The index points added since the index was last written.
+     */
+    private final CRDLogByteBuffer pendingPoints = new CRDLogByteBuffer(256);
+
+    /**
+     * The offset of the last index point added for the file being written, or -1 if none was added yet.
+     */
+    private long lastOffset = -1;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogIndex} object.
+     *
+     * @param interval The size in bytes of content between index points.
+     */
+    CRDLogIndex(long interval) {
+
+        this.interval = interval;
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Checks whether a message starting at the specified offset of the file being written needs an index point.
+     *
+     * @param offset The offset in the file at which the message starts.
+     *
+     * @return True if an index point should be added for the message.
+     */
+    boolean isDue(long offset) {
+
+        return lastOffset < 0 || offset - lastOffset >= interval;
+    }
+
+    /**
+     * Adds an index point for the file being written, to be written out with {@link #write(File)}.
+     *
+     * @param timestamp The time the message at the index point was logged, in milliseconds since the epoch.
+     * @param offset The offset in the file at which the message starts.
+     */
+    void add(long timestamp, long offset) {
+
+        pendingPoints.writeLong(timestamp);
+        pendingPoints.writeLong(offset);
+        lastOffset = offset;
+    }
+
+    /**
+     * Appends the index points added since the last write to the index of the specified file, once the content
+     * they point to has been written.
+     *
+     * @param file The {@link File} being written.
+     */
+    void write(File file) {
+
+        if (pendingPoints.size() == 0) {
+
+            return;
+        }
+
+        OutputStream outputStream = null;
+
+        try {
+
+            outputStream = new FileOutputStream(indexOf(file), true);
+            outputStream.write(pendingPoints.array(), 0, pendingPoints.size());
+
+        } catch (IOException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to write log index.", exception);
+
+        } finally {
+
+            if (outputStream != null) {
+
+                try {
+
+                    outputStream.close();
+
+                } catch (IOException exception) {
+
+                    // Nothing more to do.
+                }
+            }
+        }
+
+        pendingPoints.clear();
+    }
+
+    /**
+     * Forgets the index points added since the last write and starts over for the file being written, such as
+     * when moving on to another file or when the content the points refer to failed to be written.
+     */
+    void reset() {
+
+        pendingPoints.clear();
+        lastOffset = -1;
+    }
+
+    /**
+     * Gets the index file of the specified log file.
+     *
+     * @param file The {@link File} of the log file or segment, compressed or not.
+     *
+     * @return The {@link File} of its index.
+     */
+    static File indexOf(File file) {
+
+        return CRDLogSegments.sideFile(file, EXTENSION);
+    }
+
+    /**
+     * Reads the index points of a log file from its index.
+     *
+     * @param index The index file opened for reading, or null if the log file has no index.
+     * @param end The length of the content of the file, beyond which index points are ignored, or -1 if not known.
+     *
+     * @return The index points as pairs of timestamp and offset, in the order they were added, which is empty if
+     * the file has no index.
+     */
+    static long[] read(RandomAccessFile index, long end) {
+
+        if (index == null) {
+
+            return new long[0];
+        }
+
+        long[] points;
+        int length = 0;
+
+        try {
+
+            // The index may be added to while it is read, so only read the points complete so far.
+            int count = (int) (index.length() / POINT_SIZE);
+            byte[] bytes = new byte[count * POINT_SIZE];
+            index.seek(0);
+            index.readFully(bytes);
+
+            ByteBuffer inputBuffer = ByteBuffer.wrap(bytes);
+            points = new long[count * 2];
+
+            for (int i = 0; i < count; i++) {
+
+                long timestamp = inputBuffer.getLong();
+                long offset = inputBuffer.getLong();
+
+                // Offsets must increase, and stay within the content, such as after a failed write.
+                if ((end < 0 || offset < end) && (length == 0 || offset > points[length - 1])) {
+
+                    points[length++] = timestamp;
+                    points[length++] = offset;
+                }
+            }
+
+        } catch (IOException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to read log index.", exception);
+
+            return new long[0];
+        }
+
+        if (length < points.length) {
+
+            long[] trimmed = new long[length];
+            System.arraycopy(points, 0, trimmed, 0, length);
+            points = trimmed;
+        }
+
+        return points;
+    }
+
+    //endregion
+}
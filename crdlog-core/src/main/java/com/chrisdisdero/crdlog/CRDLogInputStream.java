@@ -0,0 +1,119 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Class that reads the content of a log file up to a fixed length, ignoring anything past it.
+ *
+ * The length is the size of the content known to the log writer, which can be less than the length of the file
+ * on disk, such as when the end of the file is a mapped window not yet filled in.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogInputStream extends FilterInputStream {
+
+    //region Private members
+
+    /**
+     * The number of bytes left to read.
+     */
+    private long remaining;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogInputStream} object.
+     *
+     * @param in The {@link InputStream} on the log file.
+     * @param length The number of bytes of content to read.
+     */
+    CRDLogInputStream(InputStream in, long length) {
+
+        super(in);
+
+        this.remaining = length;
+    }
+
+    //endregion
+
+    //region InputStream
+
+    @Override
+    public int read() throws IOException {
+
+        if (remaining <= 0) {
+
+            return -1;
+        }
+
+        int result = in.read();
+        if (result >= 0) {
+
+            remaining--;
+        }
+
+        return result;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+
+        if (remaining <= 0) {
+
+            return -1;
+        }
+
+        int count = in.read(buffer, offset, (int) Math.min(length, remaining));
+        if (count > 0) {
+
+            remaining -= count;
+        }
+
+        return count;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+
+        long skipped = in.skip(Math.min(count, remaining));
+        if (skipped > 0) {
+
+            remaining -= skipped;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+
+        return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+
+        return false;
+    }
+
+    //endregion
+}
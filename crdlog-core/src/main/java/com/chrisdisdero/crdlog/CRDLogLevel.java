@@ -0,0 +1,81 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Enumeration of the levels of the messages written by {@link CRDLog}, from least to most severe.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public enum CRDLogLevel {
+
+    /**
+     * Debug messages, written by {@link CRDLog#debug}.
+     */
+    DEBUG("debug"),
+
+    /**
+     * Informational messages, written by {@link CRDLog#info}.
+     */
+    INFO("info"),
+
+    /**
+     * Warning messages, written by {@link CRDLog#warn}.
+     */
+    WARN("warn"),
+
+    /**
+     * Error messages, written by {@link CRDLog#error}.
+     */
+    ERROR("error");
+
+    //region Private members
+
+    /**
+     * The name of the level as it appears in the log file.
+     */
+    private final String label;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogLevel} value.
+     *
+     * @param label The name of the level as it appears in the log file.
+     */
+    CRDLogLevel(String label) {
+
+        this.label = label;
+    }
+
+    //endregion
+
+    //region Public methods
+
+    /**
+     * Gets the name of the level as it appears in the log file.
+     *
+     * @return The name of the level, such as "info".
+     */
+    public String getLabel() {
+
+        return label;
+    }
+
+    //endregion
+}
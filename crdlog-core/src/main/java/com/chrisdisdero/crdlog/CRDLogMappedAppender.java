@@ -0,0 +1,277 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class that appends to the log file through a {@link MappedByteBuffer} window over the end of the file.
+ *
+ * The window is mapped in chunks past the end of the content, which grows the file, and writes are copied into
+ * it without a system call.  When the window fills up, the next chunk is mapped from the end of the content.  On
+ * close the file is truncated back to the length of its content.  If the app is killed before the file is closed,
+ * the file is left padded with zero bytes, which are trimmed the next time it is opened.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogMappedAppender implements CRDLogAppender {
+
+    //region Private members
+
+    /**
+     * Log tag for this class.
+     */
+    private static final String TAG = CRDLogMappedAppender.class.getCanonicalName();
+
+    /**
+     * The size of the blocks read when looking for the end of the content of a file left padded by a previous run.
+     */
+    private static final int TRIM_BLOCK_SIZE = 8192;
+
+    /**
+     * The file appended to.
+     */
+    private final File file;
+
+    /**
+     * The size in bytes by which the mapped window grows.
+     */
+    private final int chunkSize;
+
+    /**
+     * The open channel on the file, or null if the file is not currently open.
+     */
+    private FileChannel channel = null;
+
+    /**
+     * The mapped window over the end of the file, or null if nothing is mapped yet.
+     */
+    private MappedByteBuffer mapping = null;
+
+    /**
+     * The offset in the file of the start of the mapped window.
+     */
+    private long mappingStart = 0;
+
+    /**
+     * The size of the content of the file in bytes, valid while the channel is open.
+     */
+    private long size = 0;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogMappedAppender} object.
+     *
+     * @param file The {@link File} to append to.
+     * @param chunkSize The size in bytes by which the mapped window grows.
+     */
+    CRDLogMappedAppender(File file, int chunkSize) {
+
+        this.file = file;
+        this.chunkSize = chunkSize;
+    }
+
+    //endregion
+
+    //region CRDLogAppender
+
+    @Override
+    public long size() throws IOException {
+
+        open();
+
+        return size;
+    }
+
+    @Override
+    public boolean isOpen() {
+
+        return channel != null;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) throws IOException {
+
+        open();
+
+        int length = buffer.remaining();
+
+        try {
+
+            if (mapping == null || size + length > mappingStart + mapping.capacity()) {
+
+                // Map the next window from the end of the content, large enough for this write.
+                mappingStart = size;
+                mapping = channel.map(FileChannel.MapMode.READ_WRITE, mappingStart, Math.max(chunkSize, length));
+            }
+
+        } catch (IOException exception) {
+
+            close();
+            throw exception;
+        }
+
+        mapping.position((int) (size - mappingStart));
+        mapping.put(buffer);
+        size += length;
+    }
+
+    @Override
+    public void sync() throws IOException {
+
+        if (channel == null) {
+
+            return;
+        }
+
+        // Write back the current window, then anything left of the windows mapped before it.
+        if (mapping != null) {
+
+            mapping.force();
+        }
+
+        channel.force(false);
+    }
+
+    @Override
+    public void close() {
+
+        if (channel == null) {
+
+            return;
+        }
+
+        mapping = null;
+
+        try {
+
+            // Give back the unused end of the mapped window.
+            channel.truncate(size);
+
+        } catch (IOException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to truncate the log file.", exception);
+        }
+
+        try {
+
+            channel.close();
+
+        } catch (IOException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to close the log file.", exception);
+        }
+
+        channel = null;
+        size = 0;
+    }
+
+    @Override
+    public void delete() {
+
+        close();
+
+        if (file.exists()) {
+
+            file.delete();
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Opens a read/write channel on the file, creating the file if needed, and finds the end of its content.
+     *
+     * @throws IOException If the file could not be opened.
+     */
+    private void open() throws IOException {
+
+        if (channel != null) {
+
+            return;
+        }
+
+        FileChannel newChannel = new RandomAccessFile(file, "rw").getChannel();
+
+        try {
+
+            size = findEndOfContent(newChannel);
+
+        } catch (IOException exception) {
+
+            newChannel.close();
+            throw exception;
+        }
+
+        channel = newChannel;
+        mapping = null;
+    }
+
+    /**
+     * Finds the end of the content of the file on the specified channel, skipping any zero padding left at the
+     * end of the file by a previous run that was not closed.
+     *
+     * @param channel The {@link FileChannel} on the file.
+     *
+     * @return The size of the content of the file in bytes.
+     *
+     * @throws IOException If the file could not be read.
+     */
+    private static long findEndOfContent(FileChannel channel) throws IOException {
+
+        ByteBuffer block = ByteBuffer.allocate(TRIM_BLOCK_SIZE);
+        long end = channel.size();
+
+        while (end > 0) {
+
+            long blockStart = Math.max(0, end - TRIM_BLOCK_SIZE);
+
+            block.clear();
+            block.limit((int) (end - blockStart));
+            while (block.hasRemaining()) {
+
+                if (channel.read(block, blockStart + block.position()) < 0) {
+
+                    break;
+                }
+            }
+
+            for (int i = block.position() - 1; i >= 0; i--) {
+
+                if (block.get(i) != 0) {
+
+                    return blockStart + i + 1;
+                }
+            }
+
+            end = blockStart;
+        }
+
+        return 0;
+    }
+
+    //endregion
+}
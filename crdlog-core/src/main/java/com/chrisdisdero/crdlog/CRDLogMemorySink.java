@@ -0,0 +1,137 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that is a {@link CRDLogSink} keeping the most recent messages logged in memory, laid out as lines of text
+ * the same way as in a text log file, for example to show in a debug screen of the app without reading the file.
+ *
+ * Once it holds its capacity in lines, each new line replaces the oldest one.  The lines can be read on any thread.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public class CRDLogMemorySink implements CRDLogSink {
+
+    //region Private members
+
+    /**
+     * The encoder laying out each message as a line of text.
+     */
+    private final CRDLogTextEncoder encoder = new CRDLogTextEncoder();
+
+    /**
+     * The ring of lines kept.
+     */
+    private final String[] lines;
+
+    /**
+     * The index in the ring of the next line written.
+     */
+    private int next = 0;
+
+    /**
+     * The number of lines kept.
+     */
+    private int count = 0;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogMemorySink} object.
+     *
+     * @param capacity The number of most recent lines kept.
+     */
+    public CRDLogMemorySink(int capacity) {
+
+        if (capacity < 1) {
+
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        lines = new String[capacity];
+    }
+
+    //endregion
+
+    //region Public methods
+
+    /**
+     * Gets the lines kept, oldest first.  Each line ends with a line break, as in the log file.
+     *
+     * @return A {@link List} of the lines kept.
+     */
+    public synchronized List<String> getLines() {
+
+        List<String> list = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+
+            list.add(lines[(next - count + i + lines.length) % lines.length]);
+        }
+
+        return list;
+    }
+
+    /**
+     * Discards the lines kept.
+     */
+    public synchronized void clear() {
+
+        for (int i = 0; i < lines.length; i++) {
+
+            lines[i] = null;
+        }
+
+        next = 0;
+        count = 0;
+    }
+
+    //endregion
+
+    //region CRDLogSink
+
+    @Override
+    public void write(long timestamp, CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+        // The encoder is only used on the thread of the sink, so the line is laid out outside the lock.
+        String line = encoder.formatLine(timestamp, level, tag, message);
+
+        synchronized (this) {
+
+            lines[next] = line;
+            next = (next + 1) % lines.length;
+            count = Math.min(count + 1, lines.length);
+        }
+    }
+
+    @Override
+    public void flush() {
+
+        // The lines are kept as soon as they are written.
+    }
+
+    @Override
+    public void close() {
+
+        // The lines stay readable after the log is closed.
+    }
+
+    //endregion
+}
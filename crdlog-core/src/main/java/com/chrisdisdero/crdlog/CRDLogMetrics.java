@@ -0,0 +1,190 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Class that represents a snapshot of the metrics of a {@link CRDLog}, which show whether the log writer thread is
+ * keeping up with the messages logged.
+ *
+ * The counts and latencies are totals since the log was created, so the change over an interval is the difference
+ * between two snapshots.  The latencies are in nanoseconds.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public class CRDLogMetrics {
+
+    //region Private members
+
+    /**
+     * The number of messages and commands queued up for the writer when the snapshot was taken.
+     */
+    private final long queueDepth;
+
+    /**
+     * The largest number of messages and commands queued up for the writer at once.
+     */
+    private final long peakQueueDepth;
+
+    /**
+     * The number of messages written to the log file.
+     */
+    private final long messagesWritten;
+
+    /**
+     * The number of bytes written to the log file.
+     */
+    private final long bytesWritten;
+
+    /**
+     * The number of messages dropped because the queue was full.
+     */
+    private final long messagesDropped;
+
+    /**
+     * The time callers took to queue up a message.
+     */
+    private final CRDLogHistogram enqueueLatency;
+
+    /**
+     * The time the writer took to write each batch of messages to the log file.
+     */
+    private final CRDLogHistogram writeLatency;
+
+    /**
+     * The time the writer took to sync the log file to the storage device.
+     */
+    private final CRDLogHistogram syncLatency;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogMetrics} object.
+     *
+     * @param queueDepth The number of messages and commands queued up for the writer.
+     * @param peakQueueDepth The largest number of messages and commands queued up for the writer at once.
+     * @param messagesWritten The number of messages written to the log file.
+     * @param bytesWritten The number of bytes written to the log file.
+     * @param messagesDropped The number of messages dropped because the queue was full.
+     * @param enqueueLatency The time callers took to queue up a message.
+     * @param writeLatency The time the writer took to write each batch of messages to the log file.
+     * @param syncLatency The time the writer took to sync the log file to the storage device.
+     */
+    CRDLogMetrics(long queueDepth, long peakQueueDepth, long messagesWritten, long bytesWritten, long messagesDropped,
+                  CRDLogHistogram enqueueLatency, CRDLogHistogram writeLatency, CRDLogHistogram syncLatency) {
+
+        this.queueDepth = queueDepth;
+        this.peakQueueDepth = peakQueueDepth;
+        this.messagesWritten = messagesWritten;
+        this.bytesWritten = bytesWritten;
+        this.messagesDropped = messagesDropped;
+        this.enqueueLatency = enqueueLatency;
+        this.writeLatency = writeLatency;
+        this.syncLatency = syncLatency;
+    }
+
+    //endregion
+
+    //region Public methods
+
+    /**
+     * Gets the number of messages and commands queued up for the writer when the snapshot was taken.
+     *
+     * @return The queue depth.
+     */
+    public long getQueueDepth() {
+
+        return queueDepth;
+    }
+
+    /**
+     * Gets the largest number of messages and commands queued up for the writer at once.  A peak close to the
+     * queue capacity means callers have had to wait, or messages have been dropped.
+     *
+     * @return The peak queue depth.
+     */
+    public long getPeakQueueDepth() {
+
+        return peakQueueDepth;
+    }
+
+    /**
+     * Gets the number of messages written to the log file.
+     *
+     * @return The number of messages.
+     */
+    public long getMessagesWritten() {
+
+        return messagesWritten;
+    }
+
+    /**
+     * Gets the number of bytes written to the log file, including headers and, in the
+     * {@link CRDLogFormat#BINARY} format, dictionary records.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytesWritten() {
+
+        return bytesWritten;
+    }
+
+    /**
+     * Gets the number of messages dropped because the queue was full, according to the
+     * {@link CRDLogOverflowPolicy}.
+     *
+     * @return The number of messages.
+     */
+    public long getMessagesDropped() {
+
+        return messagesDropped;
+    }
+
+    /**
+     * Gets the distribution of the time callers took to queue up a message, including any wait for room in the
+     * queue.
+     *
+     * @return The {@link CRDLogHistogram} of the enqueue latency.
+     */
+    public CRDLogHistogram getEnqueueLatency() {
+
+        return enqueueLatency;
+    }
+
+    /**
+     * Gets the distribution of the time the writer took to write each batch of messages to the log file.
+     *
+     * @return The {@link CRDLogHistogram} of the write latency.
+     */
+    public CRDLogHistogram getWriteLatency() {
+
+        return writeLatency;
+    }
+
+    /**
+     * Gets the distribution of the time the writer took to sync the log file to the storage device, as set with
+     * the sync settings of {@link CRDLogSettings}.
+     *
+     * @return The {@link CRDLogHistogram} of the sync latency.
+     */
+    public CRDLogHistogram getSyncLatency() {
+
+        return syncLatency;
+    }
+
+    //endregion
+}
@@ -0,0 +1,31 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Interface that defines the listener for the metrics of a {@link CRDLog}, reported on an interval.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public interface CRDLogMetricsInterface {
+
+    /**
+     * The metrics of the log, reported on the log writer thread, so the listener should return quickly.
+     *
+     * @param metrics The {@link CRDLogMetrics} of the log since it was created.
+     */
+    void onLogMetrics(CRDLogMetrics metrics);
+}
@@ -0,0 +1,125 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that records the metrics of a {@link CRDLog} as the log is written, for {@link CRDLogMetrics} snapshots.
+ *
+ * The counts of what was written are only updated by the log writer thread, and the rest are updated lock-free by
+ * any thread, so a snapshot can be taken from any thread at any time.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogMetricsRecorder {
+
+    //region Package members
+
+    /**
+     * The time callers took to queue up a message.
+     */
+    final CRDLogHistogramRecorder enqueueLatency = new CRDLogHistogramRecorder();
+
+    /**
+     * The time the writer took to write each batch of messages to the log file.
+     */
+    final CRDLogHistogramRecorder writeLatency = new CRDLogHistogramRecorder();
+
+    /**
+     * The time the writer took to sync the log file to the storage device.
+     */
+    final CRDLogHistogramRecorder syncLatency = new CRDLogHistogramRecorder();
+
+    //endregion
+
+    //region Private members
+
+    /**
+     * The largest number of messages and commands queued up at once.
+     */
+    private final AtomicLong peakQueueDepth = new AtomicLong();
+
+    /**
+     * The number of messages dropped because the queue was full.
+     */
+    private final AtomicLong messagesDropped = new AtomicLong();
+
+    /**
+     * The number of messages written to the log file, only updated by the log writer thread.
+     */
+    private volatile long messagesWritten = 0;
+
+    /**
+     * The number of bytes written to the log file, only updated by the log writer thread.
+     */
+    private volatile long bytesWritten = 0;
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Records the number of messages and commands queued up after a message was queued.
+     *
+     * @param queueDepth The number of messages and commands queued up.
+     */
+    void recordQueueDepth(long queueDepth) {
+
+        long peak;
+        while (queueDepth > (peak = peakQueueDepth.get()) && !peakQueueDepth.compareAndSet(peak, queueDepth)) {
+
+            // Another thread raised the peak in between, so check against the new one.
+        }
+    }
+
+    /**
+     * Records a message dropped because the queue was full.
+     */
+    void recordDropped() {
+
+        messagesDropped.incrementAndGet();
+    }
+
+    /**
+     * Records a batch of messages written to the log file.  Must be called on the log writer thread.
+     *
+     * @param messages The number of messages in the batch.
+     * @param bytes The number of bytes written.
+     * @param latencyNanos The time the write took in nanoseconds.
+     */
+    void recordWrite(int messages, long bytes, long latencyNanos) {
+
+        messagesWritten += messages;
+        bytesWritten += bytes;
+        writeLatency.record(latencyNanos);
+    }
+
+    /**
+     * Takes a snapshot of the metrics recorded so far.
+     *
+     * @param queueDepth The number of messages and commands queued up at the moment.
+     *
+     * @return The {@link CRDLogMetrics} snapshot.
+     */
+    CRDLogMetrics snapshot(long queueDepth) {
+
+        return new CRDLogMetrics(queueDepth, Math.max(peakQueueDepth.get(), queueDepth), messagesWritten, bytesWritten,
+                messagesDropped.get(), enqueueLatency.snapshot(), writeLatency.snapshot(), syncLatency.snapshot());
+    }
+
+    //endregion
+}
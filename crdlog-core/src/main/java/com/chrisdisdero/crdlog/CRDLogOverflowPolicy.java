@@ -0,0 +1,54 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Enumeration of what {@link CRDLog} does with a message when the queue of messages waiting for the writer thread
+ * is full, either because it holds the maximum number of messages or the maximum size of messages.
+ *
+ * Whatever the policy, the number of messages dropped is written to the log file in a warning in their place, so
+ * the gap shows in the log.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public enum CRDLogOverflowPolicy {
+
+    /**
+     * The caller waits until the writer thread has made room for the message, so no message is ever dropped.
+     * This is the default.
+     */
+    BLOCK,
+
+    /**
+     * The message is dropped, so the caller never waits and the messages already queued are kept.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The oldest message still queued is dropped to make room for the new one, so the most recent messages are
+     * kept.  The caller takes the oldest message off the queue itself, so it does not wait for the write in
+     * progress.  It only waits if the oldest thing queued is a request, such as a read of the log, rather than a
+     * message, until the writer thread picks it up.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The message is dropped if it is below the level set with
+     * {@link CRDLogSettings#setOverflowDropLevel(CRDLogLevel)}, and otherwise the caller waits as with
+     * {@link #BLOCK}, so the more severe messages are never dropped.
+     */
+    DROP_BELOW_LEVEL
+}
@@ -0,0 +1,142 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.UnknownHostException;
+
+/**
+ * Class that gives the log what it needs from the platform it runs on, so the log itself is plain Java.
+ *
+ * The default console is the Android console when the Android adapter of the library is on the class path, and the
+ * standard output of the process otherwise.  Errors of the log itself are printed to the default console.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+final class CRDLogPlatform {
+
+    //region Private members
+
+    /**
+     * The name of the console class of the Android adapter.
+     */
+    private static final String ANDROID_CONSOLE_CLASS = "com.chrisdisdero.crdlog.CRDLogAndroidConsole";
+
+    /**
+     * Holder of the default console, so it is looked up once and only when first needed.
+     */
+    private static class DefaultConsoleHolder {
+
+        static final CRDLogConsole CONSOLE = createDefaultConsole();
+    }
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Not instantiated.
+     */
+    private CRDLogPlatform() {
+
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Gets the console used when none is set in the {@link CRDLogSettings}.
+     *
+     * @return The Android console if the Android adapter is on the class path, or a {@link CRDLogStandardConsole}.
+     */
+    static CRDLogConsole defaultConsole() {
+
+        return DefaultConsoleHolder.CONSOLE;
+    }
+
+    /**
+     * Prints an error of the log itself to the default console.
+     *
+     * @param tag The tag of the class reporting the error.
+     * @param message The error message.
+     * @param throwable The {@link Throwable} that caused the error.
+     */
+    static void error(String tag, String message, Throwable throwable) {
+
+        String stackTrace = getStackTraceString(throwable);
+        defaultConsole().print(CRDLogLevel.ERROR, tag, stackTrace.isEmpty() ? message : message + "\n" + stackTrace, null);
+    }
+
+    /**
+     * Gets the stack trace of the specified throwable as a string, the same way as Android does.  The stack trace of
+     * an {@link UnknownHostException}, or of a throwable caused by one, is left out, as it is logged so often when
+     * offline that it only adds noise.
+     *
+     * @param throwable The {@link Throwable} to get the stack trace of.
+     *
+     * @return The stack trace, or an empty string if throwable is null or was caused by an unknown host.
+     */
+    static String getStackTraceString(Throwable throwable) {
+
+        if (throwable == null) {
+
+            return "";
+        }
+
+        Throwable cause = throwable;
+        while (cause != null) {
+
+            if (cause instanceof UnknownHostException) {
+
+                return "";
+            }
+
+            cause = cause.getCause();
+        }
+
+        StringWriter writer = new StringWriter();
+        PrintWriter printWriter = new PrintWriter(writer);
+        throwable.printStackTrace(printWriter);
+        printWriter.flush();
+
+        return writer.toString();
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Creates the default console, loading the Android console if the Android adapter is on the class path.
+     *
+     * @return The default {@link CRDLogConsole}.
+     */
+    private static CRDLogConsole createDefaultConsole() {
+
+        try {
+
+            return (CRDLogConsole) Class.forName(ANDROID_CONSOLE_CLASS).newInstance();
+
+        } catch (Exception exception) {
+
+            return new CRDLogStandardConsole();
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,396 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class that decides on the calling thread whether a message is let through the sampling and rate limiting rules
+ * of its tag, before any work is done on it, and counts the messages suppressed for the writer thread to report.
+ *
+ * Each check takes constant time and no lock.  Sampling draws from a random generator of the calling thread, and
+ * the rate limit is a token bucket kept as a single theoretical arrival time, advanced with a compare-and-set by
+ * the interval between messages for each message let through, so it lets through bursts up to the bucket size and
+ * the average rate after that.  Errors are never suppressed.
+ *
+ * Tags under the default rule are tracked separately only up to a limit, so a log with tags made up at runtime
+ * doesn't grow without bound.  Once the limit is reached, the states of tags gone quiet are dropped, and the
+ * messages of any further tags share a single state until there is room again.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+final class CRDLogRateLimiter {
+
+    //region Private members
+
+    /**
+     * The random generator of each thread used for sampling, so threads don't contend on a shared one.
+     */
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+
+        @Override
+        protected Random initialValue() {
+
+            return new Random();
+        }
+    };
+
+    /**
+     * The maximum number of tags tracked separately under the default rule.
+     */
+    static final int MAX_DEFAULT_TAGS = 256;
+
+    /**
+     * The tag reported for the messages of the tags over the limit, which share a single state.
+     */
+    static final String OTHER_TAGS = "(other tags)";
+
+    /**
+     * The minimum time in nanoseconds between sweeps for the states of quiet tags once the limit is reached.
+     */
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The state of the rules of each tag with a rule of its own, and of each tag tracked under the default rule.
+     */
+    private final ConcurrentHashMap<String, TagState> states = new ConcurrentHashMap<String, TagState>();
+
+    /**
+     * The rule for tags without a rule of their own, or null to let their messages through.
+     */
+    private final CRDLogTagRule defaultRule;
+
+    /**
+     * The state shared by the tags over the limit under the default rule, or null without a default rule.
+     */
+    private final TagState otherTags;
+
+    /**
+     * The number of tags tracked under the default rule.
+     */
+    private final AtomicInteger defaultTagCount = new AtomicInteger(0);
+
+    /**
+     * The time in nanoseconds after which the states of quiet tags may be swept again.
+     */
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogRateLimiter} object.
+     *
+     * @param rules The {@link CRDLogTagRule} of each tag.
+     * @param defaultRule The rule for tags without a rule of their own, or null to let their messages through.
+     */
+    private CRDLogRateLimiter(Map<String, CRDLogTagRule> rules, CRDLogTagRule defaultRule) {
+
+        this.defaultRule = defaultRule;
+        this.otherTags = defaultRule != null ? new TagState(OTHER_TAGS, defaultRule, false) : null;
+
+        for (Map.Entry<String, CRDLogTagRule> entry : rules.entrySet()) {
+
+            states.put(entry.getKey(), new TagState(entry.getKey(), entry.getValue(), false));
+        }
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Creates a rate limiter for the rules in the specified settings.
+     *
+     * @param settings The {@link CRDLogSettings} for the log.
+     *
+     * @return The {@link CRDLogRateLimiter}, or null if there are no rules.
+     */
+    static CRDLogRateLimiter create(CRDLogSettings settings) {
+
+        Map<String, CRDLogTagRule> rules = settings.getTagRules();
+        CRDLogTagRule defaultRule = settings.getDefaultTagRule();
+
+        if (rules.isEmpty() && defaultRule == null) {
+
+            return null;
+        }
+
+        return new CRDLogRateLimiter(rules, defaultRule);
+    }
+
+    /**
+     * Checks whether a message is let through the rules of its tag, counting it as suppressed if not.  Can be
+     * called on any thread.
+     *
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The tag of the message.
+     *
+     * @return True if the message is let through.
+     */
+    boolean tryAcquire(CRDLogLevel level, String tag) {
+
+        if (level == CRDLogLevel.ERROR || tag == null) {
+
+            return true;
+        }
+
+        TagState state = states.get(tag);
+        if (state == null) {
+
+            if (defaultRule == null) {
+
+                return true;
+            }
+
+            state = defaultState(tag);
+        }
+
+        if (state.allows()) {
+
+            return true;
+        }
+
+        state.suppressed.incrementAndGet();
+
+        return false;
+    }
+
+    /**
+     * Gets the state of the rules of each tag, with the number of messages suppressed.
+     *
+     * @return The {@link TagState} of each tag tracked, and the state shared by the tags over the limit.
+     */
+    Collection<TagState> states() {
+
+        if (otherTags == null) {
+
+            return states.values();
+        }
+
+        List<TagState> all = new ArrayList<TagState>(states.values());
+        all.add(otherTags);
+
+        return all;
+    }
+
+    /**
+     * Gets the number of tags tracked under the default rule.
+     *
+     * @return The number of tags with a state of their own under the default rule.
+     */
+    int defaultTagCount() {
+
+        return defaultTagCount.get();
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Gets the state of a tag without a rule of its own, tracking the tag if there is room, and otherwise the
+     * state shared by the tags over the limit.
+     *
+     * @param tag The tag of the message.
+     *
+     * @return The {@link TagState} to check the message against.
+     */
+    private TagState defaultState(String tag) {
+
+        while (true) {
+
+            int count = defaultTagCount.get();
+            if (count >= MAX_DEFAULT_TAGS) {
+
+                if (sweep() == 0) {
+
+                    return otherTags;
+                }
+
+                continue;
+            }
+
+            if (defaultTagCount.compareAndSet(count, count + 1)) {
+
+                break;
+            }
+        }
+
+        // Each tag gets its own bucket under the default rule.
+        TagState created = new TagState(tag, defaultRule, true);
+        TagState state = states.putIfAbsent(tag, created);
+        if (state != null) {
+
+            defaultTagCount.decrementAndGet();
+
+            return state;
+        }
+
+        return created;
+    }
+
+    /**
+     * Drops the states of tags under the default rule that have gone quiet, at most once per sweep interval, so
+     * a full set of busy tags doesn't cost a scan on every message.
+     *
+     * @return The number of states dropped.
+     */
+    private int sweep() {
+
+        long now = System.nanoTime();
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) {
+
+            return 0;
+        }
+
+        int dropped = 0;
+        for (TagState state : states.values()) {
+
+            if (state.isDefault && state.isIdle(now) && states.remove(state.tag, state)) {
+
+                defaultTagCount.decrementAndGet();
+                dropped++;
+            }
+        }
+
+        return dropped;
+    }
+
+    //endregion
+
+    //region TagState
+
+    /**
+     * Class that holds the state of the rules of a tag.
+     */
+    static final class TagState {
+
+        /**
+         * The tag.
+         */
+        final String tag;
+
+        /**
+         * The number of messages suppressed, not yet reported.
+         */
+        final AtomicLong suppressed = new AtomicLong(0);
+
+        /**
+         * Flag indicating that the tag is tracked under the default rule, so its state may be dropped once quiet.
+         */
+        final boolean isDefault;
+
+        /**
+         * The fraction of messages kept.
+         */
+        private final double sampleRate;
+
+        /**
+         * The time in nanoseconds between messages at the average rate, or zero if the rate is not limited.
+         */
+        private final long intervalNanos;
+
+        /**
+         * How far in nanoseconds the theoretical arrival time may run ahead of the clock, which sets the burst.
+         */
+        private final long toleranceNanos;
+
+        /**
+         * The time in nanoseconds at which the next message would arrive if messages came at the average rate.
+         */
+        private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+
+        /**
+         * Instantiates a new {@link TagState} object.
+         *
+         * @param tag The tag.
+         * @param rule The {@link CRDLogTagRule} of the tag.
+         * @param isDefault True if the tag is tracked under the default rule.
+         */
+        TagState(String tag, CRDLogTagRule rule, boolean isDefault) {
+
+            this.tag = tag;
+            this.isDefault = isDefault;
+            this.sampleRate = rule.sampleRate;
+            this.intervalNanos = rule.messagesPerSecond > 0 ? Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rule.messagesPerSecond)) : 0;
+            this.toleranceNanos = intervalNanos * Math.max(0, rule.burst - 1);
+        }
+
+        /**
+         * Checks whether a message is let through, first by sampling and then by the rate limit, so a message
+         * sampled out doesn't use up the rate.
+         *
+         * @return True if the message is let through.
+         */
+        boolean allows() {
+
+            if (sampleRate < 1 && RANDOM.get().nextDouble() >= sampleRate) {
+
+                return false;
+            }
+
+            if (intervalNanos == 0) {
+
+                return true;
+            }
+
+            long now = System.nanoTime();
+
+            while (true) {
+
+                long arrival = theoreticalArrival.get();
+
+                // After a quiet period the arrival time has fallen behind the clock, and starts again from now.
+                long start = arrival - now > 0 ? arrival : now;
+                if (start - now > toleranceNanos) {
+
+                    return false;
+                }
+
+                if (theoreticalArrival.compareAndSet(arrival, start + intervalNanos)) {
+
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Checks whether the tag has gone quiet, with its bucket full again and no suppressed messages left to
+         * report, so dropping its state loses nothing.
+         *
+         * @param now The current time in nanoseconds.
+         *
+         * @return True if the state can be dropped.
+         */
+        boolean isIdle(long now) {
+
+            return theoreticalArrival.get() - now <= 0 && suppressed.get() == 0;
+        }
+    }
+
+    //endregion
+}
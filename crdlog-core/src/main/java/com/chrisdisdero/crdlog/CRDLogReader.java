@@ -0,0 +1,792 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Class that reads the entries at the end of a log, or within a range of time, using the sparse time index of
+ * each log file to read only the parts of the files that hold them, and searches the log using the token index of
+ * each log file.
+ *
+ * A file without an index, such as one written before indexing was enabled, is scanned from its start instead.
+ * Timestamps are taken by the callers of the log before their messages are queued, so messages logged from
+ * different threads at nearly the same time may be slightly out of order in the file, and a range is read with an
+ * extra index interval on either side to allow for that.
+ *
+ * A reader is a snapshot of the log taken on the writer thread, holding the files of the log and their indexes
+ * open, along with the length of the content written to the file currently written to at that point, so it can be
+ * read on another thread while messages go on being written, even if the files are rolled over, compressed, drained
+ * or deleted in the meantime.  Entries written after the snapshot are left out.  The reader must be closed once
+ * done with.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogReader implements Closeable {
+
+    //region Private members
+
+    /**
+     * The character set of the tokens looked up in the token indexes.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The files making up the content of the log, oldest first, held open.
+     */
+    private final List<OpenFile> files;
+
+    /**
+     * The length of the content written so far to the file currently written to.
+     */
+    private final long activeEnd;
+
+    /**
+     * The token index collecting the tokens of the end of the file currently written to, or null if the log is
+     * not indexed for search.
+     */
+    private final CRDLogTokenIndex pendingTokens;
+
+    /**
+     * The offsets of the entries found by {@link #searchPending(String)} in the tokens held in memory.
+     */
+    private final List<Long> pendingOffsets = new ArrayList<>();
+
+    /**
+     * The start and end of the content covered by the tokens held in memory when they were searched.
+     */
+    private final List<long[]> pendingCovered = new ArrayList<>();
+
+    /**
+     * The decoder for the timestamps of the entries.
+     */
+    private final CRDLogTimestampEncoder timestampDecoder = new CRDLogTimestampEncoder();
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogReader} object.
+     *
+     * @param files The {@link OpenFile}s making up the content of the log, oldest first.
+     * @param activeEnd The length of the content written so far to the file currently written to.
+     * @param pendingTokens The {@link CRDLogTokenIndex} collecting the tokens of the end of the file currently
+     *                      written to, or null if the log is not indexed for search.
+     */
+    private CRDLogReader(List<OpenFile> files, long activeEnd, CRDLogTokenIndex pendingTokens) {
+
+        this.files = files;
+        this.activeEnd = activeEnd;
+        this.pendingTokens = pendingTokens;
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Opens a reader over the specified files of a log, opening each file and its indexes right away.  Must be
+     * called on the writer thread while holding the lock of the segments of the log, so none of the files can be
+     * replaced, renamed or deleted between listing and opening them.
+     *
+     * @param files The {@link File}s making up the content of the log, oldest first.
+     * @param active The {@link File} currently written to.
+     * @param activeEnd The length of the content written so far to the file currently written to.
+     * @param pendingTokens The {@link CRDLogTokenIndex} collecting the tokens of the end of the file currently
+     *                      written to, or null if the log is not indexed for search.  It must only be used on the
+     *                      writer thread, by {@link #searchPending(String)}.
+     *
+     * @return The {@link CRDLogReader} over the files.
+     *
+     * @throws IOException If a file could not be opened.
+     */
+    static CRDLogReader open(List<File> files, File active, long activeEnd, CRDLogTokenIndex pendingTokens) throws IOException {
+
+        List<OpenFile> openFiles = new ArrayList<>();
+
+        try {
+
+            for (File file : files) {
+
+                openFiles.add(new OpenFile(file, file.equals(active)));
+            }
+
+        } catch (IOException exception) {
+
+            for (OpenFile openFile : openFiles) {
+
+                openFile.close();
+            }
+
+            throw exception;
+        }
+
+        return new CRDLogReader(openFiles, activeEnd, pendingTokens);
+    }
+
+    /**
+     * Looks up the words of a query in the tokens of the end of the file currently written to that are still held
+     * in memory, ahead of the search itself, which may run on another thread.  Must be called on the writer
+     * thread, before {@link #search(String)} with the same query.
+     *
+     * @param query The words to search for.
+     */
+    void searchPending(String query) {
+
+        if (pendingTokens == null) {
+
+            return;
+        }
+
+        Set<String> tokens = new LinkedHashSet<>();
+        CRDLogTokenIndex.tokenize(query, 0, tokens);
+        if (tokens.isEmpty()) {
+
+            return;
+        }
+
+        pendingTokens.searchPending(tokens, activeEnd, pendingOffsets, pendingCovered);
+    }
+
+    /**
+     * Reads the most recent entries of the log.
+     *
+     * @param count The maximum number of entries to read.
+     *
+     * @return The text of the entries, oldest first, or null if there is no log file.
+     *
+     * @throws IOException If the log could not be read.
+     */
+    String tail(int count) throws IOException {
+
+        if (files.isEmpty()) {
+
+            return null;
+        }
+
+        ArrayDeque<String> entries = new ArrayDeque<>();
+
+        for (int f = files.size() - 1; f >= 0 && entries.size() < count; f--) {
+
+            OpenFile file = files.get(f);
+            long end = endOf(file);
+
+            // A compressed file is decompressed from its start to get to any interval, so read it forward once,
+            // keeping only the last entries, rather than going back through it an interval at a time.
+            long[] points = file.isCompressed ? new long[0] : CRDLogIndex.read(file.index, end);
+
+            // Read the file backwards one index interval at a time, the last interval running to the end.
+            long chunkEnd = end;
+            for (int point = points.length / 2; point >= 0 && entries.size() < count; point--) {
+
+                long chunkStart = point > 0 ? points[point * 2 - 1] : 0;
+
+                ArrayDeque<String> chunk = new ArrayDeque<>();
+                CRDLogEntryReader reader = openEntries(file, chunkStart, chunkStart, chunkEnd);
+
+                try {
+
+                    while (reader.next()) {
+
+                        chunk.addLast(reader.entry());
+                        if (entries.size() + chunk.size() > count) {
+
+                            chunk.removeFirst();
+                        }
+                    }
+
+                } finally {
+
+                    reader.close();
+                }
+
+                for (Iterator<String> iterator = chunk.descendingIterator(); iterator.hasNext(); ) {
+
+                    entries.addFirst(iterator.next());
+                }
+
+                chunkEnd = chunkStart;
+            }
+        }
+
+        return join(entries);
+    }
+
+    /**
+     * Reads the entries of the log logged within the specified range of time.
+     *
+     * @param from The start of the range, in milliseconds since the epoch, inclusive.
+     * @param to The end of the range, in milliseconds since the epoch, exclusive.
+     *
+     * @return The text of the entries, oldest first, or null if there is no log file.
+     *
+     * @throws IOException If the log could not be read.
+     */
+    String range(long from, long to) throws IOException {
+
+        if (files.isEmpty()) {
+
+            return null;
+        }
+
+        StringBuilder content = new StringBuilder();
+
+        for (OpenFile file : files) {
+
+            long end = endOf(file);
+            long[] points = CRDLogIndex.read(file.index, end);
+            int pointCount = points.length / 2;
+
+            // Start an interval ahead of the last index point before the range, and stop an interval after the
+            // first index point past it.
+            int first = -1;
+            while (first + 1 < pointCount && points[(first + 1) * 2] < from) {
+
+                first++;
+            }
+
+            int last = first + 1;
+            while (last < pointCount && points[last * 2] < to) {
+
+                last++;
+            }
+
+            long chunkStart = first > 0 ? points[(first - 1) * 2 + 1] : 0;
+            long chunkEnd = last + 1 < pointCount ? points[(last + 1) * 2 + 1] : end;
+
+            CRDLogEntryReader reader = openEntries(file, chunkStart, chunkStart, chunkEnd);
+
+            try {
+
+                while (reader.next()) {
+
+                    long timestamp = reader.timestamp();
+                    if (timestamp >= from && timestamp < to) {
+
+                        content.append(reader.entry());
+                    }
+                }
+
+            } finally {
+
+                reader.close();
+            }
+
+            // The files that follow were all started after this one reached the end of the range.
+            if (pointCount > 0 && points[0] >= to) {
+
+                break;
+            }
+        }
+
+        return content.toString();
+    }
+
+    /**
+     * Searches the log for the entries holding all the words of the specified query, as split into tokens by
+     * {@link CRDLogTokenIndex#tokenize}.  The tokens still held in memory are only searched if
+     * {@link #searchPending(String)} was called first.
+     *
+     * @param query The words to search for.
+     *
+     * @return The {@link List} of {@link CRDLogSearchHit}s for the entries found, oldest first.
+     *
+     * @throws IOException If the log could not be read.
+     */
+    List<CRDLogSearchHit> search(String query) throws IOException {
+
+        List<CRDLogSearchHit> hits = new ArrayList<>();
+
+        Set<String> tokens = new LinkedHashSet<>();
+        CRDLogTokenIndex.tokenize(query, 0, tokens);
+        if (tokens.isEmpty()) {
+
+            return hits;
+        }
+
+        List<byte[]> tokenBytes = new ArrayList<>();
+        for (String token : tokens) {
+
+            tokenBytes.add(token.getBytes(UTF8));
+        }
+
+        for (OpenFile file : files) {
+
+            long end = contentLengthOf(file);
+            long[] points = CRDLogIndex.read(file.index, end);
+
+            List<Long> offsets = new ArrayList<>();
+            List<long[]> covered = new ArrayList<>();
+            CRDLogTokenIndex.search(file.tokenIndex, tokenBytes, end, offsets, covered);
+
+            if (file.isActive) {
+
+                offsets.addAll(pendingOffsets);
+                covered.addAll(pendingCovered);
+            }
+
+            List<CRDLogSearchHit> fileHits = new ArrayList<>();
+
+            // Read the entries found in the index, each only once, in case the tokens held in memory have been
+            // written out to the token index of the file since they were searched.
+            for (Long offset : new TreeSet<>(offsets)) {
+
+                CRDLogEntryReader reader = openEntries(file, checkpointOf(points, offset), offset, end);
+
+                try {
+
+                    if (reader.next() && reader.offset() == offset) {
+
+                        fileHits.add(new CRDLogSearchHit(file.file, offset, reader.timestamp(), reader.entry()));
+                    }
+
+                } finally {
+
+                    reader.close();
+                }
+            }
+
+            // Scan the parts of the file not covered by the index.
+            Collections.sort(covered, new Comparator<long[]>() {
+
+                @Override
+                public int compare(long[] first, long[] second) {
+
+                    return first[0] < second[0] ? -1 : (first[0] > second[0] ? 1 : 0);
+                }
+            });
+
+            long scanStart = 0;
+            for (long[] range : covered) {
+
+                if (range[0] > scanStart) {
+
+                    scan(file, points, scanStart, range[0], tokens, fileHits);
+                }
+
+                scanStart = Math.max(scanStart, range[1]);
+            }
+
+            if (end < 0 || scanStart < end) {
+
+                scan(file, points, scanStart, end, tokens, fileHits);
+            }
+
+            Collections.sort(fileHits, new Comparator<CRDLogSearchHit>() {
+
+                @Override
+                public int compare(CRDLogSearchHit first, CRDLogSearchHit second) {
+
+                    return first.getOffset() < second.getOffset() ? -1 : (first.getOffset() > second.getOffset() ? 1 : 0);
+                }
+            });
+
+            hits.addAll(fileHits);
+        }
+
+        return hits;
+    }
+
+    /**
+     * Closes the files held open by the reader.
+     */
+    @Override
+    public void close() {
+
+        for (OpenFile file : files) {
+
+            file.close();
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Scans part of a log file for the entries holding all the specified tokens.
+     *
+     * @param file The {@link OpenFile} of the log file or segment.
+     * @param points The index points of the file.
+     * @param start The offset in the file of the first entry to scan.
+     * @param end The offset in the file at which to stop scanning, or -1 to scan to the end of the file.
+     * @param tokens The tokens to look for.
+     * @param hits The {@link List} to add a {@link CRDLogSearchHit} to for each entry found.
+     *
+     * @throws IOException If the file could not be read.
+     */
+    private void scan(OpenFile file, long[] points, long start, long end, Set<String> tokens, List<CRDLogSearchHit> hits) throws IOException {
+
+        CRDLogEntryReader reader = openEntries(file, checkpointOf(points, start), start, end);
+        Set<String> entryTokens = new HashSet<>();
+
+        try {
+
+            while (reader.next()) {
+
+                entryTokens.clear();
+                CRDLogTokenIndex.tokenizeEntry(reader.entry(), entryTokens);
+                if (entryTokens.containsAll(tokens)) {
+
+                    hits.add(new CRDLogSearchHit(file.file, reader.offset(), reader.timestamp(), reader.entry()));
+                }
+            }
+
+        } finally {
+
+            reader.close();
+        }
+    }
+
+    /**
+     * Finds the last index point at or before the specified offset, from which the file can be decoded.
+     *
+     * @param points The index points of the file.
+     * @param offset The offset in the file.
+     *
+     * @return The offset of the index point, or zero if there is none.
+     */
+    private static long checkpointOf(long[] points, long offset) {
+
+        int low = 0;
+        int high = points.length / 2 - 1;
+        long checkpoint = 0;
+
+        while (low <= high) {
+
+            int middle = (low + high) >>> 1;
+            if (points[middle * 2 + 1] <= offset) {
+
+                checkpoint = points[middle * 2 + 1];
+                low = middle + 1;
+
+            } else {
+
+                high = middle - 1;
+            }
+        }
+
+        return checkpoint;
+    }
+
+    /**
+     * Gets the length of the content of the specified file.
+     *
+     * @param file The {@link OpenFile} of the log file or segment.
+     *
+     * @return The length of its content, or -1 if it is all the content of the file.
+     */
+    private long endOf(OpenFile file) {
+
+        return file.isActive ? activeEnd : -1;
+    }
+
+    /**
+     * Gets the length of the content of the specified file, which for a compressed segment is read from the end
+     * of the compressed file.
+     *
+     * @param file The {@link OpenFile} of the log file or segment.
+     *
+     * @return The length of its content, or -1 if it could not be determined.
+     */
+    private long contentLengthOf(OpenFile file) {
+
+        if (file.isActive) {
+
+            return activeEnd;
+        }
+
+        try {
+
+            if (!file.isCompressed) {
+
+                return file.content.length();
+            }
+
+            // A GZIP file ends with the length of its uncompressed content, modulo 2^32, in little-endian order.
+            file.content.seek(file.content.length() - 4);
+
+            long length = 0;
+            for (int i = 0; i < 4; i++) {
+
+                length |= (long) file.content.read() << (8 * i);
+            }
+
+            return length;
+
+        } catch (IOException exception) {
+
+            return -1;
+        }
+    }
+
+    /**
+     * Opens a reader over the entries of the specified part of a log file.
+     *
+     * @param file The {@link OpenFile} of the log file or segment.
+     * @param checkpoint The offset in the file of an index point at or before the start, from which the file can
+     *                   be decoded, or zero.
+     * @param start The offset in the file of the first entry to read, or zero to read from the start of the file.
+     * @param end The offset in the file at which to stop reading, or -1 to read to the end of the file.
+     *
+     * @return The {@link CRDLogEntryReader} over the entries.
+     *
+     * @throws IOException If the file could not be read.
+     */
+    private CRDLogEntryReader openEntries(OpenFile file, long checkpoint, long start, long end) throws IOException {
+
+        InputStream stream = new ChannelInputStream(file.content.getChannel());
+
+        if (file.isCompressed) {
+
+            stream = new GZIPInputStream(stream);
+        }
+
+        if (end >= 0) {
+
+            stream = new CRDLogInputStream(stream, end);
+        }
+
+        return new CRDLogEntryReader(stream, checkpoint, start, timestampDecoder);
+    }
+
+    /**
+     * Joins the specified entries into the text of the log.
+     *
+     * @param entries The text of the entries.
+     *
+     * @return The text of all the entries.
+     */
+    private static String join(Iterable<String> entries) {
+
+        StringBuilder content = new StringBuilder();
+        for (String entry : entries) {
+
+            content.append(entry);
+        }
+
+        return content.toString();
+    }
+
+    /**
+     * Opens the specified file for reading, if it exists.
+     *
+     * @param file The {@link File} to open.
+     *
+     * @return The {@link RandomAccessFile} opened for reading, or null if there is no such file.
+     *
+     * @throws IOException If the file exists but could not be opened.
+     */
+    private static RandomAccessFile openIfExists(File file) throws IOException {
+
+        return file.exists() ? new RandomAccessFile(file, "r") : null;
+    }
+
+    /**
+     * Closes the specified file, if there is one.
+     *
+     * @param file The {@link RandomAccessFile} to close, or null.
+     */
+    private static void closeQuietly(RandomAccessFile file) {
+
+        if (file == null) {
+
+            return;
+        }
+
+        try {
+
+            file.close();
+
+        } catch (IOException exception) {
+
+            // Nothing more to do.
+        }
+    }
+
+    //endregion
+
+    //region OpenFile
+
+    /**
+     * Class that holds a log file or segment open for reading, along with its indexes, so they can still be read
+     * after the files are renamed or deleted.
+     */
+    private static final class OpenFile {
+
+        /**
+         * The log file or segment.
+         */
+        final File file;
+
+        /**
+         * Flag indicating that the file is the one currently written to.
+         */
+        final boolean isActive;
+
+        /**
+         * Flag indicating that the file is a compressed segment.
+         */
+        final boolean isCompressed;
+
+        /**
+         * The content of the file.
+         */
+        final RandomAccessFile content;
+
+        /**
+         * The sparse time index of the file, or null if it has none.
+         */
+        final RandomAccessFile index;
+
+        /**
+         * The token index of the file, or null if it has none.
+         */
+        final RandomAccessFile tokenIndex;
+
+        /**
+         * Instantiates a new {@link OpenFile} object, opening the file and its indexes.
+         *
+         * @param file The {@link File} of the log file or segment.
+         * @param isActive True if the file is the one currently written to.
+         *
+         * @throws IOException If the file or one of its indexes could not be opened.
+         */
+        OpenFile(File file, boolean isActive) throws IOException {
+
+            this.file = file;
+            this.isActive = isActive;
+            this.isCompressed = file.getName().endsWith(CRDLogCompressor.EXTENSION);
+
+            RandomAccessFile content = new RandomAccessFile(file, "r");
+            RandomAccessFile index = null;
+            RandomAccessFile tokenIndex;
+
+            try {
+
+                index = openIfExists(CRDLogIndex.indexOf(file));
+                tokenIndex = openIfExists(CRDLogSegments.sideFile(file, CRDLogTokenIndex.EXTENSION));
+
+            } catch (IOException exception) {
+
+                closeQuietly(content);
+                closeQuietly(index);
+                throw exception;
+            }
+
+            this.content = content;
+            this.index = index;
+            this.tokenIndex = tokenIndex;
+        }
+
+        /**
+         * Closes the file and its indexes.
+         */
+        void close() {
+
+            closeQuietly(content);
+            closeQuietly(index);
+            closeQuietly(tokenIndex);
+        }
+    }
+
+    //endregion
+
+    //region ChannelInputStream
+
+    /**
+     * Class that represents an input stream over a file channel, reading from its own position in the file, so any
+     * number of streams can be opened over the same open file, one after another, and closing one leaves the file
+     * open.
+     */
+    private static final class ChannelInputStream extends InputStream {
+
+        /**
+         * The channel of the file read.
+         */
+        private final FileChannel channel;
+
+        /**
+         * The position in the file of the next byte to read.
+         */
+        private long position = 0;
+
+        /**
+         * Instantiates a new {@link ChannelInputStream} object reading from the start of the file.
+         *
+         * @param channel The {@link FileChannel} of the file to read.
+         */
+        ChannelInputStream(FileChannel channel) {
+
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            byte[] single = new byte[1];
+
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+
+            if (length == 0) {
+
+                return 0;
+            }
+
+            int count = channel.read(ByteBuffer.wrap(buffer, offset, length), position);
+            if (count > 0) {
+
+                position += count;
+            }
+
+            return count;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+
+            long skipped = Math.max(0, Math.min(count, channel.size() - position));
+            position += skipped;
+
+            return skipped;
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,55 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Interface for the encoders that turn the messages of a {@link CRDLog} into the bytes of its log file, in one of
+ * the {@link CRDLogFormat}s.  An encoder keeps the state of the file being written and is owned by the log writer
+ * thread.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+interface CRDLogRecordEncoder {
+
+    /**
+     * Encodes the start of a new, empty log file.
+     *
+     * @param header The header provided for the log file, or null if there is none.
+     * @param out The {@link CRDLogByteBuffer} to encode into.
+     */
+    void encodeHeader(String header, CRDLogByteBuffer out);
+
+    /**
+     * Encodes the specified message event.
+     *
+     * @param event The {@link CRDLogEvent} to encode, whose message is already formatted.
+     * @param out The {@link CRDLogByteBuffer} to encode into.
+     */
+    void encode(CRDLogEvent event, CRDLogByteBuffer out);
+
+    /**
+     * Encodes the end of a batch of messages, just before it is written to the log file.
+     *
+     * @param out The {@link CRDLogByteBuffer} to encode into.
+     */
+    void encodeBatchEnd(CRDLogByteBuffer out);
+
+    /**
+     * Forgets the state of the file being written, such as after a failed write, so nothing encoded afterwards
+     * depends on what was encoded before.
+     */
+    void reset();
+}
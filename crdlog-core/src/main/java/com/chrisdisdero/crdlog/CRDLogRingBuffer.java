@@ -0,0 +1,332 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class that represents a bounded multi-producer, single-consumer ring of preallocated {@link CRDLogEvent} slots.
+ *
+ * Producers claim the next sequence with a compare-and-set on the claim cursor, fill in the slot for that
+ * sequence and publish it, without taking any lock.  The single consumer processes published slots in sequence
+ * order and releases them back to the producers once it is done with them.  Slots are reused, so the steady
+ * state allocates nothing per event.
+ *
+ * Instead of processing a slot in place and releasing it afterwards, the consumer can take an event, copying it
+ * out of its slot and releasing the slot at once.  A producer finding the ring full can then take the oldest
+ * message the consumer has not yet taken off the ring itself, with a compare-and-set on the release cursor, to
+ * make room without waiting for the consumer.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogRingBuffer {
+
+    //region Private members
+
+    /**
+     * The time a producer parks between checks for free space when the ring is full.
+     */
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * The preallocated event slots.
+     */
+    private final CRDLogEvent[] slots;
+
+    /**
+     * The mask applied to a sequence to get its slot index.
+     */
+    private final int mask;
+
+    /**
+     * The sequence most recently published to each slot, which lets the consumer tell whether a claimed slot
+     * has been filled in yet.
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * The highest sequence claimed by a producer.
+     */
+    private final AtomicLong claimed = new AtomicLong(-1);
+
+    /**
+     * The highest sequence released, by the consumer or by a producer taking the oldest message.
+     */
+    private final AtomicLong released = new AtomicLong(-1);
+
+    /**
+     * Flag indicating that the consumer is parked waiting for an event to be published.
+     */
+    private volatile boolean consumerWaiting = false;
+
+    /**
+     * The consumer thread, unparked by producers when it is waiting.
+     */
+    private volatile Thread consumer = null;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogRingBuffer} object.
+     *
+     * @param capacity The number of slots in the ring, which must be a power of two.
+     */
+    CRDLogRingBuffer(int capacity) {
+
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+
+        slots = new CRDLogEvent[capacity];
+        mask = capacity - 1;
+        published = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+
+            slots[i] = new CRDLogEvent();
+            published.set(i, -1);
+        }
+    }
+
+    //endregion
+
+    //region Producer methods
+
+    /**
+     * Claims the next sequence in the ring if there is a free slot.
+     *
+     * @return The claimed sequence, which must be filled in using {@link #get(long)} and then published, or -1
+     * if the ring is full.
+     */
+    long tryClaim() {
+
+        while (true) {
+
+            long current = claimed.get();
+            long next = current + 1;
+
+            if (next - slots.length > released.get()) {
+
+                return -1;
+            }
+
+            if (claimed.compareAndSet(current, next)) {
+
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest message the consumer has not yet taken off the ring and releases its slot, to make room
+     * in a full ring without waiting for the consumer.  Only for use with a consumer that takes its events with
+     * {@link #take(long, CRDLogEvent)}.
+     *
+     * @return The estimated size of the message taken, counted against the limit on the size of the queue, or -1
+     * if the oldest event is a command or not yet published, or another thread took it first.
+     */
+    int takeOldest() {
+
+        long sequence = released.get() + 1;
+        if (!isPublished(sequence)) {
+
+            return -1;
+        }
+
+        // Read the event before releasing its slot, after which a producer may claim it and fill it in again.
+        CRDLogEvent event = get(sequence);
+        if (event.command != null) {
+
+            return -1;
+        }
+
+        int size = event.size;
+
+        return released.compareAndSet(sequence - 1, sequence) ? size : -1;
+    }
+
+    /**
+     * Parks the calling producer briefly while the ring is full, giving the consumer time to free up a slot.
+     */
+    void waitForRoom() {
+
+        LockSupport.parkNanos(this, FULL_PARK_NANOS);
+    }
+
+    /**
+     * Publishes the filled in slot for the specified sequence to the consumer.
+     *
+     * @param sequence The sequence previously returned by {@link #tryClaim()}.
+     */
+    void publish(long sequence) {
+
+        published.set((int) sequence & mask, sequence);
+
+        if (consumerWaiting) {
+
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    //endregion
+
+    //region Shared methods
+
+    /**
+     * Gets the event slot for the specified sequence.
+     *
+     * @param sequence The sequence of the slot.
+     *
+     * @return The {@link CRDLogEvent} slot.
+     */
+    CRDLogEvent get(long sequence) {
+
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Gets the number of sequences claimed and not yet released by the consumer.
+     *
+     * @return The number of events in the ring, including any still being filled in or processed.
+     */
+    long size() {
+
+        return claimed.get() - released.get();
+    }
+
+    //endregion
+
+    //region Consumer methods
+
+    /**
+     * Gets the next sequence the consumer should process.
+     *
+     * @return The sequence after the last released sequence.
+     */
+    long next() {
+
+        return released.get() + 1;
+    }
+
+    /**
+     * Gets the highest sequence published contiguously from the specified sequence.
+     *
+     * @param from The first sequence to check.
+     * @param limit The highest sequence to check.
+     *
+     * @return The highest published sequence between from and limit, or from - 1 if from is not published yet.
+     */
+    long available(long from, long limit) {
+
+        long sequence = from;
+        while (sequence <= limit && published.get((int) sequence & mask) == sequence) {
+
+            sequence++;
+        }
+
+        return sequence - 1;
+    }
+
+    /**
+     * Parks the consumer thread until the specified sequence is published or the timeout elapses.  The wait can
+     * end early, such as on a wakeup left over from an earlier publish, so a false result only means the sequence
+     * is not published yet.
+     *
+     * @param sequence The sequence to wait for.
+     * @param timeoutNanos The maximum time to wait in nanoseconds.
+     *
+     * @return True if the sequence is published.
+     */
+    boolean await(long sequence, long timeoutNanos) {
+
+        if (isPublished(sequence)) {
+
+            return true;
+        }
+
+        consumer = Thread.currentThread();
+        consumerWaiting = true;
+
+        // Check again after announcing that we are waiting, so a publish in between cannot be missed.
+        if (!isPublished(sequence)) {
+
+            LockSupport.parkNanos(this, timeoutNanos);
+        }
+
+        consumerWaiting = false;
+
+        return isPublished(sequence);
+    }
+
+    /**
+     * Releases all the slots up to and including the specified sequence back to the producers.  The slots can
+     * be released in the middle of a batch, as long as every slot up to the sequence is done with.
+     *
+     * @param sequence The last sequence processed by the consumer.
+     */
+    void release(long sequence) {
+
+        released.set(sequence);
+    }
+
+    /**
+     * Takes the event for the specified sequence off the ring, copying it into the specified event and releasing
+     * its slot at once, so producers can reuse the slot while the copy is processed.  The sequence must be
+     * published, and the consumer must take the sequences in order.
+     *
+     * @param sequence The sequence to take.
+     * @param into The {@link CRDLogEvent} to copy the event into.
+     *
+     * @return True if the event was taken, or false if a producer took it first with {@link #takeOldest()}.
+     */
+    boolean take(long sequence, CRDLogEvent into) {
+
+        // Copy the event before releasing its slot, and only keep the copy if no producer released it first.
+        into.copyFrom(get(sequence));
+
+        if (!released.compareAndSet(sequence - 1, sequence)) {
+
+            into.clear();
+            return false;
+        }
+
+        return true;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Checks whether the slot for the specified sequence has been published.
+     *
+     * @param sequence The sequence to check.
+     *
+     * @return True if the sequence is published.
+     */
+    private boolean isPublished(long sequence) {
+
+        return published.get((int) sequence & mask) == sequence;
+    }
+
+    //endregion
+}
@@ -0,0 +1,115 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.File;
+
+/**
+ * Class that represents an entry of the log found by {@link CRDLog#search}.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public class CRDLogSearchHit {
+
+    //region Private members
+
+    /**
+     * The log file or segment holding the entry.
+     */
+    private final File file;
+
+    /**
+     * The offset of the entry in the content of the file.
+     */
+    private final long offset;
+
+    /**
+     * The time the entry was logged, in milliseconds since the epoch.
+     */
+    private final long timestamp;
+
+    /**
+     * The text of the entry.
+     */
+    private final String entry;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogSearchHit} object.
+     *
+     * @param file The log file or segment holding the entry.
+     * @param offset The offset of the entry in the content of the file.
+     * @param timestamp The time the entry was logged, in milliseconds since the epoch.
+     * @param entry The text of the entry.
+     */
+    CRDLogSearchHit(File file, long offset, long timestamp, String entry) {
+
+        this.file = file;
+        this.offset = offset;
+        this.timestamp = timestamp;
+        this.entry = entry;
+    }
+
+    //endregion
+
+    //region Public methods
+
+    /**
+     * Gets the log file or segment holding the entry.
+     *
+     * @return The {@link File} holding the entry.
+     */
+    public File getFile() {
+
+        return file;
+    }
+
+    /**
+     * Gets the offset of the entry in the content of the file holding it.  For a compressed segment, this is the
+     * offset in the uncompressed content.
+     *
+     * @return The offset of the entry in bytes.
+     */
+    public long getOffset() {
+
+        return offset;
+    }
+
+    /**
+     * Gets the time the entry was logged.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+
+        return timestamp;
+    }
+
+    /**
+     * Gets the text of the entry, as it reads in the log.
+     *
+     * @return The text of the entry, including the line break ending it.
+     */
+    public String getEntry() {
+
+        return entry;
+    }
+
+    //endregion
+}
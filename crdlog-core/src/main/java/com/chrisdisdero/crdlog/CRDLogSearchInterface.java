@@ -0,0 +1,34 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.List;
+
+/**
+ * Interface that allows the caller to get the results of searching the log represented by {@link CRDLog}.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public interface CRDLogSearchInterface {
+
+    /**
+     * The result of searching the log.
+     *
+     * @param hits A {@link List} of the {@link CRDLogSearchHit}s for the entries found, oldest first, or null if the
+     *             log could not be searched.
+     */
+    void onSearchResults(List<CRDLogSearchHit> hits);
+}
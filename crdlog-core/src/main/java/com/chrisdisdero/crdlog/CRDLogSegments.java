@@ -0,0 +1,403 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class that keeps track of the files making up the content of a log.
+ *
+ * Without rolling, the content is the single log file passed to {@link CRDLog}.  With rolling, the content is a
+ * series of numbered segments next to it, so "applog.txt" rolls through "applog.0.txt", "applog.1.txt" and so on,
+ * the highest numbered segment being the one written to.  Once there are more than the maximum number of
+ * segments, the oldest ones are deleted.  A closed segment may have been replaced by a compressed copy with a
+ * ".gz" extension added by the {@link CRDLogCompressor}, which synchronizes with the writer thread on this object.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogSegments {
+
+    //region Private members
+
+    /**
+     * Log tag for this class.
+     */
+    private static final String TAG = CRDLogSegments.class.getCanonicalName();
+
+    /**
+     * The part added after the name of the log file, before the time and position, to name a drained file.
+     */
+    private static final String DRAINED_INFIX = ".drained-";
+
+    /**
+     * The log file passed to {@link CRDLog}.
+     */
+    private final File logFile;
+
+    /**
+     * Flag indicating whether the content rolls through numbered segments.
+     */
+    private final boolean rolling;
+
+    /**
+     * The maximum number of segments kept when rolling.
+     */
+    private final int maxSegmentCount;
+
+    /**
+     * The name of the log file up to its extension.
+     */
+    private final String baseName;
+
+    /**
+     * The extension of the log file, including the dot, or an empty string if it has none.
+     */
+    private final String extension;
+
+    /**
+     * The pattern matching the names of the segments, capturing the segment number.
+     */
+    private final Pattern segmentPattern;
+
+    /**
+     * The number of the segment currently written to, or -1 if not known yet.
+     */
+    private long activeIndex = -1;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogSegments} object.
+     *
+     * @param logFile The log file passed to {@link CRDLog}.
+     * @param rolling True to roll through numbered segments, false to use the log file alone.
+     * @param maxSegmentCount The maximum number of segments kept when rolling.
+     */
+    CRDLogSegments(File logFile, boolean rolling, int maxSegmentCount) {
+
+        this.logFile = logFile;
+        this.rolling = rolling;
+        this.maxSegmentCount = maxSegmentCount;
+
+        String name = logFile.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+
+            baseName = name.substring(0, dot);
+            extension = name.substring(dot);
+
+        } else {
+
+            baseName = name;
+            extension = "";
+        }
+
+        segmentPattern = Pattern.compile(Pattern.quote(baseName) + "\\.(\\d+)" + Pattern.quote(extension) + "(" + Pattern.quote(CRDLogCompressor.EXTENSION) + ")?");
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Gets the file currently written to.
+     *
+     * @return The {@link File} currently written to.
+     */
+    synchronized File active() {
+
+        if (!rolling) {
+
+            return logFile;
+        }
+
+        if (activeIndex < 0) {
+
+            List<Long> indexes = indexes();
+            activeIndex = indexes.isEmpty() ? 0 : indexes.get(indexes.size() - 1);
+        }
+
+        return segment(activeIndex);
+    }
+
+    /**
+     * Moves on to the next segment and deletes the oldest segments beyond the maximum number kept.
+     *
+     * @return The {@link File} of the new segment to write to.
+     */
+    synchronized File next() {
+
+        active();
+        activeIndex++;
+
+        List<Long> indexes = indexes();
+        for (int i = 0; i < indexes.size() - (maxSegmentCount - 1); i++) {
+
+            delete(indexes.get(i));
+        }
+
+        return segment(activeIndex);
+    }
+
+    /**
+     * Gets the files making up the content of the log that exist, oldest first.
+     *
+     * @return The {@link List} of {@link File}s, the last of which is the one currently written to if it exists.
+     */
+    synchronized List<File> list() {
+
+        List<File> files = new ArrayList<>();
+
+        if (!rolling) {
+
+            if (logFile.exists()) {
+
+                files.add(logFile);
+            }
+
+            return files;
+        }
+
+        for (Long index : indexes()) {
+
+            // Prefer the uncompressed segment, which is only deleted once its compressed copy is complete.
+            File segment = segment(index);
+            files.add(segment.exists() ? segment : compressed(segment));
+        }
+
+        return files;
+    }
+
+    /**
+     * Deletes all the files making up the content of the log, along with their indexes.  The segment numbers carry on from the current
+     * one, so a compression still running for a deleted segment can never replace a new one.
+     */
+    synchronized void deleteAll() {
+
+        if (!rolling) {
+
+            logFile.delete();
+            deleteSideFiles(logFile);
+
+        } else {
+
+            for (Long index : indexes()) {
+
+                delete(index);
+            }
+        }
+    }
+
+    /**
+     * Moves all the files making up the content of the log out of the way by renaming them, and deletes their
+     * indexes, so the log starts over with new files while the content is handed off in the ones renamed.  Each
+     * file is renamed in the same directory, keeping its extension, such as 'applog.txt' to
+     * 'applog.drained-1500000000000-0.txt', so it takes constant time whatever its size.  A file that cannot be
+     * renamed stays part of the log.  The segment numbers carry on from the current one, as for
+     * {@link #deleteAll()}.
+     *
+     * @return The {@link List} of {@link File}s the content was moved to, oldest first.
+     */
+    synchronized List<File> drain() {
+
+        List<File> files = list();
+        List<File> drained = new ArrayList<>();
+
+        // Name the files after the time of the drain, moving on past any names taken by an earlier one.
+        long stamp = System.currentTimeMillis();
+        while (isTaken(files, stamp)) {
+
+            stamp++;
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+
+            File file = files.get(i);
+            File target = drained(file, stamp, i);
+
+            if (file.renameTo(target)) {
+
+                drained.add(target);
+                deleteSideFiles(file);
+
+            } else {
+
+                CRDLogPlatform.error(TAG, "Failed to drain log file " + file + ".", null);
+            }
+        }
+
+        return drained;
+    }
+
+    /**
+     * Gets a file kept next to the specified log file or segment, such as its index, which is named after the
+     * uncompressed file so it still applies once the segment is compressed.
+     *
+     * @param file The {@link File} of the log file or segment, compressed or not.
+     * @param extension The extension added to the name of the log file or segment to name the side file.
+     *
+     * @return The {@link File} of the side file.
+     */
+    static File sideFile(File file, String extension) {
+
+        String path = file.getPath();
+        if (path.endsWith(CRDLogCompressor.EXTENSION)) {
+
+            path = path.substring(0, path.length() - CRDLogCompressor.EXTENSION.length());
+        }
+
+        return new File(path + extension);
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Gets the file of the segment with the specified number.
+     *
+     * @param index The number of the segment.
+     *
+     * @return The {@link File} of the segment.
+     */
+    private File segment(long index) {
+
+        return new File(logFile.getParentFile(), baseName + "." + index + extension);
+    }
+
+    /**
+     * Gets the compressed copy of the specified segment.
+     *
+     * @param segment The {@link File} of the segment.
+     *
+     * @return The {@link File} of the compressed copy of the segment.
+     */
+    private static File compressed(File segment) {
+
+        return new File(segment.getPath() + CRDLogCompressor.EXTENSION);
+    }
+
+    /**
+     * Gets the name the specified file of the log is renamed to when drained.
+     *
+     * @param file The {@link File} of the log file or segment, compressed or not.
+     * @param stamp The time of the drain, in milliseconds since the epoch.
+     * @param position The position of the file in the content of the log.
+     *
+     * @return The {@link File} to rename the file to.
+     */
+    private File drained(File file, long stamp, int position) {
+
+        String compressedExtension = file.getName().endsWith(CRDLogCompressor.EXTENSION) ? CRDLogCompressor.EXTENSION : "";
+
+        return new File(file.getParentFile(), baseName + DRAINED_INFIX + stamp + "-" + position + extension + compressedExtension);
+    }
+
+    /**
+     * Checks whether any of the names the specified files would be renamed to when drained is already taken.
+     *
+     * @param files The {@link File}s of the content of the log.
+     * @param stamp The time of the drain, in milliseconds since the epoch.
+     *
+     * @return True if a name is taken.
+     */
+    private boolean isTaken(List<File> files, long stamp) {
+
+        for (int i = 0; i < files.size(); i++) {
+
+            if (drained(files.get(i), stamp, i).exists()) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Deletes the segment with the specified number, whether or not it is compressed, along with its index.
+     *
+     * @param index The number of the segment.
+     */
+    private void delete(long index) {
+
+        File segment = segment(index);
+        segment.delete();
+        compressed(segment).delete();
+        deleteSideFiles(segment);
+    }
+
+    /**
+     * Deletes the indexes kept next to the specified log file or segment.
+     *
+     * @param file The {@link File} of the log file or segment.
+     */
+    private static void deleteSideFiles(File file) {
+
+        sideFile(file, CRDLogIndex.EXTENSION).delete();
+        sideFile(file, CRDLogTokenIndex.EXTENSION).delete();
+    }
+
+    /**
+     * Gets the numbers of the segments that exist, compressed or not, in ascending order.
+     *
+     * @return The {@link List} of segment numbers.
+     */
+    private List<Long> indexes() {
+
+        List<Long> indexes = new ArrayList<>();
+
+        File directory = logFile.getAbsoluteFile().getParentFile();
+        String[] names = directory != null ? directory.list() : null;
+        if (names == null) {
+
+            return indexes;
+        }
+
+        for (String name : names) {
+
+            Matcher matcher = segmentPattern.matcher(name);
+            if (matcher.matches()) {
+
+                try {
+
+                    Long index = Long.parseLong(matcher.group(1));
+                    if (!indexes.contains(index)) {
+
+                        indexes.add(index);
+                    }
+
+                } catch (NumberFormatException exception) {
+
+                    // Not one of our segments.
+                }
+            }
+        }
+
+        Collections.sort(indexes);
+
+        return indexes;
+    }
+
+    //endregion
+}
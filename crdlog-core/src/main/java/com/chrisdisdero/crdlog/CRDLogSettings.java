@@ -0,0 +1,1251 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that holds the optional settings used when creating a {@link CRDLog}.
+ *
+ * The settings are read once when the {@link CRDLog} is created, so changing them afterwards has no effect on
+ * an existing log.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public class CRDLogSettings {
+
+    //region Private members
+
+    /**
+     * The number of messages and commands that can be queued up for the writer before callers have to wait.
+     */
+    private int queueCapacity = 4096;
+
+    /**
+     * The approximate size in bytes of the messages that can be queued up for the writer, or zero for no limit.
+     */
+    private long maxQueuedBytes = 0;
+
+    /**
+     * What is done with a message when the queue is full.
+     */
+    private CRDLogOverflowPolicy overflowPolicy = CRDLogOverflowPolicy.BLOCK;
+
+    /**
+     * The level below which messages are dropped when the queue is full with {@link CRDLogOverflowPolicy#DROP_BELOW_LEVEL}.
+     */
+    private CRDLogLevel overflowDropLevel = CRDLogLevel.WARN;
+
+    /**
+     * The maximum number of queued messages written to the log file in a single write.
+     */
+    private int maxBatchSize = 512;
+
+    /**
+     * The maximum time in milliseconds to wait for more messages before writing a batch that is not full.
+     */
+    private long maxBatchLingerMillis = 0;
+
+    /**
+     * Flag to format messages with mutable parameters on the calling thread instead of the writer thread.
+     */
+    private boolean snapshotArguments = false;
+
+    /**
+     * The way messages are appended to the log file.
+     */
+    private CRDLogWriteMode writeMode = CRDLogWriteMode.STREAM;
+
+    /**
+     * The size in bytes by which the mapped window grows in {@link CRDLogWriteMode#MEMORY_MAPPED} mode.
+     */
+    private int mappedChunkSize = 1024 * 1024;
+
+    /**
+     * The size in bytes beyond which the log rolls over to a new segment, or zero to write a single log file.
+     */
+    private long maxSegmentSize = 0;
+
+    /**
+     * The maximum number of segments kept when the log rolls over.
+     */
+    private int maxSegmentCount = 5;
+
+    /**
+     * Flag to compress segments in the background once the log has rolled over from them.
+     */
+    private boolean compressClosedSegments = false;
+
+    /**
+     * The format in which messages are stored in the log file.
+     */
+    private CRDLogFormat logFormat = CRDLogFormat.TEXT;
+
+    /**
+     * The size in bytes of log content between the points of the time index, or zero to not index the log.
+     */
+    private int indexInterval = 0;
+
+    /**
+     * Flag to keep a token index next to each log file for searching the log.
+     */
+    private boolean searchIndexEnabled = false;
+
+    /**
+     * The time in milliseconds after which content written to the log file is forced to the storage device, or
+     * zero to not sync on a timer.
+     */
+    private long syncIntervalMillis = 0;
+
+    /**
+     * The size in bytes of content written to the log file after which it is forced to the storage device, or zero
+     * to not sync by size.
+     */
+    private long syncIntervalBytes = 0;
+
+    /**
+     * Flag to force the log file to the storage device after writing an error message.
+     */
+    private boolean syncOnError = false;
+
+    /**
+     * Flag to record the metrics of the log.
+     */
+    private boolean metricsEnabled = false;
+
+    /**
+     * The console messages are printed to, or null for the default console of the platform.
+     */
+    private CRDLogConsole console = null;
+
+    /**
+     * The sinks messages are written to besides the log file, with the filters on the messages each receives.
+     */
+    private final List<CRDLogSinkRegistration> sinks = new ArrayList<CRDLogSinkRegistration>();
+
+    /**
+     * The number of messages that can be queued up for each sink before messages for it are dropped.
+     */
+    private int sinkQueueCapacity = 1024;
+
+    /**
+     * The number of messages held in memory by the flight recorder, or zero if it is off.
+     */
+    private int flightRecorderCapacity = 0;
+
+    /**
+     * The lowest level of the messages that have the flight recorder written to the log file.
+     */
+    private CRDLogLevel flightRecorderTriggerLevel = CRDLogLevel.ERROR;
+
+    /**
+     * The rate limit and sample rate of the messages of each tag with rules set.
+     */
+    private final Map<String, CRDLogTagRule> tagRules = new HashMap<String, CRDLogTagRule>();
+
+    /**
+     * The rate limit of the messages of tags without rules of their own, or null if they are not limited.
+     */
+    private CRDLogTagRule defaultTagRule = null;
+
+    /**
+     * The time in milliseconds between reports of the messages suppressed by the tag rules.
+     */
+    private long suppressedReportIntervalMillis = 10000;
+
+    /**
+     * The time in milliseconds over which repeats of a message are coalesced into one summary, or zero if off.
+     */
+    private long coalesceWindowMillis = 0;
+
+    /**
+     * The number of distinct recent messages watched for repeats.
+     */
+    private int coalesceCapacity = 16;
+
+    /**
+     * The maximum number of stack frames written for each throwable in a stack trace.
+     */
+    private int maxStackTraceFrames = 100;
+
+    /**
+     * The maximum number of causes written in a stack trace after the throwable logged.
+     */
+    private int maxStackTraceCauses = 10;
+
+    //endregion
+
+    //region Public methods
+
+    /**
+     * Gets the number of messages and commands that can be queued up for the writer before callers have to wait.
+     *
+     * @return The queue capacity.
+     */
+    public int getQueueCapacity() {
+
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the number of messages and commands that can be queued up for the writer before callers have to wait.
+     * The queue is preallocated, so its capacity must be a power of two.
+     *
+     * @param queueCapacity The queue capacity.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setQueueCapacity(int queueCapacity) {
+
+        if (queueCapacity < 1 || Integer.bitCount(queueCapacity) != 1) {
+
+            throw new IllegalArgumentException("queueCapacity must be a power of two");
+        }
+
+        this.queueCapacity = queueCapacity;
+
+        return this;
+    }
+
+    /**
+     * Gets the approximate size of the messages that can be queued up for the writer before the queue is full.
+     *
+     * @return The maximum queued size in bytes, or zero if only the number of messages is limited.
+     */
+    public long getMaxQueuedBytes() {
+
+        return maxQueuedBytes;
+    }
+
+    /**
+     * Sets the approximate size of the messages that can be queued up for the writer before the queue is full, on
+     * top of the limit on their number set with {@link #setQueueCapacity(int)}.  The size of a message is
+     * estimated from the length of its tag and text and the number of its parameters, so this bounds the memory
+     * held by the queue when messages are large.  A message larger than the limit is still queued when the queue
+     * is empty.
+     *
+     * @param maxQueuedBytes The maximum queued size in bytes, or zero to only limit the number of messages.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setMaxQueuedBytes(long maxQueuedBytes) {
+
+        if (maxQueuedBytes < 0) {
+
+            throw new IllegalArgumentException("maxQueuedBytes must not be negative");
+        }
+
+        this.maxQueuedBytes = maxQueuedBytes;
+
+        return this;
+    }
+
+    /**
+     * Gets what is done with a message when the queue is full.
+     *
+     * @return The {@link CRDLogOverflowPolicy}.
+     */
+    public CRDLogOverflowPolicy getOverflowPolicy() {
+
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets what is done with a message when the queue is full.  By default the caller waits for the writer to
+     * make room, which never loses a message but ties the caller to the speed of the disk while the queue is
+     * full.  Commands such as {@link CRDLog#get} are never dropped.
+     *
+     * @param overflowPolicy The {@link CRDLogOverflowPolicy}.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setOverflowPolicy(CRDLogOverflowPolicy overflowPolicy) {
+
+        if (overflowPolicy == null) {
+
+            throw new IllegalArgumentException("overflowPolicy must not be null");
+        }
+
+        this.overflowPolicy = overflowPolicy;
+
+        return this;
+    }
+
+    /**
+     * Gets the level below which messages are dropped when the queue is full with
+     * {@link CRDLogOverflowPolicy#DROP_BELOW_LEVEL}.
+     *
+     * @return The {@link CRDLogLevel}.
+     */
+    public CRDLogLevel getOverflowDropLevel() {
+
+        return overflowDropLevel;
+    }
+
+    /**
+     * Sets the level below which messages are dropped when the queue is full with
+     * {@link CRDLogOverflowPolicy#DROP_BELOW_LEVEL}.  The default of {@link CRDLogLevel#WARN} drops debug and info
+     * messages and keeps warnings and errors.
+     *
+     * @param overflowDropLevel The {@link CRDLogLevel}.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setOverflowDropLevel(CRDLogLevel overflowDropLevel) {
+
+        if (overflowDropLevel == null) {
+
+            throw new IllegalArgumentException("overflowDropLevel must not be null");
+        }
+
+        this.overflowDropLevel = overflowDropLevel;
+
+        return this;
+    }
+
+    /**
+     * Gets the maximum number of queued messages written to the log file in a single write.
+     *
+     * @return The maximum batch size.
+     */
+    public int getMaxBatchSize() {
+
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of queued messages written to the log file in a single write.
+     *
+     * @param maxBatchSize The maximum batch size, which must be at least 1.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setMaxBatchSize(int maxBatchSize) {
+
+        if (maxBatchSize < 1) {
+
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+
+        this.maxBatchSize = maxBatchSize;
+
+        return this;
+    }
+
+    /**
+     * Gets the maximum time to wait for more messages before writing a batch that is not full.
+     *
+     * @return The maximum linger time in milliseconds.
+     */
+    public long getMaxBatchLingerMillis() {
+
+        return maxBatchLingerMillis;
+    }
+
+    /**
+     * Sets the maximum time to wait for more messages before writing a batch that is not full.  The default of
+     * zero writes whatever is queued as soon as the writer gets to it.
+     *
+     * @param maxBatchLingerMillis The maximum linger time in milliseconds, or zero to not wait.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setMaxBatchLingerMillis(long maxBatchLingerMillis) {
+
+        if (maxBatchLingerMillis < 0) {
+
+            throw new IllegalArgumentException("maxBatchLingerMillis must not be negative");
+        }
+
+        this.maxBatchLingerMillis = maxBatchLingerMillis;
+
+        return this;
+    }
+
+    /**
+     * Gets whether messages with mutable parameters are formatted on the calling thread.
+     *
+     * @return True if mutable parameters are snapshotted by formatting on the calling thread.
+     */
+    public boolean isSnapshotArguments() {
+
+        return snapshotArguments;
+    }
+
+    /**
+     * Sets whether messages with mutable parameters are formatted on the calling thread.  By default messages
+     * are formatted on the writer thread, which keeps formatting off the calling thread but means a parameter
+     * changed after the call is formatted with its new value.  When enabled, messages whose parameters are not
+     * all strings, boxed primitives, {@link java.math.BigInteger}s or {@link java.math.BigDecimal}s are formatted
+     * right away instead.
+     *
+     * @param snapshotArguments True to format messages with mutable parameters on the calling thread.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setSnapshotArguments(boolean snapshotArguments) {
+
+        this.snapshotArguments = snapshotArguments;
+
+        return this;
+    }
+
+    /**
+     * Gets the way messages are appended to the log file.
+     *
+     * @return The {@link CRDLogWriteMode}.
+     */
+    public CRDLogWriteMode getWriteMode() {
+
+        return writeMode;
+    }
+
+    /**
+     * Sets the way messages are appended to the log file.
+     *
+     * @param writeMode The {@link CRDLogWriteMode}.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setWriteMode(CRDLogWriteMode writeMode) {
+
+        if (writeMode == null) {
+
+            throw new IllegalArgumentException("writeMode must not be null");
+        }
+
+        this.writeMode = writeMode;
+
+        return this;
+    }
+
+    /**
+     * Gets the size by which the mapped window over the log file grows in {@link CRDLogWriteMode#MEMORY_MAPPED}
+     * mode.
+     *
+     * @return The chunk size in bytes.
+     */
+    public int getMappedChunkSize() {
+
+        return mappedChunkSize;
+    }
+
+    /**
+     * Sets the size by which the mapped window over the log file grows in {@link CRDLogWriteMode#MEMORY_MAPPED}
+     * mode.  Larger chunks mean fewer remaps, at the cost of more unused space at the end of the file while it
+     * is open.
+     *
+     * @param mappedChunkSize The chunk size in bytes.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setMappedChunkSize(int mappedChunkSize) {
+
+        if (mappedChunkSize < 1) {
+
+            throw new IllegalArgumentException("mappedChunkSize must be at least 1");
+        }
+
+        this.mappedChunkSize = mappedChunkSize;
+
+        return this;
+    }
+
+    /**
+     * Gets the size beyond which the log rolls over to a new segment.
+     *
+     * @return The maximum segment size in bytes, or zero if the log is a single file.
+     */
+    public long getMaxSegmentSize() {
+
+        return maxSegmentSize;
+    }
+
+    /**
+     * Sets the size beyond which the log rolls over to a new segment.  When set, the log is written to numbered
+     * segments next to the log file passed to {@link CRDLog}, so "applog.txt" is written as "applog.0.txt",
+     * "applog.1.txt" and so on, each starting with the log header.  A segment is rolled over once it reaches this
+     * size, so it can exceed it by at most one message.
+     *
+     * @param maxSegmentSize The maximum segment size in bytes, or zero to write a single log file.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setMaxSegmentSize(long maxSegmentSize) {
+
+        if (maxSegmentSize < 0) {
+
+            throw new IllegalArgumentException("maxSegmentSize must not be negative");
+        }
+
+        this.maxSegmentSize = maxSegmentSize;
+
+        return this;
+    }
+
+    /**
+     * Gets the maximum number of segments kept when the log rolls over.
+     *
+     * @return The maximum segment count.
+     */
+    public int getMaxSegmentCount() {
+
+        return maxSegmentCount;
+    }
+
+    /**
+     * Sets the maximum number of segments kept when the log rolls over.  Once a new segment would take the log
+     * past this count, the oldest segments are deleted.
+     *
+     * @param maxSegmentCount The maximum segment count, which must be at least 1.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setMaxSegmentCount(int maxSegmentCount) {
+
+        if (maxSegmentCount < 1) {
+
+            throw new IllegalArgumentException("maxSegmentCount must be at least 1");
+        }
+
+        this.maxSegmentCount = maxSegmentCount;
+
+        return this;
+    }
+
+    /**
+     * Gets whether segments are compressed in the background once the log has rolled over from them.
+     *
+     * @return True if closed segments are compressed.
+     */
+    public boolean isCompressClosedSegments() {
+
+        return compressClosedSegments;
+    }
+
+    /**
+     * Sets whether segments are compressed in the background once the log has rolled over from them.  A closed
+     * segment is compressed with GZIP by a low priority thread and replaced by the compressed file, which has
+     * ".gz" added to its name.  The content returned by {@link CRDLog#get} is decompressed transparently.  This
+     * only applies when the log rolls over, as set with {@link #setMaxSegmentSize(long)}.
+     *
+     * @param compressClosedSegments True to compress closed segments.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setCompressClosedSegments(boolean compressClosedSegments) {
+
+        this.compressClosedSegments = compressClosedSegments;
+
+        return this;
+    }
+
+    /**
+     * Gets the format in which messages are stored in the log file.
+     *
+     * @return The {@link CRDLogFormat}.
+     */
+    public CRDLogFormat getLogFormat() {
+
+        return logFormat;
+    }
+
+    /**
+     * Sets the format in which messages are stored in the log file.  The {@link CRDLogFormat#BINARY} format stores
+     * each message in a fraction of the space of a line of text and skips formatting the message for the log file,
+     * and is rendered back to text when the content is read.  Each file is marked with its format, so a log can be
+     * read back whichever format it was written in, but an existing log file should be cleared before switching
+     * its format, since a file keeps the format it was started in.
+     *
+     * @param logFormat The {@link CRDLogFormat}.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setLogFormat(CRDLogFormat logFormat) {
+
+        if (logFormat == null) {
+
+            throw new IllegalArgumentException("logFormat must not be null");
+        }
+
+        this.logFormat = logFormat;
+
+        return this;
+    }
+
+    /**
+     * Gets the size of log content between the points of the time index kept next to each log file.
+     *
+     * @return The index interval in bytes, or zero if the log is not indexed.
+     */
+    public int getIndexInterval() {
+
+        return indexInterval;
+    }
+
+    /**
+     * Sets the size of log content between the points of the time index kept next to each log file.  Each file
+     * then gets an index file with ".idx" added to its name, which {@link CRDLog#tail} and {@link CRDLog#range}
+     * use to read only the part of the log they need.  A smaller interval makes those reads faster, at the cost
+     * of a larger index and, in the {@link CRDLogFormat#BINARY} format, of repeating the tags and formats in use
+     * after each index point.
+     *
+     * @param indexInterval The index interval in bytes, or zero to not index the log.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setIndexInterval(int indexInterval) {
+
+        if (indexInterval < 0) {
+
+            throw new IllegalArgumentException("indexInterval must not be negative");
+        }
+
+        this.indexInterval = indexInterval;
+
+        return this;
+    }
+
+    /**
+     * Gets whether a token index is kept next to each log file for searching the log.
+     *
+     * @return True if the log is indexed for search.
+     */
+    public boolean isSearchIndexEnabled() {
+
+        return searchIndexEnabled;
+    }
+
+    /**
+     * Sets whether a token index is kept next to each log file for searching the log.  Each file then gets a
+     * token index file with ".tok" added to its name, which {@link CRDLog#search} uses to find the entries holding
+     * the words searched for without reading the log.  The index is written in runs as the log grows, so only the
+     * latest part of the log, or a part written while the app was not indexing it, is scanned.  Searching for a
+     * rare word in a log in the {@link CRDLogFormat#BINARY} format is fastest with a time index as well, as set
+     * with {@link #setIndexInterval(int)}, from which each entry found can be decoded.
+     *
+     * @param searchIndexEnabled True to index the log for search.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setSearchIndexEnabled(boolean searchIndexEnabled) {
+
+        this.searchIndexEnabled = searchIndexEnabled;
+
+        return this;
+    }
+
+    /**
+     * Gets the time after which content written to the log file is forced to the storage device.
+     *
+     * @return The sync interval in milliseconds, or zero if the log file is not synced on a timer.
+     */
+    public long getSyncIntervalMillis() {
+
+        return syncIntervalMillis;
+    }
+
+    /**
+     * Sets the time after which content written to the log file is forced to the storage device.  By default
+     * the log file is never synced, so content written shortly before the device loses power or crashes may be
+     * lost, even though it survives the app itself crashing.  With an interval set, no more than about that much
+     * of the log is at risk.  The sync is done by the writer thread, so callers never wait for it.
+     *
+     * @param syncIntervalMillis The sync interval in milliseconds, or zero to not sync on a timer.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setSyncIntervalMillis(long syncIntervalMillis) {
+
+        if (syncIntervalMillis < 0) {
+
+            throw new IllegalArgumentException("syncIntervalMillis must not be negative");
+        }
+
+        this.syncIntervalMillis = syncIntervalMillis;
+
+        return this;
+    }
+
+    /**
+     * Gets the size of content written to the log file after which it is forced to the storage device.
+     *
+     * @return The sync interval in bytes, or zero if the log file is not synced by size.
+     */
+    public long getSyncIntervalBytes() {
+
+        return syncIntervalBytes;
+    }
+
+    /**
+     * Sets the size of content written to the log file after which it is forced to the storage device, so no more
+     * than about that much of the log is at risk if the device loses power or crashes.  This can be combined with
+     * {@link #setSyncIntervalMillis(long)}, whichever comes first.
+     *
+     * @param syncIntervalBytes The sync interval in bytes, or zero to not sync by size.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setSyncIntervalBytes(long syncIntervalBytes) {
+
+        if (syncIntervalBytes < 0) {
+
+            throw new IllegalArgumentException("syncIntervalBytes must not be negative");
+        }
+
+        this.syncIntervalBytes = syncIntervalBytes;
+
+        return this;
+    }
+
+    /**
+     * Gets whether the log file is forced to the storage device after writing an error message.
+     *
+     * @return True if the log file is synced after an error message.
+     */
+    public boolean isSyncOnError() {
+
+        return syncOnError;
+    }
+
+    /**
+     * Sets whether the log file is forced to the storage device after writing an error message, so an error, and
+     * everything logged before it, survives the device crashing right after it.  The sync is done by the writer
+     * thread once it has written the batch holding the error, so the caller of {@link CRDLog#error} never waits
+     * for it.
+     *
+     * @param syncOnError True to sync the log file after an error message.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setSyncOnError(boolean syncOnError) {
+
+        this.syncOnError = syncOnError;
+
+        return this;
+    }
+
+    /**
+     * Gets whether the metrics of the log are recorded.
+     *
+     * @return True if the metrics are recorded.
+     */
+    public boolean isMetricsEnabled() {
+
+        return metricsEnabled;
+    }
+
+    /**
+     * Sets whether the metrics of the log are recorded, such as the depth of the queue, the number of messages and
+     * bytes written and the latencies of queuing up and writing messages, which show whether the log keeps up.
+     * Recording them costs each message logged a couple of clock reads and atomic increments.  The metrics are
+     * read with {@link CRDLog#getMetrics()} or reported with {@link CRDLog#setMetricsListener}.
+     *
+     * @param metricsEnabled True to record the metrics.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setMetricsEnabled(boolean metricsEnabled) {
+
+        this.metricsEnabled = metricsEnabled;
+
+        return this;
+    }
+
+    /**
+     * Gets the console messages are printed to.
+     *
+     * @return The {@link CRDLogConsole} set, or the default console of the platform if none is set.
+     */
+    public CRDLogConsole getConsole() {
+
+        return console != null ? console : CRDLogPlatform.defaultConsole();
+    }
+
+    /**
+     * Sets the console messages are printed to before they are written to the log file.  By default this is logcat
+     * on Android and the standard output and error streams of the process elsewhere.  A message the console doesn't
+     * print, returning false, isn't written to the log file either.
+     *
+     * @param console The {@link CRDLogConsole} to print to, or null for the default console of the platform.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setConsole(CRDLogConsole console) {
+
+        this.console = console;
+
+        return this;
+    }
+
+    /**
+     * Adds a sink that every message is written to, besides the log file.
+     *
+     * @param sink The {@link CRDLogSink} to add.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings addSink(CRDLogSink sink) {
+
+        return addSink(sink, CRDLogLevel.DEBUG);
+    }
+
+    /**
+     * Adds a sink that messages are written to besides the log file, filtered by level and tag.  Each sink has its
+     * own queue and thread, so a slow sink doesn't hold up the log file, the other sinks or the callers logging;
+     * once its queue is full, messages for it are dropped and counted in a warning written to it.  Like the log
+     * file, a sink only gets the messages the console printed.
+     *
+     * @param sink The {@link CRDLogSink} to add.
+     * @param minimumLevel The lowest {@link CRDLogLevel} of the messages the sink receives.
+     * @param tags The tags of the messages the sink receives, or none for messages with any tag.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings addSink(CRDLogSink sink, CRDLogLevel minimumLevel, String... tags) {
+
+        if (sink == null) {
+
+            throw new IllegalArgumentException("sink must not be null");
+        }
+
+        if (minimumLevel == null) {
+
+            throw new IllegalArgumentException("minimumLevel must not be null");
+        }
+
+        sinks.add(new CRDLogSinkRegistration(sink, minimumLevel, tags));
+
+        return this;
+    }
+
+    /**
+     * Gets the sinks messages are written to besides the log file.
+     *
+     * @return The {@link CRDLogSink} objects added, in the order they were added.
+     */
+    public List<CRDLogSink> getSinks() {
+
+        List<CRDLogSink> list = new ArrayList<CRDLogSink>(sinks.size());
+        for (CRDLogSinkRegistration registration : sinks) {
+
+            list.add(registration.sink);
+        }
+
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Gets the number of messages that can be queued up for each sink before messages for it are dropped.
+     *
+     * @return The sink queue capacity.
+     */
+    public int getSinkQueueCapacity() {
+
+        return sinkQueueCapacity;
+    }
+
+    /**
+     * Sets the number of messages that can be queued up for each sink before messages for it are dropped.  The
+     * queue is preallocated, so its capacity must be a power of two.
+     *
+     * @param sinkQueueCapacity The sink queue capacity.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setSinkQueueCapacity(int sinkQueueCapacity) {
+
+        if (sinkQueueCapacity < 1 || Integer.bitCount(sinkQueueCapacity) != 1) {
+
+            throw new IllegalArgumentException("sinkQueueCapacity must be a power of two");
+        }
+
+        this.sinkQueueCapacity = sinkQueueCapacity;
+
+        return this;
+    }
+
+    /**
+     * Gets the number of messages held in memory by the flight recorder.
+     *
+     * @return The flight recorder capacity, or zero if the flight recorder is off.
+     */
+    public int getFlightRecorderCapacity() {
+
+        return flightRecorderCapacity;
+    }
+
+    /**
+     * Sets the number of messages held in memory by the flight recorder, which turns it on.  With the flight
+     * recorder on, messages below the trigger level are not written to the log file as they come, but held in
+     * memory, keeping only the most recent ones.  They are written to the log file, ahead of it, when a message
+     * at or above the trigger level is logged, or when {@link CRDLog#dumpFlightRecorder()} is called, so the log
+     * file only gets the context leading up to errors.  The messages held are lost if they are never written.
+     * The console and the sinks still get every message as it comes.
+     *
+     * @param flightRecorderCapacity The flight recorder capacity, or zero to turn the flight recorder off.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setFlightRecorderCapacity(int flightRecorderCapacity) {
+
+        if (flightRecorderCapacity < 0) {
+
+            throw new IllegalArgumentException("flightRecorderCapacity must not be negative");
+        }
+
+        this.flightRecorderCapacity = flightRecorderCapacity;
+
+        return this;
+    }
+
+    /**
+     * Gets the lowest level of the messages that have the flight recorder written to the log file.
+     *
+     * @return The flight recorder trigger level.
+     */
+    public CRDLogLevel getFlightRecorderTriggerLevel() {
+
+        return flightRecorderTriggerLevel;
+    }
+
+    /**
+     * Sets the lowest level of the messages that have the flight recorder written to the log file.  Messages at
+     * or above it are written to the log file as they come, after the messages held by the flight recorder, and
+     * messages below it are held.  The default is {@link CRDLogLevel#ERROR}.
+     *
+     * @param flightRecorderTriggerLevel The flight recorder trigger level.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setFlightRecorderTriggerLevel(CRDLogLevel flightRecorderTriggerLevel) {
+
+        if (flightRecorderTriggerLevel == null) {
+
+            throw new IllegalArgumentException("flightRecorderTriggerLevel must not be null");
+        }
+
+        this.flightRecorderTriggerLevel = flightRecorderTriggerLevel;
+
+        return this;
+    }
+
+    /**
+     * Sets the rate limit of the messages of the specified tag, which lets through bursts of up to the specified
+     * number of messages and the specified rate on average after that.  The limit is checked on the calling
+     * thread before the message is formatted, so the messages suppressed cost next to nothing, and the number
+     * suppressed is reported in a warning in the log on an interval.  Errors are never suppressed.
+     *
+     * @param tag The tag.
+     * @param messagesPerSecond The number of messages let through per second on average.
+     * @param burst The number of messages let through at once after a quiet period.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setRateLimit(String tag, double messagesPerSecond, int burst) {
+
+        if (tag == null) {
+
+            throw new IllegalArgumentException("tag must not be null");
+        }
+
+        validateRateLimit(messagesPerSecond, burst);
+
+        tagRules.put(tag, ruleFor(tag).withRateLimit(messagesPerSecond, burst));
+
+        return this;
+    }
+
+    /**
+     * Sets the rate limit of the messages of each tag without a rate limit or sample rate of its own, with each
+     * tag limited separately, so a single tag logging in a loop doesn't crowd out the others.
+     *
+     * @param messagesPerSecond The number of messages let through per second on average for each tag.
+     * @param burst The number of messages let through at once for each tag after a quiet period.
+     *
+     * @return This {@link CRDLogSettings} object.
+     *
+     * @see #setRateLimit(String, double, int)
+     */
+    public CRDLogSettings setDefaultRateLimit(double messagesPerSecond, int burst) {
+
+        validateRateLimit(messagesPerSecond, burst);
+
+        defaultTagRule = CRDLogTagRule.NONE.withRateLimit(messagesPerSecond, burst);
+
+        return this;
+    }
+
+    /**
+     * Sets the fraction of the messages of the specified tag that are kept, picked at random, such as 0.01 to keep
+     * one message in a hundred.  Sampling is checked on the calling thread before the rate limit of the tag and
+     * before the message is formatted, and the number of messages sampled out is reported along with those
+     * suppressed by the rate limit.  Errors are always kept.
+     *
+     * @param tag The tag.
+     * @param sampleRate The fraction of messages kept, from more than zero up to one to keep them all.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setSampleRate(String tag, double sampleRate) {
+
+        if (tag == null) {
+
+            throw new IllegalArgumentException("tag must not be null");
+        }
+
+        if (!(sampleRate > 0 && sampleRate <= 1)) {
+
+            throw new IllegalArgumentException("sampleRate must be more than zero and at most one");
+        }
+
+        tagRules.put(tag, ruleFor(tag).withSampleRate(sampleRate));
+
+        return this;
+    }
+
+    /**
+     * Gets the time between reports of the messages suppressed by rate limits and sampling.
+     *
+     * @return The suppressed report interval in milliseconds.
+     */
+    public long getSuppressedReportIntervalMillis() {
+
+        return suppressedReportIntervalMillis;
+    }
+
+    /**
+     * Sets the time between reports of the messages suppressed by rate limits and sampling.  At most once per
+     * interval, the number of messages suppressed for each tag since the last report is written to the log in a
+     * warning, and any left are reported when the log is closed.
+     *
+     * @param suppressedReportIntervalMillis The suppressed report interval in milliseconds.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setSuppressedReportIntervalMillis(long suppressedReportIntervalMillis) {
+
+        if (suppressedReportIntervalMillis <= 0) {
+
+            throw new IllegalArgumentException("suppressedReportIntervalMillis must be positive");
+        }
+
+        this.suppressedReportIntervalMillis = suppressedReportIntervalMillis;
+
+        return this;
+    }
+
+    /**
+     * Gets the time over which repeats of a message are coalesced into one summary.
+     *
+     * @return The coalesce window in milliseconds, or zero if repeats are not coalesced.
+     */
+    public long getCoalesceWindowMillis() {
+
+        return coalesceWindowMillis;
+    }
+
+    /**
+     * Sets the time over which repeats of a message are coalesced into one summary, which turns coalescing on.
+     * When a message with the same level, tag and text as one of the recent messages watched is logged again
+     * within this time of it, the repeat is not written, and once the time is up a single line saying how many
+     * times it was repeated and over how long is written in its place.  This applies to the console and the sinks
+     * as well as the log file.  The summaries still pending are written when the log is closed.
+     *
+     * @param coalesceWindowMillis The coalesce window in milliseconds, or zero to turn coalescing off.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setCoalesceWindowMillis(long coalesceWindowMillis) {
+
+        if (coalesceWindowMillis < 0) {
+
+            throw new IllegalArgumentException("coalesceWindowMillis must not be negative");
+        }
+
+        this.coalesceWindowMillis = coalesceWindowMillis;
+
+        return this;
+    }
+
+    /**
+     * Gets the number of distinct recent messages watched for repeats when coalescing.
+     *
+     * @return The coalesce capacity.
+     */
+    public int getCoalesceCapacity() {
+
+        return coalesceCapacity;
+    }
+
+    /**
+     * Sets the number of distinct recent messages watched for repeats when coalescing, which must be a power of
+     * two.  With 1, only consecutive repeats are coalesced.  With more, repeats interleaved with other messages
+     * are coalesced too, as long as the message hasn't been pushed out by another one hashed to the same place.
+     * The default is 16.
+     *
+     * @param coalesceCapacity The coalesce capacity.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setCoalesceCapacity(int coalesceCapacity) {
+
+        if (coalesceCapacity < 1 || Integer.bitCount(coalesceCapacity) != 1) {
+
+            throw new IllegalArgumentException("coalesceCapacity must be a power of two");
+        }
+
+        this.coalesceCapacity = coalesceCapacity;
+
+        return this;
+    }
+
+    /**
+     * Gets the maximum number of stack frames written for each throwable in a stack trace.
+     *
+     * @return The maximum number of stack frames.
+     */
+    public int getMaxStackTraceFrames() {
+
+        return maxStackTraceFrames;
+    }
+
+    /**
+     * Sets the maximum number of stack frames written for each throwable in a stack trace, the throwable logged
+     * as well as each of its causes.  The frames left out are counted in a line at the end.  The default is 100.
+     *
+     * @param maxStackTraceFrames The maximum number of stack frames.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setMaxStackTraceFrames(int maxStackTraceFrames) {
+
+        if (maxStackTraceFrames < 1) {
+
+            throw new IllegalArgumentException("maxStackTraceFrames must be positive");
+        }
+
+        this.maxStackTraceFrames = maxStackTraceFrames;
+
+        return this;
+    }
+
+    /**
+     * Gets the maximum number of causes written in a stack trace after the throwable logged.
+     *
+     * @return The maximum number of causes.
+     */
+    public int getMaxStackTraceCauses() {
+
+        return maxStackTraceCauses;
+    }
+
+    /**
+     * Sets the maximum number of causes written in a stack trace after the throwable logged.  The default is 10.
+     *
+     * @param maxStackTraceCauses The maximum number of causes, or zero to write only the throwable logged.
+     *
+     * @return This {@link CRDLogSettings} object.
+     */
+    public CRDLogSettings setMaxStackTraceCauses(int maxStackTraceCauses) {
+
+        if (maxStackTraceCauses < 0) {
+
+            throw new IllegalArgumentException("maxStackTraceCauses must not be negative");
+        }
+
+        this.maxStackTraceCauses = maxStackTraceCauses;
+
+        return this;
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Gets the sinks added along with the filters on the messages each receives.
+     *
+     * @return The {@link CRDLogSinkRegistration} of each sink, in the order they were added.
+     */
+    List<CRDLogSinkRegistration> getSinkRegistrations() {
+
+        return Collections.unmodifiableList(sinks);
+    }
+
+    /**
+     * Gets the rate limit and sample rate of the messages of each tag with rules set.
+     *
+     * @return A {@link Map} of each tag to its {@link CRDLogTagRule}.
+     */
+    Map<String, CRDLogTagRule> getTagRules() {
+
+        return Collections.unmodifiableMap(tagRules);
+    }
+
+    /**
+     * Gets the rate limit of the messages of tags without rules of their own.
+     *
+     * @return The default {@link CRDLogTagRule}, or null if tags without rules are not limited.
+     */
+    CRDLogTagRule getDefaultTagRule() {
+
+        return defaultTagRule;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Gets the rules set so far for the specified tag.
+     *
+     * @param tag The tag.
+     *
+     * @return The {@link CRDLogTagRule} of the tag, or one that neither limits nor samples if none is set.
+     */
+    private CRDLogTagRule ruleFor(String tag) {
+
+        CRDLogTagRule rule = tagRules.get(tag);
+
+        return rule != null ? rule : CRDLogTagRule.NONE;
+    }
+
+    /**
+     * Checks the specified rate limit.
+     *
+     * @param messagesPerSecond The number of messages let through per second on average.
+     * @param burst The number of messages let through at once after a quiet period.
+     */
+    private static void validateRateLimit(double messagesPerSecond, int burst) {
+
+        if (!(messagesPerSecond > 0)) {
+
+            throw new IllegalArgumentException("messagesPerSecond must be positive");
+        }
+
+        if (burst < 1) {
+
+            throw new IllegalArgumentException("burst must be positive");
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,60 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.IOException;
+
+/**
+ * Interface for a destination of the messages logged by {@link CRDLog} besides its log file, such as
+ * {@link CRDLogMemorySink} or {@link CRDLogSocketSink}, added with {@link CRDLogSettings#addSink}.
+ *
+ * Each sink has its own queue and its own thread, which is the only thread that calls it, so an implementation
+ * doesn't have to be thread safe.  A sink that is slow, or blocks, only holds up its own queue: once the queue is
+ * full, messages for the sink are dropped and the sink is told how many in a warning, while the log file, the
+ * other sinks and the callers logging carry on.  A sink belongs to a single log, so add a new one to each.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public interface CRDLogSink {
+
+    /**
+     * Writes a message to the sink.  The sink may hold on to it until {@link #flush()} is called.
+     *
+     * @param timestamp The time the message was logged, in milliseconds since the epoch.
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The tag of the message.
+     * @param message The formatted message, or the stack trace of the throwable if one was logged.
+     * @param throwable The {@link Throwable} logged, or null if none.
+     *
+     * @throws IOException If the message could not be written.
+     */
+    void write(long timestamp, CRDLogLevel level, String tag, String message, Throwable throwable) throws IOException;
+
+    /**
+     * Flushes the messages written so far, called after each batch of messages taken from the queue of the sink.
+     *
+     * @throws IOException If the messages could not be flushed.
+     */
+    void flush() throws IOException;
+
+    /**
+     * Closes the sink, called once the log is closed and every message queued for the sink has been written
+     * and flushed.
+     *
+     * @throws IOException If the sink could not be closed.
+     */
+    void close() throws IOException;
+}
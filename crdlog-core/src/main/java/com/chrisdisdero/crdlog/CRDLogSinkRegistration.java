@@ -0,0 +1,84 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Class that holds a {@link CRDLogSink} added to the {@link CRDLogSettings} along with the filter on the messages
+ * it receives.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+final class CRDLogSinkRegistration {
+
+    //region Package members
+
+    /**
+     * The sink.
+     */
+    final CRDLogSink sink;
+
+    /**
+     * The lowest level of the messages the sink receives.
+     */
+    final CRDLogLevel minimumLevel;
+
+    /**
+     * The tags of the messages the sink receives, or null if it receives messages with any tag.
+     */
+    final Set<String> tags;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogSinkRegistration} object.
+     *
+     * @param sink The {@link CRDLogSink}.
+     * @param minimumLevel The lowest {@link CRDLogLevel} of the messages the sink receives.
+     * @param tags The tags of the messages the sink receives, or none for messages with any tag.
+     */
+    CRDLogSinkRegistration(CRDLogSink sink, CRDLogLevel minimumLevel, String[] tags) {
+
+        this.sink = sink;
+        this.minimumLevel = minimumLevel;
+        this.tags = tags != null && tags.length > 0 ? Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(tags))) : null;
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Checks whether the sink receives a message with the specified level and tag.
+     *
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The tag of the message.
+     *
+     * @return True if the sink receives the message.
+     */
+    boolean accepts(CRDLogLevel level, String tag) {
+
+        return level.compareTo(minimumLevel) >= 0 && (tags == null || tags.contains(tag));
+    }
+
+    //endregion
+}
@@ -0,0 +1,352 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that owns the queue and the thread writing to one {@link CRDLogSink} of a {@link CRDLog}.
+ *
+ * The writer thread of the log hands each message the sink accepts to the sink writer once it is formatted, by
+ * copying it into a {@link CRDLogRingBuffer} of the sink's own, and never waits for it: when the ring is full the
+ * message is dropped and counted, and the count goes along with the next event queued, so the sink is told how
+ * many in a warning in the place of the messages dropped.  The thread of the sink writer drains the ring in
+ * batches, writing each message to the sink and flushing it after each batch, so a slow sink only ever holds up
+ * itself.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogSinkWriter implements Runnable {
+
+    //region Private members
+
+    /**
+     * Log tag for this class.
+     */
+    private static final String TAG = CRDLogSinkWriter.class.getCanonicalName();
+
+    /**
+     * The longest time the thread parks while waiting for a message.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The sink and the filter on the messages it receives.
+     */
+    private final CRDLogSinkRegistration registration;
+
+    /**
+     * The ring of messages queued for the sink.
+     */
+    private final CRDLogRingBuffer ring;
+
+    /**
+     * The maximum number of messages written to the sink between flushes.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * The thread writing to the sink.
+     */
+    private final Thread thread;
+
+    /**
+     * The number of messages dropped because the ring was full, not yet queued along with an event.  Only used by
+     * the writer thread of the log.
+     */
+    private long dropped = 0;
+
+    /**
+     * Flag indicating that the sink writer is closed, so nothing more is queued or written.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Flag indicating that the sink failed the last time it was called, so the failure is only reported once
+     * until it succeeds again.
+     */
+    private boolean failing = false;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogSinkWriter} object.
+     *
+     * @param registration The {@link CRDLogSinkRegistration} of the sink.
+     * @param queueCapacity The number of messages that can be queued for the sink, which must be a power of two.
+     * @param maxBatchSize The maximum number of messages written to the sink between flushes.
+     */
+    CRDLogSinkWriter(CRDLogSinkRegistration registration, int queueCapacity, int maxBatchSize) {
+
+        this.registration = registration;
+        this.ring = new CRDLogRingBuffer(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+
+        thread = new Thread(this, "CRDLog-sink-" + registration.sink.getClass().getSimpleName());
+        thread.setDaemon(true);
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Starts the thread writing to the sink.
+     */
+    void start() {
+
+        thread.start();
+    }
+
+    /**
+     * Checks whether the sink receives a message with the specified level and tag.
+     *
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The tag of the message.
+     *
+     * @return True if the sink receives the message.
+     */
+    boolean accepts(CRDLogLevel level, String tag) {
+
+        return registration.accepts(level, tag);
+    }
+
+    /**
+     * Queues up a formatted message for the sink without waiting, dropping it if the queue of the sink is full.
+     * Must be called on the writer thread of the log, the only producer of the ring.
+     *
+     * @param event The {@link CRDLogEvent} of the message, whose message is already formatted.
+     */
+    void offer(CRDLogEvent event) {
+
+        if (closed) {
+
+            return;
+        }
+
+        long sequence = ring.tryClaim();
+        if (sequence < 0) {
+
+            dropped++;
+            return;
+        }
+
+        CRDLogEvent copy = ring.get(sequence);
+        copy.droppedBefore = dropped;
+        copy.timestamp = event.timestamp;
+        copy.level = event.level;
+        copy.tag = event.tag;
+        copy.message = event.message;
+        copy.throwable = event.throwable;
+
+        dropped = 0;
+
+        ring.publish(sequence);
+    }
+
+    /**
+     * Writes and flushes everything queued for the sink, closes it and ends the thread, waiting up to the specified
+     * time for it.  Must be called on the writer thread of the log.
+     *
+     * @param timeoutNanos The maximum time to wait in nanoseconds.
+     *
+     * @return True if the sink was closed in time, or false if it is still busy.
+     */
+    boolean close(long timeoutNanos) {
+
+        long start = System.nanoTime();
+
+        // Wait for room for the close command, which the thread runs after everything queued before it.
+        long sequence;
+        while ((sequence = ring.tryClaim()) < 0) {
+
+            if (System.nanoTime() - start >= timeoutNanos) {
+
+                return false;
+            }
+
+            ring.waitForRoom();
+        }
+
+        CRDLogEvent event = ring.get(sequence);
+        event.droppedBefore = dropped;
+        event.command = new Runnable() {
+
+            @Override
+            public void run() {
+
+                closeNow();
+            }
+        };
+
+        dropped = 0;
+
+        ring.publish(sequence);
+
+        try {
+
+            thread.join(TimeUnit.NANOSECONDS.toMillis(Math.max(timeoutNanos - (System.nanoTime() - start), 1000000)));
+
+        } catch (InterruptedException exception) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        return !thread.isAlive();
+    }
+
+    //endregion
+
+    //region Runnable
+
+    @Override
+    public void run() {
+
+        while (!closed) {
+
+            long first = ring.next();
+            if (!ring.await(first, IDLE_PARK_NANOS)) {
+
+                continue;
+            }
+
+            long last = ring.available(first, first + maxBatchSize - 1);
+
+            for (long sequence = first; sequence <= last; sequence++) {
+
+                CRDLogEvent event = ring.get(sequence);
+
+                if (!closed) {
+
+                    if (event.droppedBefore > 0) {
+
+                        writeDropped(event.droppedBefore);
+                    }
+
+                    if (event.command != null) {
+
+                        event.command.run();
+
+                    } else {
+
+                        write(event.timestamp, event.level, event.tag, event.message, event.throwable);
+                    }
+                }
+
+                event.clear();
+            }
+
+            if (!closed) {
+
+                flush();
+            }
+
+            // Hand the slots of the batch back to the writer thread of the log.
+            ring.release(last);
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Writes a message to the sink, reporting a failure of the sink once until it succeeds again.
+     *
+     * @param timestamp The time the message was logged, in milliseconds since the epoch.
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The tag of the message.
+     * @param message The formatted message.
+     * @param throwable The {@link Throwable} logged, or null if none.
+     */
+    private void write(long timestamp, CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+        try {
+
+            registration.sink.write(timestamp, level, tag, message, throwable);
+            failing = false;
+
+        } catch (Exception exception) {
+
+            reportFailure("Failed to write message to log sink.", exception);
+        }
+    }
+
+    /**
+     * Flushes the sink, reporting a failure of the sink once until it succeeds again.
+     */
+    private void flush() {
+
+        try {
+
+            registration.sink.flush();
+            failing = false;
+
+        } catch (Exception exception) {
+
+            reportFailure("Failed to flush log sink.", exception);
+        }
+    }
+
+    /**
+     * Writes a warning to the sink with the number of messages dropped, in place of those messages.
+     *
+     * @param count The number of messages dropped.
+     */
+    private void writeDropped(long count) {
+
+        write(System.currentTimeMillis(), CRDLogLevel.WARN, CRDLog.class.getSimpleName(),
+                count + (count == 1 ? " message" : " messages") + " dropped because the log sink queue was full.", null);
+    }
+
+    /**
+     * Flushes and closes the sink and ends the thread.
+     */
+    private void closeNow() {
+
+        flush();
+
+        try {
+
+            registration.sink.close();
+
+        } catch (Exception exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to close log sink.", exception);
+        }
+
+        closed = true;
+    }
+
+    /**
+     * Reports a failure of the sink, unless it already failed the last time it was called.
+     *
+     * @param message The error message.
+     * @param exception The {@link Exception} thrown by the sink.
+     */
+    private void reportFailure(String message, Exception exception) {
+
+        if (!failing) {
+
+            failing = true;
+            CRDLogPlatform.error(TAG, message, exception);
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,216 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Class that is a {@link CRDLogSink} sending the messages logged over TCP to a log collector, such as one listening
+ * on the device or on a development machine, as lines of text laid out the same way as in a text log file.
+ *
+ * The sink connects when it first has messages to send and sends each batch of messages with a single write.  If
+ * the collector can't be reached, or the connection fails, the messages of the batch are dropped and the sink
+ * doesn't try to connect again until a few seconds later, dropping the messages in between, so a collector that is
+ * down doesn't back up the queue of the sink.  On Android, the app needs the INTERNET permission.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public class CRDLogSocketSink implements CRDLogSink {
+
+    //region Private members
+
+    /**
+     * The longest time in milliseconds to wait for a connection to the collector.
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * The time in milliseconds after a failure before connecting to the collector again.
+     */
+    private static final long RECONNECT_DELAY_MILLIS = 5000;
+
+    /**
+     * The host name or address of the collector.
+     */
+    private final String host;
+
+    /**
+     * The port the collector listens on.
+     */
+    private final int port;
+
+    /**
+     * The encoder laying out each message as a line of text.
+     */
+    private final CRDLogTextEncoder encoder = new CRDLogTextEncoder();
+
+    /**
+     * The lines of the current batch, sent on the next flush.
+     */
+    private final CRDLogByteBuffer pending = new CRDLogByteBuffer(8192);
+
+    /**
+     * The connection to the collector, or null if not connected.
+     */
+    private Socket socket = null;
+
+    /**
+     * The output stream of the connection, or null if not connected.
+     */
+    private OutputStream output = null;
+
+    /**
+     * The time in milliseconds since the epoch before which no new connection is tried.
+     */
+    private long nextConnectMillis = 0;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogSocketSink} object.
+     *
+     * @param host The host name or address of the collector, such as "127.0.0.1".
+     * @param port The port the collector listens on.
+     */
+    public CRDLogSocketSink(String host, int port) {
+
+        if (host == null) {
+
+            throw new IllegalArgumentException("host must not be null");
+        }
+
+        if (port < 1 || port > 65535) {
+
+            throw new IllegalArgumentException("port must be between 1 and 65535");
+        }
+
+        this.host = host;
+        this.port = port;
+    }
+
+    //endregion
+
+    //region CRDLogSink
+
+    @Override
+    public void write(long timestamp, CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+        encoder.encodeLine(timestamp, level, tag, message, pending);
+    }
+
+    @Override
+    public void flush() throws IOException {
+
+        if (pending.size() == 0) {
+
+            return;
+        }
+
+        try {
+
+            if (output == null && System.currentTimeMillis() < nextConnectMillis) {
+
+                // Still waiting to connect again after a failure, so the batch is dropped.
+                throw new IOException("Not connected to the log collector.");
+            }
+
+            send();
+
+        } finally {
+
+            pending.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+
+        pending.clear();
+        disconnect();
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Sends the lines of the current batch to the collector, connecting first if needed.  On a failure the
+     * connection is closed and no new connection is tried until the reconnect delay has passed.
+     *
+     * @throws IOException If the lines could not be sent.
+     */
+    private void send() throws IOException {
+
+        try {
+
+            if (output == null) {
+
+                connect();
+            }
+
+            output.write(pending.array(), 0, pending.size());
+            output.flush();
+
+        } catch (IOException exception) {
+
+            disconnect();
+            nextConnectMillis = System.currentTimeMillis() + RECONNECT_DELAY_MILLIS;
+
+            throw exception;
+        }
+    }
+
+    /**
+     * Connects to the collector.
+     *
+     * @throws IOException If the collector could not be reached.
+     */
+    private void connect() throws IOException {
+
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        output = socket.getOutputStream();
+    }
+
+    /**
+     * Closes the connection to the collector, if any.
+     */
+    private void disconnect() {
+
+        if (socket != null) {
+
+            try {
+
+                socket.close();
+
+            } catch (IOException exception) {
+
+                // The connection is being abandoned anyway.
+            }
+        }
+
+        socket = null;
+        output = null;
+    }
+
+    //endregion
+}
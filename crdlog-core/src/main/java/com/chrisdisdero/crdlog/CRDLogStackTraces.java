@@ -0,0 +1,345 @@
+package com.chrisdisdero.crdlog;
+
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class that renders the stack traces of the throwables logged by a {@link CRDLog} on the writer thread, and keeps
+ * track of which ones are already written in full to the log file, so a throwable thrown over and over only has
+ * its stack trace written once per file.
+ *
+ * Each stack trace gets a fingerprint, a hash of the class names and stack frames of the throwable and its causes
+ * that leaves out their messages, so it stays the same from one occurrence to the next and from one run to the
+ * next.  The first time a stack trace is written to a file it is written in full, starting with its fingerprint,
+ * and after that only a short reference is written, with the throwable itself and the fingerprint to look up.
+ * The stack trace is laid out the same way as {@link Throwable#printStackTrace()}, up to a maximum number of frames
+ * for each throwable and of causes.  It is only used on the writer thread of the log.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogStackTraces {
+
+    //region Private members
+
+    /**
+     * The offset basis of the 64-bit FNV-1a hash used for fingerprints.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /**
+     * The prime of the 64-bit FNV-1a hash used for fingerprints.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * The maximum number of stack frames written for each throwable.
+     */
+    private final int maxFrames;
+
+    /**
+     * The maximum number of causes written after the throwable logged.
+     */
+    private final int maxCauses;
+
+    /**
+     * The fingerprints of the stack traces written in full to the file currently written to.
+     */
+    private final Set<Long> written = new HashSet<Long>();
+
+    /**
+     * The builder reused to render stack traces.
+     */
+    private final StringBuilder builder = new StringBuilder(4096);
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogStackTraces} object.
+     *
+     * @param maxFrames The maximum number of stack frames written for each throwable.
+     * @param maxCauses The maximum number of causes written after the throwable logged.
+     */
+    CRDLogStackTraces(int maxFrames, int maxCauses) {
+
+        this.maxFrames = maxFrames;
+        this.maxCauses = maxCauses;
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Gets the fingerprint of the stack trace of the specified throwable, from the class names and stack frames of
+     * the throwable and its causes, up to the maximum number written.  The stack trace of an
+     * {@link UnknownHostException}, or of a throwable caused by one, has no fingerprint, as it is left out the same
+     * way as Android does, since it is logged so often when offline that it only adds noise.
+     *
+     * @param throwable The {@link Throwable} to get the fingerprint of.
+     *
+     * @return The fingerprint, or zero if the stack trace is left out.
+     */
+    long fingerprint(Throwable throwable) {
+
+        long hash = FNV_OFFSET_BASIS;
+
+        Map<Throwable, Boolean> seen = new IdentityHashMap<Throwable, Boolean>();
+        int causes = 0;
+
+        for (Throwable cause = throwable; cause != null && seen.put(cause, Boolean.TRUE) == null; cause = cause.getCause()) {
+
+            if (cause instanceof UnknownHostException) {
+
+                return 0;
+            }
+
+            if (causes++ > maxCauses) {
+
+                // Keep looking for an unknown host further down, but leave the rest out of the fingerprint.
+                continue;
+            }
+
+            hash = hash(hash, cause.getClass().getName());
+
+            StackTraceElement[] frames = cause.getStackTrace();
+            for (int i = 0; i < frames.length && i < maxFrames; i++) {
+
+                hash = hash(hash, frames[i].getClassName());
+                hash = hash(hash, frames[i].getMethodName());
+                hash = hash(hash, frames[i].getLineNumber());
+            }
+        }
+
+        // Zero means no fingerprint.
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * Renders the full stack trace of the specified throwable, starting with its fingerprint.  A throwable whose
+     * message can't be had is written with its class name instead.
+     *
+     * @param throwable The {@link Throwable} to render.
+     * @param fingerprint The fingerprint of the stack trace.
+     *
+     * @return The stack trace.
+     */
+    String render(Throwable throwable, long fingerprint) {
+
+        builder.setLength(0);
+        builder.append('[').append(toHex(fingerprint)).append("] ");
+
+        Map<Throwable, Boolean> seen = new IdentityHashMap<Throwable, Boolean>();
+        StackTraceElement[] enclosing = null;
+        int causes = 0;
+
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+
+            if (seen.containsKey(cause)) {
+
+                builder.append("\t[CIRCULAR REFERENCE: ").append(describe(cause)).append("]\n");
+                break;
+            }
+
+            if (cause != throwable) {
+
+                if (causes++ == maxCauses) {
+
+                    builder.append("\t... more causes\n");
+                    break;
+                }
+
+                builder.append("Caused by: ");
+            }
+
+            seen.put(cause, Boolean.TRUE);
+            builder.append(describe(cause)).append('\n');
+
+            StackTraceElement[] frames = cause.getStackTrace();
+            int common = enclosing != null ? framesInCommon(frames, enclosing) : 0;
+            int shown = Math.min(frames.length - common, maxFrames);
+
+            for (int i = 0; i < shown; i++) {
+
+                builder.append("\tat ").append(frames[i]).append('\n');
+            }
+
+            if (frames.length > shown) {
+
+                builder.append("\t... ").append(frames.length - shown).append(" more\n");
+            }
+
+            enclosing = frames;
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Renders a short reference to a stack trace already written in full, with the throwable itself and the
+     * fingerprint of the stack trace.
+     *
+     * @param throwable The {@link Throwable} to render.
+     * @param fingerprint The fingerprint of the stack trace.
+     *
+     * @return The reference to the stack trace.
+     */
+    String reference(Throwable throwable, long fingerprint) {
+
+        return describe(throwable) + " [same stack trace as " + toHex(fingerprint) + "]";
+    }
+
+    /**
+     * Checks whether the stack trace with the specified fingerprint is already written in full to the file
+     * currently written to.
+     *
+     * @param fingerprint The fingerprint of the stack trace.
+     *
+     * @return True if the stack trace is written in full.
+     */
+    boolean isWritten(long fingerprint) {
+
+        return written.contains(fingerprint);
+    }
+
+    /**
+     * Notes that the stack trace with the specified fingerprint is written to the file currently written to.
+     *
+     * @param fingerprint The fingerprint of the stack trace.
+     */
+    void markWritten(long fingerprint) {
+
+        written.add(fingerprint);
+    }
+
+    /**
+     * Forgets the stack traces written, when moving on to a new file.
+     */
+    void reset() {
+
+        written.clear();
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Adds the characters of the specified string to a hash.
+     *
+     * @param hash The hash so far.
+     * @param string The string to add, which may be null.
+     *
+     * @return The new hash.
+     */
+    private static long hash(long hash, String string) {
+
+        if (string != null) {
+
+            for (int i = 0; i < string.length(); i++) {
+
+                hash = (hash ^ string.charAt(i)) * FNV_PRIME;
+            }
+        }
+
+        // Separate one string from the next, so moving characters across them changes the hash.
+        return (hash ^ 0xffff) * FNV_PRIME;
+    }
+
+    /**
+     * Adds the specified number to a hash.
+     *
+     * @param hash The hash so far.
+     * @param value The number to add.
+     *
+     * @return The new hash.
+     */
+    private static long hash(long hash, int value) {
+
+        for (int shift = 0; shift < 32; shift += 8) {
+
+            hash = (hash ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Describes the specified throwable the way {@link Throwable#toString()} does, or by its class name if that
+     * fails.
+     *
+     * @param throwable The {@link Throwable} to describe.
+     *
+     * @return The description of the throwable.
+     */
+    private static String describe(Throwable throwable) {
+
+        try {
+
+            return String.valueOf(throwable);
+
+        } catch (RuntimeException exception) {
+
+            // The message of a throwable is app code, which may fail when called on the writer thread.
+            return throwable.getClass().getName();
+        }
+    }
+
+    /**
+     * Counts the stack frames at the bottom of a cause that are the same as those of the throwable it caused,
+     * which are left out the same way as {@link Throwable#printStackTrace()} does.
+     *
+     * @param frames The stack frames of the cause.
+     * @param enclosing The stack frames of the throwable it caused.
+     *
+     * @return The number of frames in common.
+     */
+    private static int framesInCommon(StackTraceElement[] frames, StackTraceElement[] enclosing) {
+
+        int m = frames.length - 1;
+        int n = enclosing.length - 1;
+
+        while (m >= 0 && n >= 0 && frames[m].equals(enclosing[n])) {
+
+            m--;
+            n--;
+        }
+
+        return frames.length - 1 - m;
+    }
+
+    /**
+     * Formats a fingerprint as it is written to the log file.
+     *
+     * @param fingerprint The fingerprint.
+     *
+     * @return The fingerprint in hexadecimal, preceded by '#'.
+     */
+    private static String toHex(long fingerprint) {
+
+        String hex = Long.toHexString(fingerprint);
+
+        return "#0000000000000000".substring(0, 17 - hex.length()) + hex;
+    }
+
+    //endregion
+}
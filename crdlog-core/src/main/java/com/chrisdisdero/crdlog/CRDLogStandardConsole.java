@@ -0,0 +1,66 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.PrintStream;
+
+/**
+ * Class that prints the messages logged by {@link CRDLog} to the standard output and error streams of the process,
+ * which is the console used when the log runs outside of Android.
+ *
+ * Debug and info messages are printed to {@link System#out} and warnings and errors to {@link System#err}, each
+ * on a line starting with the level and tag of the message, followed by the stack trace of the throwable logged
+ * with it, if any.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public class CRDLogStandardConsole implements CRDLogConsole {
+
+    //region CRDLogConsole
+
+    /**
+     * Prints a message to the standard output or error stream.
+     *
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The tag of the message.
+     * @param message The message, or the stack trace of the throwable if one was logged.
+     * @param throwable The {@link Throwable} logged, or null if none.
+     *
+     * @return True, as the message is always printed.
+     */
+    @Override
+    public boolean print(CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+        PrintStream stream = level == CRDLogLevel.WARN || level == CRDLogLevel.ERROR ? System.err : System.out;
+
+        if (throwable != null) {
+
+            synchronized (stream) {
+
+                stream.println(level.toString() + "/" + tag + ":");
+                throwable.printStackTrace(stream);
+            }
+
+        } else {
+
+            stream.println(level.toString() + "/" + tag + ": " + message);
+        }
+
+        return true;
+    }
+
+    //endregion
+}
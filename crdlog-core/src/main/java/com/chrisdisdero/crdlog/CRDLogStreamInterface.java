@@ -0,0 +1,35 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.InputStream;
+
+/**
+ * Interface that allows the caller to stream the contents of the log represented by {@link CRDLog} without
+ * holding all of it in memory.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public interface CRDLogStreamInterface {
+
+    /**
+     * The log file content as a stream of the bytes of its text.  The stream is only valid until this method returns,
+     * after which it is closed.
+     *
+     * @param logStream An {@link InputStream} over the current log file content, or null if there is no log file.
+     */
+    void onLogStream(InputStream logStream);
+}
@@ -0,0 +1,97 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Class that holds the rate limit and sample rate set in the {@link CRDLogSettings} for the messages of a tag.
+ *
+ * A rule is immutable, so changing the settings afterwards leaves the rules of an existing log as they were.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+final class CRDLogTagRule {
+
+    //region Package members
+
+    /**
+     * A rule that neither limits nor samples messages.
+     */
+    static final CRDLogTagRule NONE = new CRDLogTagRule(0, 0, 1);
+
+    /**
+     * The number of messages let through per second on average, or zero if the rate is not limited.
+     */
+    final double messagesPerSecond;
+
+    /**
+     * The number of messages let through at once after a quiet period, before the rate limit applies.
+     */
+    final int burst;
+
+    /**
+     * The fraction of messages kept, from more than zero up to one to keep all of them.
+     */
+    final double sampleRate;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogTagRule} object.
+     *
+     * @param messagesPerSecond The number of messages let through per second on average, or zero for no limit.
+     * @param burst The number of messages let through at once after a quiet period.
+     * @param sampleRate The fraction of messages kept.
+     */
+    private CRDLogTagRule(double messagesPerSecond, int burst, double sampleRate) {
+
+        this.messagesPerSecond = messagesPerSecond;
+        this.burst = burst;
+        this.sampleRate = sampleRate;
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Gets a copy of this rule with the specified rate limit.
+     *
+     * @param messagesPerSecond The number of messages let through per second on average.
+     * @param burst The number of messages let through at once after a quiet period.
+     *
+     * @return The new {@link CRDLogTagRule}.
+     */
+    CRDLogTagRule withRateLimit(double messagesPerSecond, int burst) {
+
+        return new CRDLogTagRule(messagesPerSecond, burst, sampleRate);
+    }
+
+    /**
+     * Gets a copy of this rule with the specified sample rate.
+     *
+     * @param sampleRate The fraction of messages kept.
+     *
+     * @return The new {@link CRDLogTagRule}.
+     */
+    CRDLogTagRule withSampleRate(double sampleRate) {
+
+        return new CRDLogTagRule(messagesPerSecond, burst, sampleRate);
+    }
+
+    //endregion
+}
@@ -0,0 +1,228 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Class that encodes messages as lines of text, for the {@link CRDLogFormat#TEXT} format, and renders the lines
+ * of the content read back from the {@link CRDLogFormat#BINARY} format.
+ *
+ * Each message is laid out as "%1s (%2s) [%3s]: %4s\r\n" would lay it out, with the timestamp taken when the
+ * message was logged.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogTextEncoder implements CRDLogRecordEncoder {
+
+    //region Private members
+
+    /**
+     * Log tag for this class.
+     */
+    private static final String TAG = CRDLogTextEncoder.class.getCanonicalName();
+
+    /**
+     * The encoder for the timestamp at the start of each line.
+     */
+    private final CRDLogTimestampEncoder timestampEncoder = new CRDLogTimestampEncoder();
+
+    /**
+     * The reusable buffer in which each line is laid out as text.
+     */
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * The bytes between the timestamp and the level of a line.
+     */
+    private static final byte[] BEFORE_LEVEL = { ' ', '(' };
+
+    /**
+     * The bytes between the level and the tag of a line.
+     */
+    private static final byte[] BEFORE_TAG = { ')', ' ', '[' };
+
+    /**
+     * The bytes between the tag and the message of a line.
+     */
+    private static final byte[] BEFORE_MESSAGE = { ']', ':', ' ' };
+
+    /**
+     * The bytes ending a line.
+     */
+    private static final byte[] LINE_END = { '\r', '\n' };
+
+    //endregion
+
+    //region CRDLogRecordEncoder
+
+    @Override
+    public void encodeHeader(String header, CRDLogByteBuffer out) {
+
+        if (header != null && header.length() > 0) {
+
+            out.writeUtf8(header);
+        }
+    }
+
+    @Override
+    public void encode(CRDLogEvent event, CRDLogByteBuffer out) {
+
+        encodeLine(event.timestamp, event.level, event.tag, event.message, out);
+    }
+
+    @Override
+    public void encodeBatchEnd(CRDLogByteBuffer out) {
+
+        // Lines need no marker between batches.
+    }
+
+    @Override
+    public void reset() {
+
+        // Lines do not depend on each other.
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Encodes a message as a line of text, written straight into the specified buffer as UTF-8 without laying it
+     * out as text first.
+     *
+     * @param timestamp The time the message was logged, in milliseconds since the epoch.
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The message tag.
+     * @param message The formatted message.
+     * @param out The {@link CRDLogByteBuffer} to encode into.
+     */
+    void encodeLine(long timestamp, CRDLogLevel level, String tag, String message, CRDLogByteBuffer out) {
+
+        timestampEncoder.writeTo(timestamp, out);
+        out.writeBytes(BEFORE_LEVEL, 0, BEFORE_LEVEL.length);
+        writePadded(level.getLabel(), 2, out);
+        out.writeBytes(BEFORE_TAG, 0, BEFORE_TAG.length);
+        writePadded(tag, 3, out);
+        out.writeBytes(BEFORE_MESSAGE, 0, BEFORE_MESSAGE.length);
+        writePadded(message, 4, out);
+        out.writeBytes(LINE_END, 0, LINE_END.length);
+    }
+
+    /**
+     * Lays out a message as a line of text.
+     *
+     * @param timestamp The time the message was logged, in milliseconds since the epoch.
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The message tag.
+     * @param message The formatted message.
+     *
+     * @return The line of text.
+     */
+    String formatLine(long timestamp, CRDLogLevel level, String tag, String message) {
+
+        layOut(timestamp, level, tag, message);
+
+        return line.toString();
+    }
+
+    /**
+     * Formats a message from the specified format and parameters.  A malformed format is reported and used as
+     * is, rather than being allowed to stop the thread formatting it.
+     *
+     * @param format The message or format for the message.
+     * @param args The format message parameters.
+     *
+     * @return The formatted message.
+     */
+    static String format(String format, Object[] args) {
+
+        try {
+
+            return String.format(format, args);
+
+        } catch (Exception exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to format log message.", exception);
+
+            return format;
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Lays out a message in the reusable line buffer.
+     *
+     * @param timestamp The time the message was logged, in milliseconds since the epoch.
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The message tag.
+     * @param message The formatted message.
+     */
+    private void layOut(long timestamp, CRDLogLevel level, String tag, String message) {
+
+        line.setLength(0);
+        timestampEncoder.appendTo(timestamp, line);
+        line.append(" (");
+        appendPadded(level.getLabel(), 2);
+        line.append(") [");
+        appendPadded(tag, 3);
+        line.append("]: ");
+        appendPadded(message, 4);
+        line.append("\r\n");
+    }
+
+    /**
+     * Writes the specified value to the specified buffer, right-justified to the specified minimum width.
+     *
+     * @param value The value to write.
+     * @param width The minimum width of the value.
+     * @param out The {@link CRDLogByteBuffer} to write to.
+     */
+    private static void writePadded(String value, int width, CRDLogByteBuffer out) {
+
+        if (value == null) {
+
+            value = "null";
+        }
+
+        out.writeSpaces(width - value.length());
+        out.writeUtf8(value);
+    }
+
+    /**
+     * Appends the specified value to the line, right-justified to the specified minimum width.
+     *
+     * @param value The value to append.
+     * @param width The minimum width of the value.
+     */
+    private void appendPadded(String value, int width) {
+
+        if (value == null) {
+
+            value = "null";
+        }
+
+        for (int i = value.length(); i < width; i++) {
+
+            line.append(' ');
+        }
+
+        line.append(value);
+    }
+
+    //endregion
+}
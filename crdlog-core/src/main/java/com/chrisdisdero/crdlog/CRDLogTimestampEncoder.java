@@ -0,0 +1,272 @@
+package com.chrisdisdero.crdlog;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Class that encodes timestamps in the "MM-dd-yyyy HH:mm:ss.SSS" form used by the log file without allocating, and
+ * decodes them back when the log is read.
+ *
+ * The date and time up to the second is rendered once per second into a reusable buffer, so encoding a timestamp
+ * within the same second as the previous one only re-renders the millisecond digits.  An encoder is not thread
+ * safe and is meant to be owned by the log writer thread.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogTimestampEncoder {
+
+    //region Package members
+
+    /**
+     * The length of an encoded timestamp in characters.
+     */
+    static final int LENGTH = 23;
+
+    //endregion
+
+    //region Private members
+
+    /**
+     * The buffer holding the most recently encoded timestamp.
+     */
+    private final char[] buffer = new char[LENGTH];
+
+    /**
+     * The calendar used to break a new second down into its date and time fields.
+     */
+    private final Calendar calendar = Calendar.getInstance();
+
+    /**
+     * The second, as milliseconds since the epoch divided by 1000, currently rendered in the buffer.
+     */
+    private long cachedSecond = Long.MIN_VALUE;
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Encodes the specified time into the reusable timestamp buffer.
+     *
+     * @param timeMillis The time in milliseconds since the epoch.
+     *
+     * @return The buffer holding the {@link #LENGTH} characters of the timestamp, valid until the next call.
+     */
+    char[] encode(long timeMillis) {
+
+        long second = timeMillis / 1000;
+        int millis = (int) (timeMillis % 1000);
+        if (millis < 0) {
+
+            second--;
+            millis += 1000;
+        }
+
+        if (second != cachedSecond) {
+
+            renderSecond(second);
+            cachedSecond = second;
+        }
+
+        buffer[20] = (char) ('0' + millis / 100);
+        buffer[21] = (char) ('0' + (millis / 10) % 10);
+        buffer[22] = (char) ('0' + millis % 10);
+
+        return buffer;
+    }
+
+    /**
+     * Encodes the specified time and appends it to the specified {@link StringBuilder}.
+     *
+     * @param timeMillis The time in milliseconds since the epoch.
+     * @param builder The {@link StringBuilder} to append to.
+     */
+    void appendTo(long timeMillis, StringBuilder builder) {
+
+        builder.append(encode(timeMillis), 0, LENGTH);
+    }
+
+    /**
+     * Encodes the specified time and writes it to the specified {@link CRDLogByteBuffer}.
+     *
+     * @param timeMillis The time in milliseconds since the epoch.
+     * @param out The {@link CRDLogByteBuffer} to write to.
+     */
+    void writeTo(long timeMillis, CRDLogByteBuffer out) {
+
+        out.writeAscii(encode(timeMillis), 0, LENGTH);
+    }
+
+    /**
+     * Decodes a timestamp from the specified text.
+     *
+     * @param text The text holding the timestamp.
+     * @param offset The offset in the text of the first character of the timestamp.
+     *
+     * @return The time in milliseconds since the epoch, or {@link Long#MIN_VALUE} if the text at the offset is
+     * not a timestamp.
+     */
+    long decode(CharSequence text, int offset) {
+
+        if (!isTimestamp(text, offset)) {
+
+            return Long.MIN_VALUE;
+        }
+
+        useDefaultTimeZone();
+        calendar.clear();
+        calendar.set(getDigits(text, offset + 6, 4), getDigits(text, offset, 2) - 1, getDigits(text, offset + 3, 2),
+                getDigits(text, offset + 11, 2), getDigits(text, offset + 14, 2), getDigits(text, offset + 17, 2));
+        calendar.set(Calendar.MILLISECOND, getDigits(text, offset + 20, 3));
+
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Checks whether the specified text holds a timestamp at the specified offset, without decoding it.
+     *
+     * @param text The text to check.
+     * @param offset The offset in the text of the first character of the timestamp.
+     *
+     * @return True if the text at the offset has the shape of a timestamp.
+     */
+    static boolean isTimestamp(CharSequence text, int offset) {
+
+        if (offset < 0 || text.length() - offset < LENGTH) {
+
+            return false;
+        }
+
+        for (int i = 0; i < LENGTH; i++) {
+
+            char c = text.charAt(offset + i);
+            boolean isValid;
+
+            switch (i) {
+
+                case 2:
+                case 5:
+                    isValid = c == '-';
+                    break;
+
+                case 10:
+                    isValid = c == ' ';
+                    break;
+
+                case 13:
+                case 16:
+                    isValid = c == ':';
+                    break;
+
+                case 19:
+                    isValid = c == '.';
+                    break;
+
+                default:
+                    isValid = c >= '0' && c <= '9';
+                    break;
+            }
+
+            if (!isValid) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Reads a fixed number of decimal digits from the specified text.
+     *
+     * @param text The text holding the digits.
+     * @param offset The offset in the text of the first digit.
+     * @param digits The number of digits to read.
+     *
+     * @return The value of the digits.
+     */
+    private static int getDigits(CharSequence text, int offset, int digits) {
+
+        int value = 0;
+
+        for (int i = offset; i < offset + digits; i++) {
+
+            value = value * 10 + (text.charAt(i) - '0');
+        }
+
+        return value;
+    }
+
+    /**
+     * Picks up any change to the default time zone, as a new date format would.
+     */
+    private void useDefaultTimeZone() {
+
+        TimeZone timeZone = TimeZone.getDefault();
+        if (!timeZone.getID().equals(calendar.getTimeZone().getID())) {
+
+            calendar.setTimeZone(timeZone);
+        }
+    }
+
+    /**
+     * Renders the date and time fields of the specified second into the buffer.
+     *
+     * @param second The second, as milliseconds since the epoch divided by 1000.
+     */
+    private void renderSecond(long second) {
+
+        useDefaultTimeZone();
+        calendar.setTimeInMillis(second * 1000);
+
+        putDigits(0, calendar.get(Calendar.MONTH) + 1, 2);
+        buffer[2] = '-';
+        putDigits(3, calendar.get(Calendar.DAY_OF_MONTH), 2);
+        buffer[5] = '-';
+        putDigits(6, calendar.get(Calendar.YEAR), 4);
+        buffer[10] = ' ';
+        putDigits(11, calendar.get(Calendar.HOUR_OF_DAY), 2);
+        buffer[13] = ':';
+        putDigits(14, calendar.get(Calendar.MINUTE), 2);
+        buffer[16] = ':';
+        putDigits(17, calendar.get(Calendar.SECOND), 2);
+        buffer[19] = '.';
+    }
+
+    /**
+     * Writes the specified value into the buffer as a fixed number of decimal digits.
+     *
+     * @param offset The offset in the buffer of the first digit.
+     * @param value The value to write.
+     * @param digits The number of digits to write.
+     */
+    private void putDigits(int offset, int value, int digits) {
+
+        for (int i = offset + digits - 1; i >= offset; i--) {
+
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,667 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Class that maintains the inverted token index kept next to each file of a log, so the log can be searched for
+ * words without reading it.
+ *
+ * The tag and message of each entry are split into tokens, which are runs of letters and digits compared without
+ * regard to case, and the writer collects, for each token, the offsets in the file of the entries holding it.  Once
+ * enough has been collected, and when the log moves on to another file, the collection is appended to the index of
+ * the file, such as "applog.0.txt.tok" for "applog.0.txt", as a run covering a range of the content of the file.
+ * A run holds its tokens sorted in a table of fixed size entries, so a token is looked up with a binary search
+ * reading only a few entries, followed by the offsets of the entries holding it.  A part of a file not covered by
+ * any run, such as what was written just before the app was killed, has to be scanned instead.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogTokenIndex {
+
+    //region Package members
+
+    /**
+     * The extension added to the name of a log file to name its token index.
+     */
+    static final String EXTENSION = ".tok";
+
+    //endregion
+
+    //region Private members
+
+    /**
+     * Log tag for this class.
+     */
+    private static final String TAG = CRDLogTokenIndex.class.getCanonicalName();
+
+    /**
+     * The character set of the tokens in the index.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The shortest token indexed.  Single characters would be found in most entries.
+     */
+    private static final int MIN_TOKEN_LENGTH = 2;
+
+    /**
+     * The length to which longer tokens are cut.
+     */
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    /**
+     * The estimated memory in bytes taken by the tokens collected, beyond which they are written out as a run.
+     */
+    private static final int MAX_RUN_MEMORY = 256 * 1024;
+
+    /**
+     * The estimated memory in bytes taken by a token collected, besides its offsets.
+     */
+    private static final int TOKEN_OVERHEAD = 64;
+
+    /**
+     * The size in bytes of the header of a run: the start and end of the content it covers, the number of tokens,
+     * and the length of the token text and of the offsets.
+     */
+    private static final int RUN_HEADER_SIZE = 28;
+
+    /**
+     * The size in bytes of an entry of the token table of a run: the position and length of the token text, and
+     * the position and length of its offsets.
+     */
+    private static final int TABLE_ENTRY_SIZE = 16;
+
+    /**
+     * The order of tokens in a run, by their UTF-8 bytes.
+     */
+    private static final Comparator<byte[]> TOKEN_ORDER = new Comparator<byte[]>() {
+
+        @Override
+        public int compare(byte[] first, byte[] second) {
+
+            return compareTokens(first, 0, first.length, second);
+        }
+    };
+
+    /**
+     * The offsets of the entries holding each token collected, by token.
+     */
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    /**
+     * The reusable list of the tokens of an entry.
+     */
+    private final List<String> entryTokens = new ArrayList<>();
+
+    /**
+     * The offset in the file of the start of the content covered by the run being collected, or -1 if nothing
+     * was collected yet.
+     */
+    private long runStart = -1;
+
+    /**
+     * The estimated memory in bytes taken by the tokens collected.
+     */
+    private int runMemory = 0;
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Notes that the file being written was empty, so the run being collected covers it from its start.
+     */
+    void startFile() {
+
+        if (runStart < 0) {
+
+            runStart = 0;
+        }
+    }
+
+    /**
+     * Collects the tokens of an entry of the file being written.
+     *
+     * @param offset The offset in the file at which the entry starts.
+     * @param tag The message tag.
+     * @param message The formatted message.
+     */
+    void add(long offset, String tag, String message) {
+
+        if (runStart < 0) {
+
+            runStart = offset;
+        }
+
+        entryTokens.clear();
+        tokenize(tag, 0, entryTokens);
+        tokenize(message, 0, entryTokens);
+
+        for (String token : entryTokens) {
+
+            Postings tokenPostings = postings.get(token);
+            if (tokenPostings == null) {
+
+                tokenPostings = new Postings();
+                postings.put(token, tokenPostings);
+                runMemory += TOKEN_OVERHEAD + token.length() * 2;
+            }
+
+            // An entry holding a token more than once is only listed once.
+            if (tokenPostings.last != offset) {
+
+                int size = tokenPostings.offsets.size();
+                tokenPostings.offsets.writeVarint(offset - Math.max(tokenPostings.last, 0));
+                tokenPostings.last = offset;
+                runMemory += tokenPostings.offsets.size() - size;
+            }
+        }
+    }
+
+    /**
+     * Checks whether enough tokens were collected to write them out as a run.
+     *
+     * @return True if the run being collected should be written.
+     */
+    boolean isFull() {
+
+        return runMemory >= MAX_RUN_MEMORY;
+    }
+
+    /**
+     * Appends the run being collected to the token index of the specified file, once the content it covers has
+     * been written, and starts a new run.
+     *
+     * @param file The {@link File} being written.
+     * @param contentEnd The length of the content written to the file, which is the end of the content the run
+     *                   covers.
+     */
+    void write(File file, long contentEnd) {
+
+        if (runStart < 0) {
+
+            return;
+        }
+
+        // Sort the tokens by their bytes, to look them up with a binary search.
+        byte[][] tokens = new byte[postings.size()][];
+        Postings[] tokenPostings = new Postings[tokens.length];
+        Map<byte[], Postings> byBytes = new HashMap<>();
+        int i = 0;
+        for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+
+            tokens[i] = entry.getKey().getBytes(UTF8);
+            byBytes.put(tokens[i], entry.getValue());
+            i++;
+        }
+
+        Arrays.sort(tokens, TOKEN_ORDER);
+
+        int tokenBytesLength = 0;
+        int offsetsLength = 0;
+        for (i = 0; i < tokens.length; i++) {
+
+            tokenPostings[i] = byBytes.get(tokens[i]);
+            tokenBytesLength += tokens[i].length;
+            offsetsLength += tokenPostings[i].offsets.size();
+        }
+
+        CRDLogByteBuffer run = new CRDLogByteBuffer(RUN_HEADER_SIZE + tokens.length * TABLE_ENTRY_SIZE + tokenBytesLength + offsetsLength);
+        run.writeLong(runStart);
+        run.writeLong(contentEnd);
+        run.writeInt(tokens.length);
+        run.writeInt(tokenBytesLength);
+        run.writeInt(offsetsLength);
+
+        int tokenPosition = 0;
+        int offsetsPosition = 0;
+        for (i = 0; i < tokens.length; i++) {
+
+            run.writeInt(tokenPosition);
+            run.writeInt(tokens[i].length);
+            run.writeInt(offsetsPosition);
+            run.writeInt(tokenPostings[i].offsets.size());
+            tokenPosition += tokens[i].length;
+            offsetsPosition += tokenPostings[i].offsets.size();
+        }
+
+        for (byte[] token : tokens) {
+
+            run.writeBytes(token, 0, token.length);
+        }
+
+        for (Postings each : tokenPostings) {
+
+            run.writeBuffer(each.offsets);
+        }
+
+        OutputStream outputStream = null;
+
+        try {
+
+            outputStream = new FileOutputStream(CRDLogSegments.sideFile(file, EXTENSION), true);
+            outputStream.write(run.array(), 0, run.size());
+
+        } catch (IOException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to write log token index.", exception);
+
+        } finally {
+
+            if (outputStream != null) {
+
+                try {
+
+                    outputStream.close();
+
+                } catch (IOException exception) {
+
+                    // Nothing more to do.
+                }
+            }
+        }
+
+        reset();
+    }
+
+    /**
+     * Forgets the tokens collected and starts a new run, such as when moving on to another file without writing
+     * the run or when the content the run covers failed to be written.
+     */
+    void reset() {
+
+        postings.clear();
+        runStart = -1;
+        runMemory = 0;
+    }
+
+    /**
+     * Looks up the specified tokens in the run being collected, which covers the end of the file being written.
+     *
+     * @param tokens The tokens to look up.
+     * @param contentEnd The length of the content written to the file.
+     * @param offsets The {@link List} to add the offsets of the entries holding all the tokens to.
+     * @param covered The {@link List} to add the start and end of the content covered by the run to.
+     */
+    void searchPending(Collection<String> tokens, long contentEnd, List<Long> offsets, List<long[]> covered) {
+
+        if (runStart < 0) {
+
+            return;
+        }
+
+        covered.add(new long[] { runStart, contentEnd });
+
+        long[] matches = null;
+
+        for (String token : tokens) {
+
+            Postings tokenPostings = postings.get(token);
+            if (tokenPostings == null) {
+
+                return;
+            }
+
+            long[] tokenMatches = decodeOffsets(tokenPostings.offsets.array(), tokenPostings.offsets.size());
+            matches = matches == null ? tokenMatches : intersect(matches, tokenMatches);
+        }
+
+        if (matches != null) {
+
+            for (long match : matches) {
+
+                offsets.add(match);
+            }
+        }
+    }
+
+    /**
+     * Splits the specified text into tokens.
+     *
+     * @param text The text to split, or null.
+     * @param start The offset in the text to start from.
+     * @param tokens The {@link Collection} to add the tokens to.
+     */
+    static void tokenize(String text, int start, Collection<String> tokens) {
+
+        if (text == null) {
+
+            return;
+        }
+
+        int length = text.length();
+        int i = start;
+
+        while (i < length) {
+
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+
+                i++;
+            }
+
+            int tokenStart = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+
+                i++;
+            }
+
+            if (i - tokenStart >= MIN_TOKEN_LENGTH) {
+
+                tokens.add(text.substring(tokenStart, Math.min(i, tokenStart + MAX_TOKEN_LENGTH)).toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    /**
+     * Splits the tag and message of the specified entry into tokens, as they are indexed.
+     *
+     * @param entry The text of the entry.
+     * @param tokens The {@link Collection} to add the tokens to.
+     */
+    static void tokenizeEntry(String entry, Collection<String> tokens) {
+
+        // Skip the timestamp and level, up to the tag.
+        int tagStart = entry.indexOf(" [", CRDLogTimestampEncoder.LENGTH);
+
+        tokenize(entry, tagStart >= 0 ? tagStart : 0, tokens);
+    }
+
+    /**
+     * Looks up the specified tokens in the token index of a log file.
+     *
+     * @param index The token index file opened for reading, or null if the log file has no token index.
+     * @param tokens The tokens to look up, as UTF-8 bytes.
+     * @param end The length of the content of the file, beyond which runs are ignored, or -1 if not known.
+     * @param offsets The {@link List} to add the offsets of the entries holding all the tokens to.
+     * @param covered The {@link List} to add the start and end of the content covered by each run to.
+     */
+    static void search(RandomAccessFile index, List<byte[]> tokens, long end, List<Long> offsets, List<long[]> covered) {
+
+        if (index == null) {
+
+            return;
+        }
+
+        try {
+
+            long length = index.length();
+            long position = 0;
+
+            while (position + RUN_HEADER_SIZE <= length) {
+
+                index.seek(position);
+                long contentStart = index.readLong();
+                long contentEnd = index.readLong();
+                int tokenCount = index.readInt();
+                int tokenBytesLength = index.readInt();
+                int offsetsLength = index.readInt();
+
+                long runLength = RUN_HEADER_SIZE + (long) tokenCount * TABLE_ENTRY_SIZE + tokenBytesLength + offsetsLength;
+                if (tokenCount < 0 || tokenBytesLength < 0 || offsetsLength < 0 || position + runLength > length
+                        || contentStart < 0 || contentEnd < contentStart || (end >= 0 && contentEnd > end)) {
+
+                    // A run cut short, or one for content that is no longer there.
+                    break;
+                }
+
+                covered.add(new long[] { contentStart, contentEnd });
+                searchRun(index, position, tokenCount, tokenBytesLength, tokens, offsets);
+
+                position += runLength;
+            }
+
+        } catch (IOException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to read log token index.", exception);
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Looks up the specified tokens in a run of a token index, and adds the offsets of the entries holding all of
+     * them.
+     *
+     * @param input The {@link RandomAccessFile} on the token index.
+     * @param position The position of the run in the token index.
+     * @param tokenCount The number of tokens in the run.
+     * @param tokenBytesLength The length of the token text of the run.
+     * @param tokens The tokens to look up, as UTF-8 bytes.
+     * @param offsets The {@link List} to add the offsets to.
+     *
+     * @throws IOException If the token index could not be read.
+     */
+    private static void searchRun(RandomAccessFile input, long position, int tokenCount, int tokenBytesLength, List<byte[]> tokens, List<Long> offsets) throws IOException {
+
+        long tableStart = position + RUN_HEADER_SIZE;
+        long tokenBytesStart = tableStart + (long) tokenCount * TABLE_ENTRY_SIZE;
+        long offsetsStart = tokenBytesStart + tokenBytesLength;
+
+        long[] matches = null;
+
+        for (byte[] token : tokens) {
+
+            int entry = findToken(input, tableStart, tokenBytesStart, tokenCount, token);
+            if (entry < 0) {
+
+                return;
+            }
+
+            input.seek(tableStart + (long) entry * TABLE_ENTRY_SIZE + 8);
+            int offsetsPosition = input.readInt();
+            int offsetsLength = input.readInt();
+
+            byte[] encoded = new byte[offsetsLength];
+            input.seek(offsetsStart + offsetsPosition);
+            input.readFully(encoded);
+
+            long[] tokenMatches = decodeOffsets(encoded, encoded.length);
+            matches = matches == null ? tokenMatches : intersect(matches, tokenMatches);
+            if (matches.length == 0) {
+
+                return;
+            }
+        }
+
+        if (matches != null) {
+
+            for (long match : matches) {
+
+                offsets.add(match);
+            }
+        }
+    }
+
+    /**
+     * Finds a token in the sorted token table of a run with a binary search.
+     *
+     * @param input The {@link RandomAccessFile} on the token index.
+     * @param tableStart The position of the token table.
+     * @param tokenBytesStart The position of the token text.
+     * @param tokenCount The number of tokens in the table.
+     * @param token The token to find, as UTF-8 bytes.
+     *
+     * @return The index of the token in the table, or -1 if the run does not hold it.
+     *
+     * @throws IOException If the token index could not be read.
+     */
+    private static int findToken(RandomAccessFile input, long tableStart, long tokenBytesStart, int tokenCount, byte[] token) throws IOException {
+
+        byte[] candidate = new byte[MAX_TOKEN_LENGTH * 4];
+        int low = 0;
+        int high = tokenCount - 1;
+
+        while (low <= high) {
+
+            int middle = (low + high) >>> 1;
+
+            input.seek(tableStart + (long) middle * TABLE_ENTRY_SIZE);
+            int tokenPosition = input.readInt();
+            int tokenLength = Math.min(input.readInt(), candidate.length);
+
+            input.seek(tokenBytesStart + tokenPosition);
+            input.readFully(candidate, 0, tokenLength);
+
+            int comparison = compareTokens(candidate, 0, tokenLength, token);
+            if (comparison < 0) {
+
+                low = middle + 1;
+
+            } else if (comparison > 0) {
+
+                high = middle - 1;
+
+            } else {
+
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compares tokens by their UTF-8 bytes, as unsigned values.
+     *
+     * @param first The bytes holding the first token.
+     * @param offset The offset of the first token in its bytes.
+     * @param length The length of the first token.
+     * @param second The second token.
+     *
+     * @return A negative value, zero or a positive value as the first token sorts before, with or after the second.
+     */
+    private static int compareTokens(byte[] first, int offset, int length, byte[] second) {
+
+        int common = Math.min(length, second.length);
+        for (int i = 0; i < common; i++) {
+
+            int difference = (first[offset + i] & 0xFF) - (second[i] & 0xFF);
+            if (difference != 0) {
+
+                return difference;
+            }
+        }
+
+        return length - second.length;
+    }
+
+    /**
+     * Decodes the offsets of the entries holding a token, stored as variable-length differences.
+     *
+     * @param encoded The encoded offsets.
+     * @param length The length of the encoded offsets.
+     *
+     * @return The offsets, in ascending order.
+     */
+    private static long[] decodeOffsets(byte[] encoded, int length) {
+
+        long[] offsets = new long[length];
+        int count = 0;
+        long offset = 0;
+        long value = 0;
+        int shift = 0;
+
+        for (int i = 0; i < length; i++) {
+
+            byte b = encoded[i];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+
+            if ((b & 0x80) == 0) {
+
+                offset += value;
+                offsets[count++] = offset;
+                value = 0;
+                shift = 0;
+            }
+        }
+
+        return Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * Intersects two ascending lists of offsets.
+     *
+     * @param first The first list.
+     * @param second The second list.
+     *
+     * @return The offsets in both lists, in ascending order.
+     */
+    private static long[] intersect(long[] first, long[] second) {
+
+        long[] both = new long[Math.min(first.length, second.length)];
+        int count = 0;
+
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+
+            if (first[i] < second[j]) {
+
+                i++;
+
+            } else if (first[i] > second[j]) {
+
+                j++;
+
+            } else {
+
+                both[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(both, count);
+    }
+
+    //endregion
+
+    //region Postings
+
+    /**
+     * The offsets of the entries holding a token, collected for the run being written.
+     */
+    private static class Postings {
+
+        /**
+         * The offsets, as variable-length differences from the previous one.
+         */
+        final CRDLogByteBuffer offsets = new CRDLogByteBuffer(8);
+
+        /**
+         * The last offset added, or -1 if none was added yet.
+         */
+        long last = -1;
+    }
+
+    //endregion
+}
@@ -0,0 +1,36 @@
+package com.chrisdisdero.crdlog;
+
+/**
+ * Enumeration of the ways {@link CRDLog} can append messages to the log file.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public enum CRDLogWriteMode {
+
+    /**
+     * Messages are appended with a write to an open file channel for each batch.  This is the default.
+     */
+    STREAM,
+
+    /**
+     * Messages are copied into a memory-mapped window over the end of the log file, which is grown in chunks, so
+     * a batch costs no system call.  The file is truncated to the length of its content when it is closed; if the
+     * app is killed before that, the unused end of the last chunk is trimmed the next time the file is opened.
+     */
+    MEMORY_MAPPED
+}
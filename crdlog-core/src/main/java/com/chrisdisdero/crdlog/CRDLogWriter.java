@@ -0,0 +1,1691 @@
+package com.chrisdisdero.crdlog;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Class that owns the background thread writing to the log file of a {@link CRDLog}.
+ *
+ * Messages and commands are queued up in order in a {@link CRDLogRingBuffer}, so callers never take a lock and
+ * nothing is allocated per message.  The writer thread drains everything pending in the ring, up to the maximum
+ * batch size, encodes the messages into one buffer and writes it to the log file with a single write, so the cost
+ * of a burst of messages is paid once per batch rather than once per message.
+ *
+ * The writer thread copies each event out of its slot as it takes it, freeing the slot right away, so with
+ * {@link CRDLogOverflowPolicy#DROP_OLDEST} a caller finding the ring full can take the oldest message off it
+ * itself rather than wait for the write in progress.
+ *
+ * When the ring is full, or the messages queued take up more than the maximum queued size, a message is handled
+ * according to the {@link CRDLogOverflowPolicy}.  Messages dropped are counted, and the writer thread writes the
+ * count to the log file in a warning before the next message it writes, so the gap shows in the log.
+ *
+ * Each message printed to the console is also handed to the {@link CRDLogSinkWriter} of every sink that accepts
+ * it, without waiting, so the sinks are written to on their own threads.
+ *
+ * Reads of the log take a snapshot of its content on the writer thread, in the order they were queued, then read
+ * it on a reader thread of their own, so the messages queued behind a read of a large log are not held up by it.
+ *
+ * Once closed, the writer has written and synced everything queued before the close, closed the log file and
+ * ended its thread, and ignores anything queued after it.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+class CRDLogWriter implements Runnable {
+
+    //region Private members
+
+    /**
+     * Log tag for this class.
+     */
+    private static final String TAG = CRDLogWriter.class.getCanonicalName();
+
+    /**
+     * The longest time the writer thread parks while waiting for an event.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The estimated size in bytes of a queued message besides its text, counted against the maximum queued size.
+     */
+    private static final int MESSAGE_OVERHEAD = 64;
+
+    /**
+     * The estimated size in bytes of each format message parameter, counted against the maximum queued size.
+     */
+    private static final int ARG_OVERHEAD = 16;
+
+    /**
+     * The estimated size in bytes of a throwable queued up to have its stack trace rendered on the writer thread.
+     */
+    private static final int THROWABLE_OVERHEAD = 2048;
+
+    /**
+     * The longest time in nanoseconds closing the log waits for each sink to finish.
+     */
+    private static final long SINK_CLOSE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * The ring of pending events.
+     */
+    private final CRDLogRingBuffer ring;
+
+    /**
+     * The approximate size in bytes of the messages that can be queued up, or zero for no limit.
+     */
+    private final long maxQueuedBytes;
+
+    /**
+     * The estimated size in bytes of the messages queued up, if the size of the queue is limited.
+     */
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    /**
+     * What is done with a message when the queue is full.
+     */
+    private final CRDLogOverflowPolicy overflowPolicy;
+
+    /**
+     * The level below which messages are dropped when the queue is full with
+     * {@link CRDLogOverflowPolicy#DROP_BELOW_LEVEL}.
+     */
+    private final CRDLogLevel overflowDropLevel;
+
+    /**
+     * The number of messages dropped since the last warning about them was written.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The event the writer thread copies each event into as it takes it off the ring.
+     */
+    private final CRDLogEvent takenEvent = new CRDLogEvent();
+
+    /**
+     * The event reused to write the warning about dropped messages.
+     */
+    private final CRDLogEvent droppedEvent = new CRDLogEvent();
+
+    /**
+     * The event reused to write the warnings about messages suppressed by the tag rules.
+     */
+    private final CRDLogEvent suppressedEvent = new CRDLogEvent();
+
+    /**
+     * The rate limits and sampling of the messages of each tag, or null if there are none.
+     */
+    private final CRDLogRateLimiter rateLimiter;
+
+    /**
+     * The time in nanoseconds between reports of the messages suppressed by the tag rules.
+     */
+    private final long suppressedReportIntervalNanos;
+
+    /**
+     * The time in nanoseconds at which the messages suppressed are next reported.
+     */
+    private long nextSuppressedReport = 0;
+
+    /**
+     * The coalescer of repeated messages, or null if repeats are not coalesced.
+     */
+    private final CRDLogCoalescer coalescer;
+
+    /**
+     * The time in milliseconds over which repeats of a message are coalesced.
+     */
+    private final long coalesceWindowMillis;
+
+    /**
+     * The event reused to write the summaries of repeated messages.
+     */
+    private final CRDLogEvent repeatEvent = new CRDLogEvent();
+
+    /**
+     * The renderer of the stack traces of the throwables logged, which keeps track of those written to the file.
+     */
+    private final CRDLogStackTraces stackTraces;
+
+    /**
+     * The messages of the current batch, encoded in the format of the log, not yet written to the log file.
+     */
+    private final CRDLogByteBuffer pending = new CRDLogByteBuffer(8192);
+
+    /**
+     * The encoder for the messages, in the format of the log.
+     */
+    private final CRDLogRecordEncoder recordEncoder;
+
+    /**
+     * The console that messages are printed to before being written to the log file.
+     */
+    private final CRDLogConsole console;
+
+    /**
+     * The writers of the sinks messages are handed to besides the log file.
+     */
+    private final CRDLogSinkWriter[] sinkWriters;
+
+    /**
+     * The recorder holding messages below the trigger level in memory instead of the log file, or null if
+     * messages are written to the log file as they come.
+     */
+    private final CRDLogFlightRecorder flightRecorder;
+
+    /**
+     * The lowest level of the messages that have the flight recorder written to the log file.
+     */
+    private final CRDLogLevel flightRecorderTriggerLevel;
+
+    /**
+     * The files making up the content of the log.
+     */
+    private final CRDLogSegments segments;
+
+    /**
+     * The compressor for closed segments, or null if they are left uncompressed.
+     */
+    private final CRDLogCompressor compressor;
+
+    /**
+     * The sparse time index of the file currently written to, or null if the log is not indexed.
+     */
+    private final CRDLogIndex index;
+
+    /**
+     * The token index of the file currently written to, or null if the log is not indexed for search.
+     */
+    private final CRDLogTokenIndex tokenIndex;
+
+    /**
+     * The file currently written to.
+     */
+    private File appenderFile;
+
+    /**
+     * The appender for the file currently written to.
+     */
+    private CRDLogAppender appender;
+
+    /**
+     * The way messages are appended to the log file.
+     */
+    private final CRDLogWriteMode writeMode;
+
+    /**
+     * The size in bytes by which the mapped window grows in {@link CRDLogWriteMode#MEMORY_MAPPED} mode.
+     */
+    private final int mappedChunkSize;
+
+    /**
+     * The size in bytes beyond which the content rolls over to a new segment, or zero to not roll over.
+     */
+    private final long maxSegmentSize;
+
+    /**
+     * Instance of {@link CRDLogHeaderInterface} which will provide a header for the log file when needed.
+     */
+    private final CRDLogHeaderInterface logHeaderProvider;
+
+    /**
+     * The maximum number of events processed in a single batch.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * The maximum time in milliseconds to wait for more events before processing a batch that is not full.
+     */
+    private final long maxBatchLingerMillis;
+
+    /**
+     * The thread running this writer.
+     */
+    private final Thread thread;
+
+    /**
+     * The execution queue for reads of snapshots of the log, on a single thread of their own.
+     */
+    private final ExecutorService readerExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+            Thread thread = new Thread(runnable, "CRDLog-reader");
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    });
+
+    /**
+     * The time in milliseconds after which content written is forced to the storage device, or zero to not sync
+     * on a timer.
+     */
+    private final long syncIntervalMillis;
+
+    /**
+     * The size in bytes of content written after which it is forced to the storage device, or zero to not sync
+     * by size.
+     */
+    private final long syncIntervalBytes;
+
+    /**
+     * Flag to force the log file to the storage device after writing an error message.
+     */
+    private final boolean syncOnError;
+
+    /**
+     * The size in bytes of the content written to the file currently written to since it was last synced.
+     */
+    private long unsyncedBytes = 0;
+
+    /**
+     * The time in nanoseconds at which content was first written to the file since it was last synced.
+     */
+    private long unsyncedSince = 0;
+
+    /**
+     * Flag indicating that the file is to be synced once the current batch is written, for an error message.
+     */
+    private boolean syncRequested = false;
+
+    /**
+     * Flag indicating that the writer has been closed, after which nothing more is queued or written.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * The recorder for the metrics of the log, or null if metrics are not enabled.
+     */
+    private final CRDLogMetricsRecorder metrics;
+
+    /**
+     * The number of messages encoded in the current batch, for the metrics.
+     */
+    private int pendingMessages = 0;
+
+    /**
+     * The listener the metrics are reported to, or null if they are not reported.
+     */
+    private CRDLogMetricsInterface metricsListener = null;
+
+    /**
+     * The time in nanoseconds between reports of the metrics to the listener.
+     */
+    private long metricsIntervalNanos = 0;
+
+    /**
+     * The time in nanoseconds at which the metrics are next reported to the listener.
+     */
+    private long nextMetricsReport = 0;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Instantiates a new {@link CRDLogWriter} object.
+     *
+     * @param logFile A reference to the {@link File} representing the log file on disk.
+     * @param logHeaderProvider Instance of {@link CRDLogHeaderInterface} which will provide a header for the log file when needed.
+     * @param settings The {@link CRDLogSettings} for the log.
+     * @param rateLimiter The {@link CRDLogRateLimiter} of the log, whose suppressed messages are reported, or null
+     * if there are no tag rules.
+     */
+    CRDLogWriter(File logFile, CRDLogHeaderInterface logHeaderProvider, CRDLogSettings settings, CRDLogRateLimiter rateLimiter) {
+
+        this.recordEncoder = settings.getLogFormat() == CRDLogFormat.BINARY ? new CRDLogBinaryEncoder() : new CRDLogTextEncoder();
+        this.console = settings.getConsole();
+        this.sinkWriters = createSinkWriters(settings);
+        this.flightRecorder = settings.getFlightRecorderCapacity() > 0 ? new CRDLogFlightRecorder(settings.getFlightRecorderCapacity()) : null;
+        this.flightRecorderTriggerLevel = settings.getFlightRecorderTriggerLevel();
+        this.writeMode = settings.getWriteMode();
+        this.mappedChunkSize = settings.getMappedChunkSize();
+        this.maxSegmentSize = settings.getMaxSegmentSize();
+        this.segments = new CRDLogSegments(logFile, maxSegmentSize > 0, settings.getMaxSegmentCount());
+        this.index = settings.getIndexInterval() > 0 ? new CRDLogIndex(settings.getIndexInterval()) : null;
+        this.tokenIndex = settings.isSearchIndexEnabled() ? new CRDLogTokenIndex() : null;
+        this.stackTraces = new CRDLogStackTraces(settings.getMaxStackTraceFrames(), settings.getMaxStackTraceCauses());
+        openAppender(segments.active());
+        this.compressor = settings.isCompressClosedSegments() ? new CRDLogCompressor(segments) : null;
+        this.logHeaderProvider = logHeaderProvider;
+        this.maxBatchSize = settings.getMaxBatchSize();
+        this.maxBatchLingerMillis = settings.getMaxBatchLingerMillis();
+        this.ring = new CRDLogRingBuffer(settings.getQueueCapacity());
+        this.maxQueuedBytes = settings.getMaxQueuedBytes();
+        this.overflowPolicy = settings.getOverflowPolicy();
+        this.overflowDropLevel = settings.getOverflowDropLevel();
+        this.syncIntervalMillis = settings.getSyncIntervalMillis();
+        this.syncIntervalBytes = settings.getSyncIntervalBytes();
+        this.syncOnError = settings.isSyncOnError();
+        this.metrics = settings.isMetricsEnabled() ? new CRDLogMetricsRecorder() : null;
+        this.rateLimiter = rateLimiter;
+        this.suppressedReportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.getSuppressedReportIntervalMillis());
+        this.nextSuppressedReport = System.nanoTime() + suppressedReportIntervalNanos;
+        this.coalesceWindowMillis = settings.getCoalesceWindowMillis();
+        this.coalescer = coalesceWindowMillis > 0 ? new CRDLogCoalescer(coalesceWindowMillis, settings.getCoalesceCapacity()) : null;
+
+        thread = new Thread(this, "CRDLog");
+        thread.setDaemon(true);
+    }
+
+    //endregion
+
+    //region Package methods
+
+    /**
+     * Starts the writer thread.
+     */
+    void start() {
+
+        thread.start();
+
+        for (CRDLogSinkWriter sinkWriter : sinkWriters) {
+
+            sinkWriter.start();
+        }
+
+        if (compressor != null) {
+
+            // Pick up any closed segments left uncompressed by a previous run.
+            File active = segments.active();
+            for (File file : segments.list()) {
+
+                if (!file.equals(active) && !file.getName().endsWith(CRDLogCompressor.EXTENSION)) {
+
+                    compressor.compress(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues up a message to format and write to the console and, if requested, the log file.  If the queue is
+     * full, the message is handled according to the {@link CRDLogOverflowPolicy}.
+     *
+     * @param timestamp The time the message was logged, in milliseconds since the epoch.
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The message tag to write.
+     * @param format The message or format for the message, or null if the message is already formatted or is the
+     * stack trace of the throwable.
+     * @param args The format message parameters.
+     * @param message The already formatted message content, or null if it is to be formatted on the writer thread.
+     * @param throwable The {@link Throwable} the message is about, if any, whose stack trace is rendered on the
+     * writer thread as the message if there is neither a format nor a message.
+     * @param writeToFile True to write the message to the log file as well as the console.
+     */
+    void write(long timestamp, CRDLogLevel level, String tag, String format, Object[] args, String message, Throwable throwable, boolean writeToFile) {
+
+        if (closed) {
+
+            return;
+        }
+
+        long start = metrics != null ? System.nanoTime() : 0;
+
+        int size = maxQueuedBytes > 0 ? sizeOf(tag, format, args, message, throwable) : 0;
+
+        long sequence = claimMessage(level, size);
+        if (sequence < 0) {
+
+            return;
+        }
+
+        // The slot may still hold the event last taken off it.
+        CRDLogEvent event = ring.get(sequence);
+        event.clear();
+        event.timestamp = timestamp;
+        event.level = level;
+        event.tag = tag;
+        event.format = format;
+        event.args = args;
+        event.message = message;
+        event.throwable = throwable;
+        event.writeToFile = writeToFile;
+        event.size = size;
+
+        ring.publish(sequence);
+
+        if (metrics != null) {
+
+            metrics.enqueueLatency.record(System.nanoTime() - start);
+            metrics.recordQueueDepth(ring.size());
+        }
+    }
+
+    /**
+     * Queues up a command to run on the writer thread after all the messages queued before it are written.
+     *
+     * @param command The {@link Runnable} to run.
+     */
+    void execute(Runnable command) {
+
+        execute(command, Long.MAX_VALUE);
+    }
+
+    /**
+     * Queues up a read of a snapshot of the log to run on the reader thread, while messages go on being written.
+     * Reads run one at a time, in the order they were queued.  Does nothing once the writer is closed and the
+     * reads already queued have run.
+     *
+     * @param read The {@link Runnable} reading the snapshot.
+     */
+    void executeRead(Runnable read) {
+
+        try {
+
+            readerExecutor.execute(read);
+
+        } catch (RejectedExecutionException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to queue up read of closed log.", exception);
+        }
+    }
+
+    /**
+     * Waits until everything queued up so far is written to the log file and synced to the storage device.  Does
+     * not wait when called on the writer thread, such as from a completion handler, since it would wait on itself.
+     *
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     *
+     * @return True if everything queued up was written and synced in time, or false if not.
+     */
+    boolean flushAndWait(long timeoutMillis) {
+
+        if (closed) {
+
+            return true;
+        }
+
+        if (Thread.currentThread() == thread) {
+
+            return false;
+        }
+
+        long start = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        // The messages queued before the command are written before it runs, so all it has left to do is sync.
+        boolean wasQueued = execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                if (unsyncedBytes > 0) {
+
+                    sync();
+                }
+
+                done.countDown();
+            }
+        }, timeoutNanos);
+
+        if (!wasQueued) {
+
+            return closed;
+        }
+
+        try {
+
+            return done.await(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+
+        } catch (InterruptedException exception) {
+
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Writes and syncs everything queued up so far, closes the log file and ends the writer thread, waiting for
+     * it to end unless called on the writer thread itself.  Anything queued up after the close is ignored.
+     */
+    void close() {
+
+        if (Thread.currentThread() == thread) {
+
+            closeNow();
+            return;
+        }
+
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                closeNow();
+            }
+        });
+
+        try {
+
+            thread.join();
+
+        } catch (InterruptedException exception) {
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the metrics of the log.  Can be called on any thread.
+     *
+     * @return The {@link CRDLogMetrics} of the log, or null if metrics are not enabled.
+     */
+    CRDLogMetrics getMetrics() {
+
+        return metrics != null ? metrics.snapshot(ring.size()) : null;
+    }
+
+    /**
+     * Sets the listener the metrics of the log are reported to on an interval.  Must be called on the writer
+     * thread, such as from a command.
+     *
+     * @param listener The {@link CRDLogMetricsInterface} to report to, or null to stop reporting.
+     * @param intervalMillis The time between reports in milliseconds.
+     */
+    void setMetricsListener(CRDLogMetricsInterface listener, long intervalMillis) {
+
+        metricsListener = metrics != null ? listener : null;
+        metricsIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        nextMetricsReport = System.nanoTime() + metricsIntervalNanos;
+    }
+
+    /**
+     * Opens an input stream over the content of the log written so far, oldest first, with any file in the
+     * binary format rendered as text.  Must be called on the writer thread, such as from a command.  The files
+     * are all opened, and the file currently written to is cut off at the content written so far, so the stream
+     * is a snapshot of the log that can be read on another thread while messages go on being written, even if
+     * the files are rolled over, compressed or deleted in the meantime.
+     *
+     * @return An {@link InputStream} over the content of the log, or null if there is no log file yet.
+     *
+     * @throws IOException If the log files could not be opened.
+     */
+    InputStream openContent() throws IOException {
+
+        Vector<InputStream> streams = new Vector<>();
+
+        // Open all the files while holding the segments lock, so the compressor cannot replace one in between.
+        synchronized (segments) {
+
+            List<File> files = segments.list();
+            if (files.isEmpty()) {
+
+                return null;
+            }
+
+            File active = segments.active();
+
+            try {
+
+                for (File file : files) {
+
+                    if (file.equals(active)) {
+
+                        // Read only as far as the content written so far, which may be short of the end of the file.
+                        streams.add(CRDLogBinaryDecoder.wrap(new CRDLogInputStream(new FileInputStream(file), activeLength(file))));
+
+                    } else if (file.getName().endsWith(CRDLogCompressor.EXTENSION)) {
+
+                        streams.add(CRDLogBinaryDecoder.wrap(new GZIPInputStream(new FileInputStream(file))));
+
+                    } else {
+
+                        streams.add(CRDLogBinaryDecoder.wrap(new FileInputStream(file)));
+                    }
+                }
+
+            } catch (IOException exception) {
+
+                for (InputStream stream : streams) {
+
+                    stream.close();
+                }
+
+                throw exception;
+            }
+        }
+
+        return new SequenceInputStream(streams.elements());
+    }
+
+    /**
+     * Opens a reader over the entries of the content of the log written so far.  Must be called on the writer
+     * thread, such as from a command, but the reader can then be used on another thread, such as the reader
+     * thread, as a snapshot of the log.  The files are all opened, so the reader can go on reading them even if
+     * they are rolled over, compressed, drained or deleted in the meantime, and must be closed once done with.
+     *
+     * @return A {@link CRDLogReader} over the content of the log.
+     *
+     * @throws IOException If the log files could not be opened.
+     */
+    CRDLogReader openReader() throws IOException {
+
+        // Open all the files while holding the segments lock, so none of them can be replaced or deleted in between.
+        synchronized (segments) {
+
+            File active = segments.active();
+
+            return CRDLogReader.open(segments.list(), active, activeLength(active), tokenIndex);
+        }
+    }
+
+    /**
+     * Writes the messages held by the flight recorder to the log file, oldest first, and empties it.  Must be
+     * called on the writer thread, such as from a command.
+     */
+    void dumpFlightRecorder() {
+
+        if (flightRecorder == null) {
+
+            return;
+        }
+
+        writeFlightRecorder();
+
+        // The messages recorded were checked by the coalescer long before they are written now.
+        if (coalescer != null) {
+
+            coalescer.otherLineWritten();
+        }
+    }
+
+    /**
+     * Deletes all the content of the log.  Must be called on the writer thread, such as from a command.
+     */
+    void deleteContent() {
+
+        // The messages watched for repeats are gone along with the content, so their repeats are written again.
+        if (coalescer != null) {
+
+            coalescer.reset();
+        }
+
+        appender.delete();
+        segments.deleteAll();
+        openAppender(segments.active());
+    }
+
+    /**
+     * Hands off all the content of the log written so far by closing the file currently written to and renaming
+     * the files of the log out of the way, so the next message starts a new file with its own header.  Nothing
+     * is copied, and everything logged before the drain is in the files handed off and everything logged after
+     * it in the new ones.  Must be called on the writer thread, such as from a command.
+     *
+     * @return The {@link List} of {@link File}s the content was moved to, oldest first.
+     */
+    List<File> drainContent() {
+
+        // Sum up the repeats of messages logged before the drain along with them.
+        if (coalescer != null) {
+
+            writeRepeats(Long.MAX_VALUE);
+            flush();
+
+            // The messages watched for repeats are handed off too, so their next repeats start the new file.
+            coalescer.reset();
+        }
+
+        // Make sure the file handed off is complete on the storage device.
+        if (appenderFile.exists() && unsyncedBytes > 0) {
+
+            sync();
+        }
+
+        appender.close();
+
+        List<File> files = segments.drain();
+        openAppender(segments.active());
+
+        return files;
+    }
+
+    //endregion
+
+    //region Runnable
+
+    @Override
+    public void run() {
+
+        while (!closed) {
+
+            // Wait for the next event, then take whatever else is published up to the batch size.
+            long first = ring.next();
+            if (!ring.await(first, idleParkNanos())) {
+
+                // Nothing came in, so catch up on a sync or report that has come due in the meantime.
+                syncIfDue();
+                reportMetricsIfDue();
+                reportSuppressedIfDue();
+                writeRepeatsIfDue();
+                continue;
+            }
+
+            long last = ring.available(first, first + maxBatchSize - 1);
+
+            if (maxBatchLingerMillis > 0) {
+
+                last = linger(first, last);
+            }
+
+            processBatch(first, last);
+
+            reportMetricsIfDue();
+            reportSuppressedIfDue();
+            writeRepeatsIfDue();
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Gets the length of the content written so far to the file currently written to, without opening the file
+     * if it isn't open, since opening it would create it if there is no log file yet.
+     *
+     * @param active The {@link File} currently written to.
+     *
+     * @return The length of the content of the file.
+     *
+     * @throws IOException If the length of the content could not be determined.
+     */
+    private long activeLength(File active) throws IOException {
+
+        return appender.isOpen() ? appender.size() : active.length();
+    }
+
+    /**
+     * Claims a sequence in the ring for a message, handling a full queue according to the overflow policy.
+     *
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param size The estimated size of the message in bytes, or zero if the size of the queue is not limited.
+     *
+     * @return The claimed sequence, or -1 if the message is dropped.
+     */
+    private long claimMessage(CRDLogLevel level, int size) {
+
+        while (!closed) {
+
+            // A message too large for the limit on its own is still let into an empty queue.
+            long queued = size > 0 ? queuedBytes.get() : 0;
+            if (queued == 0 || queued + size <= maxQueuedBytes) {
+
+                long sequence = ring.tryClaim();
+                if (sequence >= 0) {
+
+                    if (size > 0) {
+
+                        queuedBytes.addAndGet(size);
+                    }
+
+                    return sequence;
+                }
+            }
+
+            switch (overflowPolicy) {
+
+                case DROP_NEWEST:
+                    countDropped();
+                    return -1;
+
+                case DROP_BELOW_LEVEL:
+                    if (level.compareTo(overflowDropLevel) < 0) {
+
+                        countDropped();
+                        return -1;
+                    }
+                    break;
+
+                case DROP_OLDEST:
+                    // Make room by taking the oldest queued message off the ring, unless it is a command or is
+                    // still being filled in, in which case the wait for it is short.
+                    int droppedSize = ring.takeOldest();
+                    if (droppedSize >= 0) {
+
+                        if (droppedSize > 0) {
+
+                            queuedBytes.addAndGet(-droppedSize);
+                        }
+
+                        countDropped();
+                        continue;
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+
+            ring.waitForRoom();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Queues up a command to run on the writer thread, waiting up to the specified time for room in the queue.
+     *
+     * @param command The {@link Runnable} to run.
+     * @param timeoutNanos The maximum time to wait for room in nanoseconds, or Long.MAX_VALUE to wait as long as
+     * it takes.
+     *
+     * @return True if the command was queued, or false if there was no room in time or the writer is closed.
+     */
+    private boolean execute(Runnable command, long timeoutNanos) {
+
+        long start = System.nanoTime();
+
+        while (!closed) {
+
+            long sequence = ring.tryClaim();
+            if (sequence >= 0) {
+
+                CRDLogEvent event = ring.get(sequence);
+                event.clear();
+                event.command = command;
+
+                ring.publish(sequence);
+
+                return true;
+            }
+
+            if (timeoutNanos != Long.MAX_VALUE && System.nanoTime() - start >= timeoutNanos) {
+
+                return false;
+            }
+
+            ring.waitForRoom();
+        }
+
+        return false;
+    }
+
+    /**
+     * Estimates the memory held by a queued message, counted against the maximum queued size.
+     *
+     * @param tag The message tag.
+     * @param format The message or format for the message, or null if the message is already formatted.
+     * @param args The format message parameters.
+     * @param message The already formatted message content, or null if it is to be formatted on the writer thread.
+     * @param throwable The {@link Throwable} the message is about, if any.
+     *
+     * @return The estimated size of the message in bytes.
+     */
+    private static int sizeOf(String tag, String format, Object[] args, String message, Throwable throwable) {
+
+        String text = message != null ? message : format;
+
+        int size = MESSAGE_OVERHEAD;
+        size += tag != null ? tag.length() * 2 : 0;
+        size += text != null ? text.length() * 2 : 0;
+        size += args != null ? args.length * ARG_OVERHEAD : 0;
+        size += throwable != null && text == null ? THROWABLE_OVERHEAD : 0;
+
+        return size;
+    }
+
+    /**
+     * Waits up to the maximum linger time for more events to fill out the current batch.  Stops waiting early if
+     * the batch fills up or a command is queued, since the caller of a command is waiting on its result.
+     *
+     * @param first The first sequence of the batch.
+     * @param last The last sequence of the batch so far.
+     *
+     * @return The last sequence of the batch.
+     */
+    private long linger(long first, long last) {
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBatchLingerMillis);
+        long limit = first + maxBatchSize - 1;
+
+        while (last < limit && ring.get(last).command == null) {
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !ring.await(last + 1, remaining)) {
+
+                break;
+            }
+
+            last = ring.available(last + 1, limit);
+        }
+
+        return last;
+    }
+
+    /**
+     * Processes the events of the current batch in order, writing consecutive messages with a single write.  Each
+     * event is taken off the ring before it is processed, and is skipped if a caller took it first to drop it.
+     *
+     * @param first The first sequence of the batch.
+     * @param last The last sequence of the batch.
+     */
+    private void processBatch(long first, long last) {
+
+        CRDLogEvent event = takenEvent;
+
+        for (long sequence = first; sequence <= last; sequence++) {
+
+            if (!ring.take(sequence, event)) {
+
+                continue;
+            }
+
+            if (closed) {
+
+                // Anything queued after the close is ignored.
+                event.clear();
+                continue;
+            }
+
+            if (event.size > 0) {
+
+                queuedBytes.addAndGet(-event.size);
+            }
+
+            if (event.command == null) {
+
+                if (dropped.get() > 0) {
+
+                    writeDropped();
+                }
+
+                try {
+
+                    process(event);
+
+                } catch (RuntimeException exception) {
+
+                    // A message that fails, such as in a custom console, must not end the writer thread.
+                    CRDLogPlatform.error(TAG, "Failed to write log message.", exception);
+                }
+
+            } else {
+
+                // Write out the messages queued before the command, so it sees them in the log file.
+                flush();
+
+                try {
+
+                    event.command.run();
+
+                } catch (Exception exception) {
+
+                    CRDLogPlatform.error(TAG, "Failed to run log command.", exception);
+                }
+            }
+
+            event.clear();
+        }
+
+        if (dropped.get() > 0 && !closed) {
+
+            writeDropped();
+        }
+
+        flush();
+    }
+
+    /**
+     * Writes a warning with the number of messages dropped since the last one, in place of those messages.
+     */
+    private void writeDropped() {
+
+        long count = dropped.getAndSet(0);
+
+        droppedEvent.timestamp = System.currentTimeMillis();
+        droppedEvent.level = CRDLogLevel.WARN;
+        droppedEvent.tag = CRDLog.class.getSimpleName();
+        droppedEvent.message = count + (count == 1 ? " message" : " messages") + " dropped because the log queue was full.";
+        droppedEvent.writeToFile = true;
+
+        process(droppedEvent);
+
+        droppedEvent.clear();
+    }
+
+    /**
+     * Formats the message of the specified event, or renders the stack trace of its throwable, and dispatches it,
+     * unless it is a repeat left out by the coalescer, in which case it is only counted.  If the message pushes
+     * out a repeated one from the coalescer, the summary of its repeats is dispatched first.
+     *
+     * @param event The {@link CRDLogEvent} to process.
+     */
+    private void process(CRDLogEvent event) {
+
+        if (event.message == null) {
+
+            if (event.format == null && event.throwable != null) {
+
+                renderStackTrace(event);
+
+            } else {
+
+                event.message = CRDLogTextEncoder.format(event.format, event.args);
+            }
+        }
+
+        if (coalescer != null) {
+
+            if (coalescer.coalesce(event, repeatEvent)) {
+
+                return;
+            }
+
+            if (repeatEvent.message != null) {
+
+                dispatch(repeatEvent);
+                repeatEvent.clear();
+            }
+        }
+
+        dispatch(event);
+    }
+
+    /**
+     * Writes the formatted message of the specified event to the console.  If the console accepted it, or failed
+     * to print it, hands it to the sinks that accept it and, if the event asks for it, encodes it for the log
+     * file.  With the flight recorder on, a message below the trigger level is recorded instead of encoded, and a
+     * message at or above it is encoded after the messages recorded before it.
+     *
+     * @param event The {@link CRDLogEvent} to dispatch.
+     */
+    private void dispatch(CRDLogEvent event) {
+
+        if (!print(event)) {
+
+            return;
+        }
+
+        if (event.writeToFile) {
+
+            if (flightRecorder == null) {
+
+                encode(event);
+
+            } else if (event.level.compareTo(flightRecorderTriggerLevel) < 0) {
+
+                flightRecorder.record(event);
+
+            } else {
+
+                writeFlightRecorder();
+                encode(event);
+            }
+        }
+
+        for (CRDLogSinkWriter sinkWriter : sinkWriters) {
+
+            if (sinkWriter.accepts(event.level, event.tag)) {
+
+                sinkWriter.offer(event);
+            }
+        }
+    }
+
+    /**
+     * Encodes the messages held by the flight recorder, oldest first, and empties it.
+     */
+    private void writeFlightRecorder() {
+
+        for (int i = 0; i < flightRecorder.size(); i++) {
+
+            encode(flightRecorder.get(i));
+        }
+
+        flightRecorder.clear();
+    }
+
+    /**
+     * Prints the formatted message of the specified event to the console.  A console that throws is reported and
+     * treated as accepting the message, so the message is not lost from the log file.
+     *
+     * @param event The {@link CRDLogEvent} to print.
+     *
+     * @return True if the message is to be written to the log file and sinks, or false if the console left it out.
+     */
+    private boolean print(CRDLogEvent event) {
+
+        try {
+
+            return console.print(event.level, event.tag, event.message, event.throwable);
+
+        } catch (RuntimeException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to print log message to console.", exception);
+
+            return true;
+        }
+    }
+
+    /**
+     * Renders the stack trace of the throwable of the specified event as its message, in full if it isn't already
+     * written to the log file, or as a reference to it if it is.  Rendering calls into the throwable, so one that
+     * fails is written as best it can be rather than ending the writer thread.
+     *
+     * @param event The {@link CRDLogEvent} whose throwable is rendered.
+     */
+    private void renderStackTrace(CRDLogEvent event) {
+
+        try {
+
+            long fingerprint = stackTraces.fingerprint(event.throwable);
+            if (fingerprint == 0) {
+
+                event.message = "";
+                return;
+            }
+
+            event.fingerprint = fingerprint;
+            event.traceReference = stackTraces.isWritten(fingerprint);
+            event.message = event.traceReference ? stackTraces.reference(event.throwable, fingerprint) : stackTraces.render(event.throwable, fingerprint);
+
+        } catch (RuntimeException exception) {
+
+            // A throwable that fails even to give up its stack frames is written with its class name alone.
+            CRDLogPlatform.error(TAG, "Failed to render stack trace.", exception);
+
+            event.fingerprint = 0;
+            event.traceReference = false;
+            event.message = event.throwable.getClass().getName();
+        }
+    }
+
+    /**
+     * Encodes the specified message event at the end of the pending messages.
+     *
+     * @param event The {@link CRDLogEvent} to encode.
+     */
+    private void encode(CRDLogEvent event) {
+
+        try {
+
+            // Roll over to a new segment first if this one is full.
+            if (maxSegmentSize > 0 && appender.size() + pending.size() >= maxSegmentSize) {
+
+                flush();
+                rotate();
+            }
+
+            // If this is the first message of the batch and the log file is empty, then start it with a header.
+            if (pending.size() == 0 && appender.size() == 0) {
+
+                recordEncoder.encodeHeader(logHeaderProvider != null ? logHeaderProvider.onProvideHeader() : null, pending);
+
+                if (tokenIndex != null) {
+
+                    tokenIndex.startFile();
+                }
+            }
+
+            if (event.fingerprint != 0) {
+
+                if (event.traceReference && !stackTraces.isWritten(event.fingerprint)) {
+
+                    // The stack trace referred to isn't in this file, such as after rolling over, so write it in full.
+                    event.message = stackTraces.render(event.throwable, event.fingerprint);
+                    event.traceReference = false;
+                }
+
+                stackTraces.markWritten(event.fingerprint);
+            }
+
+            if (index != null || tokenIndex != null) {
+
+                long offset = appender.size() + pending.size();
+
+                // Add an index point if one is due, from which the file can be read without what comes before it.
+                if (index != null && index.isDue(offset)) {
+
+                    recordEncoder.reset();
+                    index.add(event.timestamp, offset);
+                }
+
+                if (tokenIndex != null) {
+
+                    tokenIndex.add(offset, event.tag, event.message);
+                }
+            }
+
+        } catch (Exception exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to open log file.", exception);
+        }
+
+        recordEncoder.encode(event, pending);
+        pendingMessages++;
+
+        if (syncOnError && event.level == CRDLogLevel.ERROR) {
+
+            syncRequested = true;
+        }
+    }
+
+    /**
+     * Writes the pending messages to the log file.
+     */
+    private void flush() {
+
+        if (pending.size() == 0) {
+
+            return;
+        }
+
+        recordEncoder.encodeBatchEnd(pending);
+
+        try {
+
+            long start = metrics != null ? System.nanoTime() : 0;
+
+            appender.write(pending.toByteBuffer());
+
+            if (metrics != null) {
+
+                metrics.recordWrite(pendingMessages, pending.size(), System.nanoTime() - start);
+            }
+
+            if (unsyncedBytes == 0) {
+
+                unsyncedSince = System.nanoTime();
+            }
+
+            unsyncedBytes += pending.size();
+
+            if (index != null) {
+
+                index.write(appenderFile);
+            }
+
+            if (tokenIndex != null && tokenIndex.isFull()) {
+
+                tokenIndex.write(appenderFile, appender.size());
+            }
+
+        } catch (Exception exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to write message to log file.", exception);
+
+            // What was lost may have defined state that later messages would depend on.
+            recordEncoder.reset();
+
+            if (index != null) {
+
+                index.reset();
+            }
+
+            if (tokenIndex != null) {
+
+                tokenIndex.reset();
+            }
+        }
+
+        pending.clear();
+        pendingMessages = 0;
+
+        syncIfDue();
+    }
+
+    /**
+     * Forces the content of the file currently written to onto the storage device, if a sync has come due
+     * according to the sync settings.
+     */
+    private void syncIfDue() {
+
+        if (unsyncedBytes == 0) {
+
+            return;
+        }
+
+        if (syncRequested
+                || (syncIntervalBytes > 0 && unsyncedBytes >= syncIntervalBytes)
+                || (syncIntervalMillis > 0 && System.nanoTime() - unsyncedSince >= TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis))) {
+
+            sync();
+        }
+    }
+
+    /**
+     * Forces the content of the file currently written to onto the storage device.
+     */
+    private void sync() {
+
+        try {
+
+            long start = metrics != null ? System.nanoTime() : 0;
+
+            appender.sync();
+
+            if (metrics != null) {
+
+                metrics.syncLatency.record(System.nanoTime() - start);
+            }
+
+        } catch (IOException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to sync log file.", exception);
+        }
+
+        unsyncedBytes = 0;
+        syncRequested = false;
+    }
+
+    /**
+     * Gets the longest time the writer thread may park while waiting for an event, which is cut short when a
+     * sync on a timer or a report of the metrics is coming due, or when repeats are waiting to be summed up.
+     *
+     * @return The time in nanoseconds.
+     */
+    private long idleParkNanos() {
+
+        long now = System.nanoTime();
+        long parkNanos = IDLE_PARK_NANOS;
+
+        if (syncIntervalMillis > 0 && unsyncedBytes > 0) {
+
+            parkNanos = Math.min(parkNanos, unsyncedSince + TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis) - now);
+        }
+
+        if (metricsListener != null) {
+
+            parkNanos = Math.min(parkNanos, nextMetricsReport - now);
+        }
+
+        if (coalescer != null && coalescer.hasRepeats()) {
+
+            parkNanos = Math.min(parkNanos, TimeUnit.MILLISECONDS.toNanos(coalesceWindowMillis));
+        }
+
+        return Math.max(1, parkNanos);
+    }
+
+    /**
+     * Reports the metrics to the listener, if there is one and a report has come due.
+     */
+    private void reportMetricsIfDue() {
+
+        if (metricsListener == null || System.nanoTime() - nextMetricsReport < 0) {
+
+            return;
+        }
+
+        nextMetricsReport = System.nanoTime() + metricsIntervalNanos;
+
+        try {
+
+            metricsListener.onLogMetrics(getMetrics());
+
+        } catch (Exception exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to report log metrics.", exception);
+        }
+    }
+
+    /**
+     * Reports the messages suppressed by the tag rules, if there are any and a report has come due.
+     */
+    private void reportSuppressedIfDue() {
+
+        if (rateLimiter == null || System.nanoTime() - nextSuppressedReport < 0) {
+
+            return;
+        }
+
+        nextSuppressedReport = System.nanoTime() + suppressedReportIntervalNanos;
+
+        reportSuppressed();
+    }
+
+    /**
+     * Writes a warning for each tag with the number of messages suppressed by its rules since the last report.
+     */
+    private void reportSuppressed() {
+
+        if (rateLimiter == null) {
+
+            return;
+        }
+
+        for (CRDLogRateLimiter.TagState state : rateLimiter.states()) {
+
+            long count = state.suppressed.getAndSet(0);
+            if (count == 0) {
+
+                continue;
+            }
+
+            suppressedEvent.timestamp = System.currentTimeMillis();
+            suppressedEvent.level = CRDLogLevel.WARN;
+            suppressedEvent.tag = CRDLog.class.getSimpleName();
+            suppressedEvent.message = count + (count == 1 ? " message" : " messages") + " tagged " + state.tag + " suppressed by rate limiting or sampling.";
+            suppressedEvent.writeToFile = true;
+
+            process(suppressedEvent);
+
+            suppressedEvent.clear();
+        }
+
+        flush();
+    }
+
+    /**
+     * Writes the summaries of the repeated messages whose coalesce window has passed, if there are any.
+     */
+    private void writeRepeatsIfDue() {
+
+        if (coalescer == null || !coalescer.hasRepeats()) {
+
+            return;
+        }
+
+        writeRepeats(System.currentTimeMillis());
+    }
+
+    /**
+     * Writes the summaries of the repeated messages whose coalesce window has passed by the specified time.
+     *
+     * @param now The current time in milliseconds since the epoch, or Long.MAX_VALUE to write all the summaries.
+     */
+    private void writeRepeats(long now) {
+
+        while (coalescer.nextExpired(now, repeatEvent)) {
+
+            dispatch(repeatEvent);
+            repeatEvent.clear();
+        }
+
+        flush();
+    }
+
+    /**
+     * Counts a message dropped because the queue was full.
+     */
+    private void countDropped() {
+
+        dropped.incrementAndGet();
+
+        if (metrics != null) {
+
+            metrics.recordDropped();
+        }
+    }
+
+    /**
+     * Closes the segment currently written to and moves on to a new one, which gets its own header.
+     */
+    private void rotate() {
+
+        File closedSegment = segments.active();
+
+        writeTokenRun();
+
+        // The closed segment is never synced afterwards, so sync what is left of it now if syncing on a timer or by size.
+        if ((syncIntervalMillis > 0 || syncIntervalBytes > 0) && unsyncedBytes > 0) {
+
+            sync();
+        }
+
+        appender.close();
+        openAppender(segments.next());
+
+        if (compressor != null) {
+
+            compressor.compress(closedSegment);
+        }
+    }
+
+    /**
+     * Writes the run of the token index for the file currently written to that is still held in memory.
+     */
+    private void writeTokenRun() {
+
+        if (tokenIndex == null) {
+
+            return;
+        }
+
+        try {
+
+            tokenIndex.write(appenderFile, appender.size());
+
+        } catch (IOException exception) {
+
+            CRDLogPlatform.error(TAG, "Failed to write log token index.", exception);
+        }
+    }
+
+    /**
+     * Writes out and syncs what is left of the log file, then closes it, so the writer thread ends after the
+     * current batch.  Must be called on the writer thread.
+     */
+    private void closeNow() {
+
+        if (closed) {
+
+            return;
+        }
+
+        if (coalescer != null) {
+
+            writeRepeats(Long.MAX_VALUE);
+        }
+
+        reportSuppressed();
+        flush();
+
+        // A log that was never written to has no file to finish, and opening the appender would create one.
+        if (appenderFile.exists()) {
+
+            writeTokenRun();
+
+            if (unsyncedBytes > 0) {
+
+                sync();
+            }
+        }
+
+        appender.close();
+
+        if (compressor != null) {
+
+            compressor.shutdown();
+        }
+
+        // Let the reader thread end once the reads already queued up have run.
+        readerExecutor.shutdown();
+
+        for (CRDLogSinkWriter sinkWriter : sinkWriters) {
+
+            if (!sinkWriter.close(SINK_CLOSE_NANOS)) {
+
+                CRDLogPlatform.error(TAG, "Timed out closing log sink.", null);
+            }
+        }
+
+        closed = true;
+    }
+
+    /**
+     * Creates a writer for each sink in the specified settings.
+     *
+     * @param settings The {@link CRDLogSettings} for the log.
+     *
+     * @return The {@link CRDLogSinkWriter} of each sink, in the order they were added.
+     */
+    private static CRDLogSinkWriter[] createSinkWriters(CRDLogSettings settings) {
+
+        List<CRDLogSinkRegistration> registrations = settings.getSinkRegistrations();
+
+        CRDLogSinkWriter[] sinkWriters = new CRDLogSinkWriter[registrations.size()];
+        for (int i = 0; i < sinkWriters.length; i++) {
+
+            sinkWriters[i] = new CRDLogSinkWriter(registrations.get(i), settings.getSinkQueueCapacity(), settings.getMaxBatchSize());
+        }
+
+        return sinkWriters;
+    }
+
+    /**
+     * Opens an appender for the specified file, in the write mode of the log, as the one written to.
+     *
+     * @param file The {@link File} to append to.
+     */
+    private void openAppender(File file) {
+
+        appenderFile = file;
+
+        if (writeMode == CRDLogWriteMode.MEMORY_MAPPED) {
+
+            appender = new CRDLogMappedAppender(file, mappedChunkSize);
+
+        } else {
+
+            appender = new CRDLogFileAppender(file);
+        }
+
+        if (index != null) {
+
+            index.reset();
+        }
+
+        if (tokenIndex != null) {
+
+            tokenIndex.reset();
+        }
+
+        stackTraces.reset();
+
+        unsyncedBytes = 0;
+        syncRequested = false;
+    }
+
+    //endregion
+}
@@ -0,0 +1,2296 @@
+package com.chrisdisdero.crdlog;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link CRDLog} class, run on the JVM without Android.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public class CRDLogCoreTests {
+
+    //region Private members
+
+    /**
+     * The logging TAG for this class.
+     */
+    private static final String TAG = CRDLogCoreTests.class.getSimpleName();
+
+    /**
+     * The default time in milliseconds to wait for the log before timing out.
+     */
+    private static final long DEFAULT_TEST_TIMEOUT = 5000;
+
+    /**
+     * Temporary folder for the log files, deleted after each test.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    //endregion
+
+    //region Utility classes
+
+    /**
+     * Exception whose message fails to be had, as app code can on the writer thread.
+     */
+    static class FailingException extends RuntimeException {
+
+        /**
+         * The version of the serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String getMessage() {
+
+            throw new IllegalStateException("Message failure.");
+        }
+    }
+
+    /**
+     * Format message parameter that records the threads it is formatted on.
+     */
+    static class FormatRecorder {
+
+        /**
+         * The names of the threads the parameter was formatted on, in order.
+         */
+        final List<String> threads = new ArrayList<String>();
+
+        @Override
+        public synchronized String toString() {
+
+            threads.add(Thread.currentThread().getName());
+            return "recorded";
+        }
+
+        /**
+         * Gets the names of the threads the parameter was formatted on so far.
+         *
+         * @return The thread names, in order.
+         */
+        synchronized List<String> getThreads() {
+
+            return new ArrayList<String>(threads);
+        }
+    }
+
+    //endregion
+
+    //region Utility methods
+
+    /**
+     * Counts the matches to the specified pattern in the specified string.
+     *
+     * @param pattern The {@link Pattern} to search for in the string.
+     * @param string The string to search.
+     *
+     * @return The number of times the specified pattern is found in the string.
+     */
+    static int countMatches(Pattern pattern, String string) {
+
+        Matcher matcher = pattern.matcher(string);
+
+        int count = 0;
+        while (matcher.find()) {
+
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the content of the specified log, waiting for it.
+     *
+     * @param log The {@link CRDLog} to get the content of.
+     *
+     * @return The content of the log.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    static String getContent(CRDLog log) throws InterruptedException {
+
+        final AtomicReference<String> content = new AtomicReference<String>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        log.get(new CRDLogContentInterface() {
+
+            @Override
+            public void onLogContent(String logContent) {
+
+                content.set(logContent);
+                latch.countDown();
+            }
+        });
+
+        assertTrue("get timed out", latch.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+
+        return content.get();
+    }
+
+    /**
+     * Reads entries of the specified log with tail or range, waiting for them.
+     *
+     * @param log The {@link CRDLog} to read.
+     * @param count The number of entries to read from the end of the log, or -1 to read a range.
+     * @param fromMillis The start of the range, in milliseconds since the epoch, inclusive.
+     * @param toMillis The end of the range, in milliseconds since the epoch, exclusive.
+     *
+     * @return The entries read.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    static String readEntries(CRDLog log, int count, long fromMillis, long toMillis) throws InterruptedException {
+
+        final AtomicReference<String> content = new AtomicReference<String>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        CRDLogContentInterface completion = new CRDLogContentInterface() {
+
+            @Override
+            public void onLogContent(String logContent) {
+
+                content.set(logContent);
+                latch.countDown();
+            }
+        };
+
+        if (count >= 0) {
+
+            log.tail(count, completion);
+
+        } else {
+
+            log.range(fromMillis, toMillis, completion);
+        }
+
+        assertTrue("read timed out", latch.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+
+        return content.get();
+    }
+
+    /**
+     * Searches the specified log, waiting for the hits.
+     *
+     * @param log The {@link CRDLog} to search.
+     * @param query The words to search for.
+     *
+     * @return The text of the entries found, in the order logged.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    static List<String> search(CRDLog log, String query) throws InterruptedException {
+
+        final AtomicReference<List<CRDLogSearchHit>> hits = new AtomicReference<List<CRDLogSearchHit>>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        log.search(query, new CRDLogSearchInterface() {
+
+            @Override
+            public void onSearchResults(List<CRDLogSearchHit> searchHits) {
+
+                hits.set(searchHits);
+                latch.countDown();
+            }
+        });
+
+        assertTrue("search timed out", latch.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNotNull("hits null", hits.get());
+
+        List<String> entries = new ArrayList<String>();
+        for (CRDLogSearchHit hit : hits.get()) {
+
+            entries.add(hit.getEntry());
+        }
+
+        return entries;
+    }
+
+    /**
+     * Counts the messages the specified log content says were dropped.
+     *
+     * @param content The content of the log.
+     *
+     * @return The total number of messages dropped.
+     */
+    static int countDropped(String content) {
+
+        int dropped = 0;
+        Matcher matcher = Pattern.compile("(\\d+) messages? dropped").matcher(content);
+        while (matcher.find()) {
+
+            dropped += Integer.parseInt(matcher.group(1));
+        }
+
+        return dropped;
+    }
+
+    /**
+     * Logs the specified number of entries to a log whose console takes the specified time to print each message,
+     * so the writer thread falls behind, and measures how long the calls to log took.
+     *
+     * @param logFile The {@link File} of the log.
+     * @param policy The {@link CRDLogOverflowPolicy} of the log.
+     * @param queueCapacity The capacity of the queue of the log.
+     * @param loggedEntries The number of entries to log.
+     * @param printMillis The time in milliseconds the console takes to print each message.
+     *
+     * @return The total time in milliseconds the calls to log took.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    static long logToStalledWriter(File logFile, CRDLogOverflowPolicy policy, int queueCapacity, int loggedEntries, final long printMillis) throws InterruptedException {
+
+        CRDLogConsole slowConsole = new CRDLogConsole() {
+
+            @Override
+            public boolean print(CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+                try {
+
+                    Thread.sleep(printMillis);
+
+                } catch (InterruptedException exception) {
+
+                    Thread.currentThread().interrupt();
+                }
+
+                return true;
+            }
+        };
+
+        CRDLog log = new CRDLog(logFile, null, new CRDLogSettings().setConsole(slowConsole).setQueueCapacity(queueCapacity).setOverflowPolicy(policy));
+
+        try {
+
+            long start = System.nanoTime();
+            for (int i = 0; i < loggedEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    //endregion
+
+    //region Tests
+
+    @Test
+    public void testBasicLogging() throws Exception {
+
+        // Expected header to be written.
+        final String expectedHeader = "Header written";
+
+        // Total number of expected entries.
+        final int expectedEntries = 1000;
+
+        CRDLog log = new CRDLog(folder.newFile("basiclog.txt"), new CRDLogHeaderInterface() {
+
+            @Override
+            public String onProvideHeader() {
+
+                return expectedHeader + "\n";
+            }
+        });
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            // The content should have the header once and every entry, in the order logged.
+            String content = getContent(log);
+            assertEquals("unexpected header count", 1, countMatches(Pattern.compile(expectedHeader, Pattern.LITERAL), content));
+            assertEquals("unexpected entry count", expectedEntries, countMatches(Pattern.compile("\\(info\\) \\[" + TAG + "\\]: Log entry \\d+\\.\r\n"), content));
+            assertTrue("unexpected order", content.indexOf("Log entry 10.") < content.indexOf("Log entry 900."));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testRingBuffer() throws Exception {
+
+        // Number of slots in the ring, small so it wraps around many times.
+        final int capacity = 8;
+
+        // Number of producer threads publishing at once.
+        final int producerCount = 4;
+
+        // Number of events published by each producer.
+        final int eventsPerProducer = 10000;
+
+        final CRDLogRingBuffer ring = new CRDLogRingBuffer(capacity);
+
+        // A full ring refuses claims until the consumer releases a slot.
+        for (int i = 0; i < capacity; i++) {
+
+            assertEquals("unexpected claimed sequence", i, ring.tryClaim());
+            ring.publish(i);
+        }
+
+        assertEquals("claimed past capacity", -1, ring.tryClaim());
+        assertEquals("unexpected available sequence", capacity - 1, ring.available(ring.next(), Long.MAX_VALUE));
+        ring.release(capacity - 1);
+        assertEquals("unexpected size", 0, ring.size());
+
+        Thread[] producers = new Thread[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+
+            final int producer = p;
+            producers[p] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    for (int i = 0; i < eventsPerProducer; i++) {
+
+                        long sequence;
+                        while ((sequence = ring.tryClaim()) < 0) {
+
+                            ring.waitForRoom();
+                        }
+
+                        CRDLogEvent event = ring.get(sequence);
+                        event.size = producer;
+                        event.timestamp = i;
+                        ring.publish(sequence);
+                    }
+                }
+            });
+
+            producers[p].start();
+        }
+
+        // Each producer's events come out in the order published, and none is lost or seen twice.
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEFAULT_TEST_TIMEOUT);
+        long[] nextExpected = new long[producerCount];
+        int received = 0;
+        while (received < producerCount * eventsPerProducer) {
+
+            long first = ring.next();
+            if (!ring.await(first, TimeUnit.MILLISECONDS.toNanos(1))) {
+
+                // The wait can end early without the event, as it does for the writer thread, so just wait again.
+                assertTrue("consumer timed out", System.nanoTime() < deadline);
+                continue;
+            }
+
+            long last = ring.available(first, first + capacity - 1);
+            for (long sequence = first; sequence <= last; sequence++) {
+
+                CRDLogEvent event = ring.get(sequence);
+                assertEquals("unexpected event order", nextExpected[event.size], event.timestamp);
+                nextExpected[event.size]++;
+                received++;
+            }
+
+            ring.release(last);
+        }
+
+        for (Thread producer : producers) {
+
+            producer.join(DEFAULT_TEST_TIMEOUT);
+        }
+
+        for (int p = 0; p < producerCount; p++) {
+
+            assertEquals("unexpected event count", eventsPerProducer, nextExpected[p]);
+        }
+
+        assertEquals("unexpected size", 0, ring.size());
+
+        // A producer can take the oldest message off a full ring to make room, ahead of the consumer.
+        CRDLogEvent taken = new CRDLogEvent();
+        long first = ring.next();
+        for (int i = 0; i < capacity; i++) {
+
+            long sequence = ring.tryClaim();
+            ring.get(sequence).clear();
+            ring.get(sequence).size = i + 1;
+            ring.publish(sequence);
+        }
+
+        assertEquals("unexpected size taken", 1, ring.takeOldest());
+        assertTrue("no room after taking oldest", ring.tryClaim() >= 0);
+        assertFalse("consumer took event taken by producer", ring.take(first, taken));
+        assertTrue("consumer missed next event", ring.take(first + 1, taken));
+        assertEquals("unexpected event taken", 2, taken.size);
+
+        // A command is never taken by a producer.
+        ring.get(first + 2).command = new Runnable() {
+
+            @Override
+            public void run() {
+
+            }
+        };
+
+        assertEquals("command taken by producer", -1, ring.takeOldest());
+    }
+
+    @Test
+    public void testTimestampEncoder() throws Exception {
+
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+
+        try {
+
+            // A time zone with daylight saving time, so the times rendered cross its changes.
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+
+            SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd-yyyy HH:mm:ss.SSS", Locale.US);
+            CRDLogTimestampEncoder encoder = new CRDLogTimestampEncoder();
+
+            // Times within the same second, across seconds, before the epoch and around the daylight saving changes.
+            long[] starts = { 0, -1500, 1489302000000L - 2000, 1509858000000L - 2000, 1508000000999L, System.currentTimeMillis() };
+            for (long start : starts) {
+
+                for (long time = start; time < start + 5000; time += 7) {
+
+                    String expected = dateFormat.format(new Date(time));
+                    assertEquals("unexpected timestamp", expected, new String(encoder.encode(time)));
+                    assertEquals("unexpected decoded time", dateFormat.parse(expected).getTime(), encoder.decode(expected, 0));
+                }
+            }
+
+            // A change of the default time zone is picked up, as a new date format would.
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+            dateFormat = new SimpleDateFormat("MM-dd-yyyy HH:mm:ss.SSS", Locale.US);
+            long time = starts[starts.length - 1] + 60000;
+            assertEquals("time zone change missed", dateFormat.format(new Date(time)), new String(encoder.encode(time)));
+
+            // Text that isn't a timestamp doesn't decode.
+            assertEquals("decoded invalid timestamp", Long.MIN_VALUE, encoder.decode("13-45-2017 nonsense text", 0));
+            assertEquals("decoded short timestamp", Long.MIN_VALUE, encoder.decode("01-02-2017", 0));
+
+        } finally {
+
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    public void testLevelGating() throws Exception {
+
+        FormatRecorder recorder = new FormatRecorder();
+
+        CRDLog log = new CRDLog(folder.newFile("levellog.txt"), null);
+
+        try {
+
+            log.setLevel(CRDLogLevel.WARN);
+            assertEquals("unexpected level", CRDLogLevel.WARN, log.getLevel());
+
+            // Messages below the level are dropped before they are formatted.
+            log.debug(TAG, "Debug entry %s.", recorder);
+            log.info(TAG, "Info entry %s.", recorder);
+            log.info(TAG, new IllegalStateException("Info failure."));
+
+            // Messages at or above it are formatted on the writer thread rather than the calling one.
+            log.warn(TAG, "Warn entry %s.", recorder);
+            log.error(TAG, "Error entry %s.", recorder);
+
+            String content = getContent(log);
+            assertFalse("debug entry written", content.contains("Debug entry"));
+            assertFalse("info entry written", content.contains("Info entry"));
+            assertFalse("info failure written", content.contains("Info failure."));
+            assertTrue("missing warn entry", content.contains("Warn entry recorded."));
+            assertTrue("missing error entry", content.contains("Error entry recorded."));
+
+            List<String> threads = recorder.getThreads();
+            assertEquals("unexpected format count", 2, threads.size());
+            assertEquals("formatted on calling thread", "CRDLog", threads.get(0));
+            assertEquals("formatted on calling thread", "CRDLog", threads.get(1));
+
+        } finally {
+
+            log.close();
+        }
+
+        // With the arguments snapshotted, a mutable parameter is formatted on the calling thread instead.
+        FormatRecorder snapshotRecorder = new FormatRecorder();
+
+        log = new CRDLog(folder.newFile("snapshotargslog.txt"), null, new CRDLogSettings().setSnapshotArguments(true));
+
+        try {
+
+            log.info(TAG, "Snapshot entry %s %d.", snapshotRecorder, 1);
+
+            // A malformed format is written as is, the same as when formatted on the writer thread.
+            log.info(TAG, "Malformed entry %d.", snapshotRecorder);
+
+            String content = getContent(log);
+            assertTrue("missing snapshot entry", content.contains("Snapshot entry recorded 1."));
+            assertTrue("missing malformed entry", content.contains("Malformed entry %d."));
+            assertEquals("unexpected format thread", Thread.currentThread().getName(), snapshotRecorder.getThreads().get(0));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testMemoryMapped() throws Exception {
+
+        // Total number of expected entries, enough to remap the window many times.
+        final int expectedEntries = 1000;
+
+        // The size by which the mapped window grows.
+        final int chunkSize = 4096;
+
+        File logFile = folder.newFile("mappedlog.txt");
+        CRDLogSettings settings = new CRDLogSettings().setWriteMode(CRDLogWriteMode.MEMORY_MAPPED).setMappedChunkSize(chunkSize);
+        CRDLog log = new CRDLog(logFile, null, settings);
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            String content = getContent(log);
+            assertEquals("unexpected entry count", expectedEntries, countMatches(Pattern.compile("\\(info\\) \\[" + TAG + "\\]: Log entry \\d+\\.\r\n"), content));
+            assertFalse("zero padding in content", content.contains("\u0000"));
+
+        } finally {
+
+            log.close();
+        }
+
+        // Closing gives back the unused end of the window, so the file is only its content.
+        long contentLength = logFile.length();
+        byte[] bytes = Files.readAllBytes(logFile.toPath());
+        assertTrue("zero padding left after close", bytes[bytes.length - 1] != 0);
+
+        // A crash leaves the file padded with zeros to the end of the window.
+        CRDLogMappedAppender crashed = new CRDLogMappedAppender(logFile, chunkSize);
+        assertEquals("unexpected size on open", contentLength, crashed.size());
+        crashed.write(ByteBuffer.wrap("Written before crash.\r\n".getBytes("UTF-8")));
+        crashed.sync();
+        assertTrue("file not padded", logFile.length() > crashed.size());
+        long crashedLength = crashed.size();
+
+        // The padding is trimmed when the file is opened again, and new content goes after the last written.
+        CRDLogMappedAppender reopened = new CRDLogMappedAppender(logFile, chunkSize);
+        assertEquals("padding not trimmed", crashedLength, reopened.size());
+        reopened.close();
+        crashed.close();
+
+        // Pad the file again as a crash would, for the log to trim when it opens it.
+        RandomAccessFile padded = new RandomAccessFile(logFile, "rw");
+        padded.setLength(crashedLength + chunkSize);
+        padded.close();
+
+        log = new CRDLog(logFile, null, settings);
+
+        try {
+
+            log.info(TAG, "Log entry after crash.");
+
+            String content = getContent(log);
+            assertFalse("zero padding in content", content.contains("\u0000"));
+            assertEquals("unexpected entry count", expectedEntries + 1, countMatches(Pattern.compile("Log entry \\d+\\.|Log entry after crash\\."), content));
+            assertTrue("unexpected order", content.indexOf("Written before crash.") < content.indexOf("Log entry after crash."));
+
+        } finally {
+
+            log.close();
+        }
+
+        bytes = Files.readAllBytes(logFile.toPath());
+        assertEquals("zero padding left after close", -1, new String(bytes, "UTF-8").indexOf('\u0000'));
+    }
+
+    @Test
+    public void testNonAsciiContent() throws Exception {
+
+        // Entry with accented letters, characters outside the Basic Multilingual Plane and other scripts.
+        final String expectedEntry = "Grüße aus Zürich 😀 日本語";
+
+        CRDLog log = new CRDLog(folder.newFile("utf8log.txt"), null);
+
+        try {
+
+            log.info(TAG, expectedEntry);
+
+            // The content reads back as written, whatever the default character set of the platform.
+            assertTrue("unexpected entry", getContent(log).contains("[" + TAG + "]: " + expectedEntry + "\r\n"));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testUtf8Encoding() throws Exception {
+
+        // Strings with surrogate pairs, unpaired surrogates at the start, middle and end, and every encoded length.
+        final String[] strings = new String[] {
+                "",
+                "Plain ASCII entry.",
+                "Grüße aus Zürich 😀 日本語",
+                "😀😀 pair then \uD83D high alone",
+                "low alone \uDE00 then pair 😀",
+                "\uDE00\uD83D reversed pair",
+                "ends with high \uD83D",
+                "\uD83D\uD83D😀 two highs",
+                "\u007F\u0080\u07FF\u0800\uFFFF\uD7FF\uE000 boundaries"
+        };
+
+        Charset utf8 = Charset.forName("UTF-8");
+        CRDLogByteBuffer buffer = new CRDLogByteBuffer(4);
+
+        StringBuilder builder = new StringBuilder();
+        for (String string : strings) {
+
+            buffer.clear();
+            buffer.writeUtf8(string);
+
+            // The bytes and their length match those of String.getBytes() for each string.
+            byte[] expected = string.getBytes(utf8);
+            assertArrayEquals("unexpected bytes for " + string, expected, Arrays.copyOf(buffer.array(), buffer.size()));
+            assertEquals("unexpected length for " + string, expected.length, CRDLogByteBuffer.utf8Length(string));
+
+            builder.append(string);
+        }
+
+        // A long string, which grows the buffer, matches too.
+        for (int i = 0; i < 8; i++) {
+
+            builder.append(builder);
+        }
+
+        String string = builder.toString();
+
+        buffer.clear();
+        buffer.writeUtf8(string);
+
+        assertArrayEquals("unexpected bytes for long string", string.getBytes(utf8), Arrays.copyOf(buffer.array(), buffer.size()));
+    }
+
+    @Test
+    public void testRollingSegments() throws Exception {
+
+        // Expected header to be written at the start of each segment.
+        final String expectedHeader = "Header written";
+
+        // Total number of expected entries.
+        final int expectedEntries = 500;
+
+        // Maximum number of segments kept.
+        final int maxSegmentCount = 3;
+
+        File segmentDir = folder.newFolder("segments");
+        CRDLog log = new CRDLog(new File(segmentDir, "segmentlog.txt"), new CRDLogHeaderInterface() {
+
+            @Override
+            public String onProvideHeader() {
+
+                return expectedHeader + "\n";
+            }
+
+        }, new CRDLogSettings().setMaxSegmentSize(4096).setMaxSegmentCount(maxSegmentCount));
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            // Only the newest segments are kept, each with a header, and read back oldest first.
+            String content = getContent(log);
+            String[] segmentNames = segmentDir.list();
+            assertNotNull("no segments", segmentNames);
+            assertEquals("unexpected segment count", maxSegmentCount, segmentNames.length);
+            assertEquals("unexpected header count", maxSegmentCount, countMatches(Pattern.compile(expectedHeader, Pattern.LITERAL), content));
+            assertTrue("missing last entry", content.contains("Log entry " + (expectedEntries - 1) + "."));
+            assertFalse("unexpected first entry", content.contains("Log entry 0."));
+
+            Matcher matcher = Pattern.compile("Log entry (\\d+)\\.").matcher(content);
+            int previous = -1;
+            while (matcher.find()) {
+
+                int entry = Integer.parseInt(matcher.group(1));
+                assertEquals("unexpected order", previous < 0 ? entry : previous + 1, entry);
+                previous = entry;
+            }
+
+            // Clearing the log deletes every segment.
+            log.clear();
+            assertNull("log not empty after clear", getContent(log));
+            assertEquals("segments left after clear", 0, segmentDir.list().length);
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testCompressedSegments() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 1000;
+
+        // Maximum number of segments kept.
+        final int maxSegmentCount = 50;
+
+        File segmentDir = folder.newFolder("compressed");
+        CRDLog log = new CRDLog(new File(segmentDir, "compressedlog.txt"), null, new CRDLogSettings()
+                .setIndexInterval(512)
+                .setMaxSegmentSize(4096)
+                .setMaxSegmentCount(maxSegmentCount)
+                .setCompressClosedSegments(true));
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            assertTrue("flushAndWait timed out", log.flushAndWait(DEFAULT_TEST_TIMEOUT));
+
+            // Wait for every closed segment to be compressed, leaving only the one written to uncompressed.
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEFAULT_TEST_TIMEOUT);
+            int compressedCount = 0;
+            while (true) {
+
+                int segmentCount = 0;
+                compressedCount = 0;
+                for (String name : segmentDir.list()) {
+
+                    // Leave out the indexes kept alongside the segments.
+                    if (name.endsWith(CRDLogIndex.EXTENSION)) {
+
+                        continue;
+                    }
+
+                    segmentCount++;
+                    compressedCount += name.endsWith(".gz") ? 1 : 0;
+                }
+
+                if (compressedCount == segmentCount - 1) {
+
+                    break;
+                }
+
+                assertTrue("compression timed out", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+
+            assertTrue("no segment compressed", compressedCount > 1);
+
+            // Each compressed segment is a complete gzip file.
+            for (File file : segmentDir.listFiles()) {
+
+                if (!file.getName().endsWith(".gz")) {
+
+                    continue;
+                }
+
+                InputStream inputStream = new GZIPInputStream(new FileInputStream(file));
+
+                try {
+
+                    ByteArrayOutputStream segment = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    int count;
+                    while ((count = inputStream.read(buffer)) > 0) {
+
+                        segment.write(buffer, 0, count);
+                    }
+
+                    assertTrue("empty compressed segment", new String(segment.toByteArray(), "UTF-8").contains("Log entry "));
+
+                } finally {
+
+                    inputStream.close();
+                }
+            }
+
+            // The content reads back through the compressed segments, whole and in order.
+            String content = getContent(log);
+            Matcher matcher = Pattern.compile("Log entry (\\d+)\\.").matcher(content);
+            int expected = 0;
+            while (matcher.find()) {
+
+                assertEquals("unexpected entry", expected, Integer.parseInt(matcher.group(1)));
+                expected++;
+            }
+
+            assertEquals("unexpected entry count", expectedEntries, expected);
+
+            // The end of the log reads back through the compressed segments too, in order.
+            final int tailEntries = 200;
+            matcher = Pattern.compile("Log entry (\\d+)\\.").matcher(readEntries(log, tailEntries, 0, 0));
+            expected = expectedEntries - tailEntries;
+            while (matcher.find()) {
+
+                assertEquals("unexpected tail entry", expected, Integer.parseInt(matcher.group(1)));
+                expected++;
+            }
+
+            assertEquals("unexpected tail end", expectedEntries, expected);
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testStreamingRead() throws Exception {
+
+        // Expected header to be written.
+        final String expectedHeader = "Header written";
+
+        // Total number of expected entries.
+        final int expectedEntries = 500;
+
+        CRDLog log = new CRDLog(folder.newFile("streamlog.txt"), new CRDLogHeaderInterface() {
+
+            @Override
+            public String onProvideHeader() {
+
+                return expectedHeader + "\n";
+            }
+        });
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            final AtomicReference<String> content = new AtomicReference<String>();
+            final CountDownLatch done = new CountDownLatch(1);
+
+            log.getStream(new CRDLogStreamInterface() {
+
+                @Override
+                public void onLogStream(InputStream logStream) {
+
+                    // Copy the stream, which is only valid until we return.
+                    ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[1024];
+                    int count;
+
+                    try {
+
+                        while ((count = logStream.read(buffer)) > 0) {
+
+                            streamed.write(buffer, 0, count);
+                        }
+
+                        content.set(new String(streamed.toByteArray(), "UTF-8"));
+
+                    } catch (IOException exception) {
+
+                        // Leave the content unset, which fails the test below.
+                    }
+
+                    done.countDown();
+                }
+            });
+
+            assertTrue("stream timed out", done.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+
+            // The stream holds the header once and every entry, with the line endings as written.
+            assertNotNull("content null", content.get());
+            assertEquals("unexpected header count", 1, countMatches(Pattern.compile(expectedHeader, Pattern.LITERAL), content.get()));
+            assertEquals("unexpected entry count", expectedEntries, countMatches(Pattern.compile("\\[" + TAG + "\\]: Log entry \\d+\\.\r\n"), content.get()));
+            assertEquals("streamed content differs", getContent(log), content.get().replace(expectedHeader + "\n", expectedHeader + "\r\n"));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testBinaryFormat() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 500;
+
+        CRDLog textLog = new CRDLog(folder.newFile("textlog.txt"), null);
+        CRDLog binaryLog = new CRDLog(folder.newFile("binarylog.txt"), null, new CRDLogSettings().setLogFormat(CRDLogFormat.BINARY));
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                textLog.warn(TAG, "Log entry %d of %s.", i, "binary");
+                binaryLog.warn(TAG, "Log entry %d of %s.", i, "binary");
+            }
+
+            // The binary log should read back as the same entries as the text log, timestamps aside.
+            Pattern timestamp = Pattern.compile("^\\S+ \\S+ ", Pattern.MULTILINE);
+            String textContent = timestamp.matcher(getContent(textLog)).replaceAll("");
+            String binaryContent = timestamp.matcher(getContent(binaryLog)).replaceAll("");
+            assertEquals("unexpected content", textContent, binaryContent);
+
+        } finally {
+
+            textLog.close();
+            binaryLog.close();
+        }
+    }
+
+    @Test
+    public void testConsole() throws Exception {
+
+        // The messages printed to the console.
+        final List<String> printed = new ArrayList<String>();
+
+        // Console that prints everything but only has errors written to the log file.
+        CRDLogConsole console = new CRDLogConsole() {
+
+            @Override
+            public boolean print(CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+                synchronized (printed) {
+
+                    printed.add(level + " " + message);
+                }
+
+                return level == CRDLogLevel.ERROR;
+            }
+        };
+
+        // Without a console set, a plain Java process prints to its standard output.
+        assertTrue("unexpected default console", new CRDLogSettings().getConsole() instanceof CRDLogStandardConsole);
+
+        CRDLog log = new CRDLog(folder.newFile("consolelog.txt"), null, new CRDLogSettings().setConsole(console));
+
+        try {
+
+            log.info(TAG, "Info entry.");
+            log.error(TAG, "Error entry.");
+            log.error(TAG, new IllegalStateException("Failure entry."));
+
+            String content = getContent(log);
+            assertEquals("unexpected info count", 0, countMatches(Pattern.compile("Info entry.", Pattern.LITERAL), content));
+            assertEquals("unexpected error count", 1, countMatches(Pattern.compile("Error entry.", Pattern.LITERAL), content));
+            assertEquals("unexpected failure count", 1, countMatches(Pattern.compile("IllegalStateException: Failure entry.", Pattern.LITERAL), content));
+
+            synchronized (printed) {
+
+                assertEquals("unexpected printed count", 3, printed.size());
+                assertEquals("unexpected printed message", "INFO Info entry.", printed.get(0));
+                assertEquals("unexpected printed message", "ERROR Error entry.", printed.get(1));
+            }
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testConsoleFailure() throws Exception {
+
+        // Console that throws on the first message it prints and on every message about a failure.
+        CRDLogConsole failingConsole = new CRDLogConsole() {
+
+            /**
+             * Flag indicating that the console has already thrown once.
+             */
+            private boolean hasThrown = false;
+
+            @Override
+            public boolean print(CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+                if (!hasThrown || message.contains("Failing")) {
+
+                    hasThrown = true;
+                    throw new IllegalStateException("Console failure.");
+                }
+
+                return true;
+            }
+        };
+
+        CRDLog log = new CRDLog(folder.newFile("consolefailurelog.txt"), null, new CRDLogSettings().setConsole(failingConsole).setQueueCapacity(16));
+
+        try {
+
+            log.info(TAG, "First entry.");
+            log.info(TAG, "Failing entry.");
+
+            // The writer thread carries on, so the queue keeps draining well past its capacity.
+            for (int i = 0; i < 100; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            assertTrue("flushAndWait timed out", log.flushAndWait(DEFAULT_TEST_TIMEOUT));
+
+            // The messages the console failed on are still written to the log file.
+            String content = getContent(log);
+            assertTrue("missing first entry", content.contains("First entry."));
+            assertTrue("missing failing entry", content.contains("Failing entry."));
+            assertEquals("unexpected entry count", 100, countMatches(Pattern.compile("Log entry \\d+\\."), content));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testTailAndRange() throws Exception {
+
+        // Number of entries logged in each of two batches, logged apart in time.
+        final int batchEntries = 1000;
+
+        // Number of entries to get from the end of the log.
+        final int tailEntries = 10;
+
+        // Indexed every 1 KB, over segments of 16 KB, so reads go through several index points and files.
+        CRDLog log = new CRDLog(new File(folder.newFolder("indexed"), "indexedlog.txt"), null, new CRDLogSettings()
+                .setIndexInterval(1024)
+                .setMaxSegmentSize(16384)
+                .setMaxSegmentCount(100));
+
+        try {
+
+            long startTime = System.currentTimeMillis();
+            for (int i = 0; i < batchEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            Thread.sleep(50);
+            long middleTime = System.currentTimeMillis();
+            Thread.sleep(50);
+
+            for (int i = batchEntries; i < batchEntries * 2; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            Thread.sleep(50);
+            long endTime = System.currentTimeMillis();
+
+            // The tail is exactly the last entries, oldest first.
+            String tail = readEntries(log, tailEntries, 0, 0);
+            assertNotNull("tail null", tail);
+            assertEquals("unexpected tail count", tailEntries, countMatches(Pattern.compile("\r\n", Pattern.LITERAL), tail));
+            for (int i = batchEntries * 2 - tailEntries; i < batchEntries * 2; i++) {
+
+                assertTrue("missing tail entry", tail.contains("Log entry " + i + "."));
+            }
+
+            assertTrue("unexpected tail order", tail.indexOf("Log entry " + (batchEntries * 2 - 2) + ".") < tail.indexOf("Log entry " + (batchEntries * 2 - 1) + "."));
+
+            // A tail longer than the log is the whole log.
+            assertEquals("unexpected full tail count", batchEntries * 2, countMatches(Pattern.compile("Log entry \\d+\\."), readEntries(log, batchEntries * 3, 0, 0)));
+
+            // Each range holds exactly the entries logged within it.
+            String all = readEntries(log, -1, startTime, Long.MAX_VALUE);
+            assertEquals("unexpected range count", batchEntries * 2, countMatches(Pattern.compile("Log entry \\d+\\."), all));
+
+            String first = readEntries(log, -1, startTime, middleTime);
+            assertEquals("unexpected first range count", batchEntries, countMatches(Pattern.compile("Log entry \\d+\\."), first));
+            assertTrue("missing first range entry", first.contains("Log entry 0."));
+            assertFalse("unexpected first range entry", first.contains("Log entry " + batchEntries + "."));
+
+            String second = readEntries(log, -1, middleTime, endTime);
+            assertEquals("unexpected second range count", batchEntries, countMatches(Pattern.compile("Log entry \\d+\\."), second));
+            assertTrue("missing second range entry", second.contains("Log entry " + batchEntries + "."));
+
+            assertEquals("unexpected empty range count", 0, countMatches(Pattern.compile("Log entry \\d+\\."), readEntries(log, -1, endTime, Long.MAX_VALUE)));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testTailAndSearch() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 2000;
+
+        // Every how many entries one is an error.
+        final int errorEvery = 100;
+
+        CRDLog log = new CRDLog(folder.newFile("searchlog.txt"), null, new CRDLogSettings().setSearchIndexEnabled(true));
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                if (i % errorEvery == 0) {
+
+                    log.error(TAG, "Payment %d declined.", i);
+
+                } else {
+
+                    log.info(TAG, "Payment %d accepted.", i);
+                }
+            }
+
+            // The tail should be the last entries logged.
+            final AtomicReference<String> tail = new AtomicReference<String>();
+            final CountDownLatch tailLatch = new CountDownLatch(1);
+            log.tail(10, new CRDLogContentInterface() {
+
+                @Override
+                public void onLogContent(String logContent) {
+
+                    tail.set(logContent);
+                    tailLatch.countDown();
+                }
+            });
+
+            assertTrue("tail timed out", tailLatch.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+            assertEquals("unexpected tail count", 10, countMatches(Pattern.compile("Payment \\d+ accepted\\."), tail.get()));
+            assertEquals("unexpected tail entry", 1, countMatches(Pattern.compile("Payment " + (expectedEntries - 1) + " accepted.", Pattern.LITERAL), tail.get()));
+
+            // The search should find every error, in the order logged.
+            final AtomicReference<List<CRDLogSearchHit>> hits = new AtomicReference<List<CRDLogSearchHit>>();
+            final CountDownLatch searchLatch = new CountDownLatch(1);
+            log.search("payment DECLINED", new CRDLogSearchInterface() {
+
+                @Override
+                public void onSearchResults(List<CRDLogSearchHit> searchHits) {
+
+                    hits.set(searchHits);
+                    searchLatch.countDown();
+                }
+            });
+
+            assertTrue("search timed out", searchLatch.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+            assertEquals("unexpected hit count", expectedEntries / errorEvery, hits.get().size());
+            for (int i = 0; i < hits.get().size(); i++) {
+
+                assertTrue("unexpected hit", hits.get().get(i).getEntry().contains(String.format("Payment %d declined.", i * errorEvery)));
+            }
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testMultilineEntries() throws Exception {
+
+        // Total number of entries logged, each with line breaks within its message.
+        final int expectedEntries = 100;
+
+        CRDLog log = new CRDLog(folder.newFile("multilinelog.txt"), null, new CRDLogSettings().setIndexInterval(512).setSearchIndexEnabled(true));
+
+        try {
+
+            long startTime = System.currentTimeMillis();
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                log.info(TAG, "Log entry %d first line.\r\nSecond line %d.\r\nThird line.", i, i);
+            }
+
+            // Each entry is read back whole, with the line breaks within its message.
+            String tail = readEntries(log, 2, 0, 0);
+            assertEquals("unexpected tail count", 2, countMatches(Pattern.compile("Log entry \\d+ first line\\.\r\nSecond line \\d+\\.\r\nThird line\\.\r\n"), tail));
+            assertTrue("missing last entry", tail.contains("Log entry " + (expectedEntries - 1) + " first line."));
+            assertFalse("unexpected earlier entry", tail.contains("Second line " + (expectedEntries - 3) + "."));
+
+            String range = readEntries(log, -1, startTime, Long.MAX_VALUE);
+            assertEquals("unexpected range count", expectedEntries, countMatches(Pattern.compile("Second line \\d+\\."), range));
+
+            List<String> hits = search(log, "second line 42");
+            assertEquals("unexpected hit count", 1, hits.size());
+            assertTrue("hit not whole", hits.get(0).contains("Log entry 42 first line.") && hits.get(0).endsWith("Third line.\r\n"));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+
+        // Total number of entries, enough for the token index to write several runs to disk.
+        final int expectedEntries = 5000;
+
+        // Every how many entries one holds the order number searched for.
+        final int orderEvery = 250;
+
+        CRDLog indexedLog = new CRDLog(new File(folder.newFolder("indexedsearch"), "searchlog.txt"), null, new CRDLogSettings().setMaxSegmentSize(65536).setMaxSegmentCount(100).setSearchIndexEnabled(true));
+        CRDLog unindexedLog = new CRDLog(new File(folder.newFolder("unindexedsearch"), "searchlog.txt"), null, new CRDLogSettings().setMaxSegmentSize(65536).setMaxSegmentCount(100));
+
+        try {
+
+            for (CRDLog log : new CRDLog[] { indexedLog, unindexedLog }) {
+
+                for (int i = 0; i < expectedEntries; i++) {
+
+                    if (i % orderEvery == 0) {
+
+                        log.warn(TAG, i % (orderEvery * 2) == 0 ? "Order #12345 retried %d." : "order-12345 failed %d.", i);
+
+                    } else {
+
+                        log.info(TAG, "Order %d shipped to warehouse %d.", i, i % 7);
+                    }
+                }
+            }
+
+            // Words match regardless of case and punctuation, and words of a single character are ignored.
+            List<String> hits = search(indexedLog, "ORDER 12345 a");
+            assertEquals("unexpected hit count", expectedEntries / orderEvery, hits.size());
+            for (int i = 0; i < hits.size(); i++) {
+
+                assertTrue("unexpected hit", hits.get(i).contains((i % 2 == 0 ? "Order #12345 retried " : "order-12345 failed ") + (i * orderEvery) + "."));
+            }
+
+            // The index finds the same entries as reading the whole log, whether on disk or still in memory.
+            Pattern timestamp = Pattern.compile("^\\S+ \\S+ ");
+            for (String query : new String[] { "order 12345", "failed", "warehouse shipped", "retried 4500", "missing", "WAREHOUSE 4999" }) {
+
+                List<String> expected = search(unindexedLog, query);
+                List<String> actual = search(indexedLog, query);
+                assertEquals("unexpected hit count for " + query, expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+
+                    assertEquals("unexpected hit for " + query, timestamp.matcher(expected.get(i)).replaceAll(""), timestamp.matcher(actual.get(i)).replaceAll(""));
+                }
+            }
+
+            assertEquals("unexpected hit count", 0, search(indexedLog, "missing").size());
+
+        } finally {
+
+            indexedLog.close();
+            unindexedLog.close();
+        }
+    }
+
+    @Test
+    public void testOverflowPolicy() throws Exception {
+
+        // Total number of entries logged.
+        final int loggedEntries = 5000;
+
+        // A tiny queue that drops the newest messages when full.
+        CRDLog log = new CRDLog(folder.newFile("overflowlog.txt"), null, new CRDLogSettings().setQueueCapacity(16).setOverflowPolicy(CRDLogOverflowPolicy.DROP_NEWEST));
+
+        try {
+
+            for (int i = 0; i < loggedEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            // Every entry is either in the log or counted as dropped.
+            String content = getContent(log);
+            assertEquals("unexpected entry count", loggedEntries, countMatches(Pattern.compile("Log entry \\d+\\."), content) + countDropped(content));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testDropOldestDoesNotWait() throws Exception {
+
+        // Total number of entries logged.
+        final int loggedEntries = 50;
+
+        // The capacity of the queue, much smaller than the number of entries.
+        final int queueCapacity = 4;
+
+        // The time the console takes to print each message, which holds up the writer thread.
+        final long printMillis = 20;
+
+        // Callers block behind the writer thread with BLOCK, but not with DROP_OLDEST.
+        File blockFile = folder.newFile("blocklog.txt");
+        long blockMillis = logToStalledWriter(blockFile, CRDLogOverflowPolicy.BLOCK, queueCapacity, loggedEntries, printMillis);
+        assertTrue("BLOCK did not wait: " + blockMillis + " ms", blockMillis >= (loggedEntries - queueCapacity * 2) * printMillis);
+
+        File dropOldestFile = folder.newFile("dropoldestlog.txt");
+        long dropOldestMillis = logToStalledWriter(dropOldestFile, CRDLogOverflowPolicy.DROP_OLDEST, queueCapacity, loggedEntries, printMillis);
+        assertTrue("DROP_OLDEST waited: " + dropOldestMillis + " ms", dropOldestMillis < printMillis * 5);
+
+        CRDLog log = new CRDLog(dropOldestFile, null);
+
+        try {
+
+            // The newest entries are kept, and the rest are counted as dropped.
+            String content = getContent(log);
+            int keptEntries = countMatches(Pattern.compile("Log entry \\d+\\."), content);
+            assertTrue("nothing dropped", keptEntries < loggedEntries);
+            assertEquals("unexpected entry count", loggedEntries, keptEntries + countDropped(content));
+            assertTrue("missing newest entry", content.contains("Log entry " + (loggedEntries - 1) + "."));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testDropOldestConcurrent() throws Exception {
+
+        // Number of threads logging at once.
+        final int threadCount = 4;
+
+        // Number of entries logged by each thread.
+        final int entriesPerThread = 5000;
+
+        final CRDLog log = new CRDLog(folder.newFile("dropconcurrentlog.txt"), null, new CRDLogSettings().setQueueCapacity(8).setOverflowPolicy(CRDLogOverflowPolicy.DROP_OLDEST));
+
+        try {
+
+            Thread[] threads = new Thread[threadCount];
+            for (int t = 0; t < threadCount; t++) {
+
+                final int thread = t;
+                threads[t] = new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        for (int i = 0; i < entriesPerThread; i++) {
+
+                            log.info(TAG, "Thread %d entry %d.", thread, i);
+                        }
+                    }
+                });
+
+                threads[t].start();
+            }
+
+            for (Thread thread : threads) {
+
+                thread.join();
+            }
+
+            // Each entry is either written once, in the order logged by its thread, or counted as dropped.
+            String content = getContent(log);
+            int[] lastEntry = new int[threadCount];
+            Arrays.fill(lastEntry, -1);
+            int keptEntries = 0;
+            Matcher matcher = Pattern.compile("Thread (\\d+) entry (\\d+)\\.").matcher(content);
+            while (matcher.find()) {
+
+                int thread = Integer.parseInt(matcher.group(1));
+                int entry = Integer.parseInt(matcher.group(2));
+                assertTrue("unexpected entry order", entry > lastEntry[thread]);
+                lastEntry[thread] = entry;
+                keptEntries++;
+            }
+
+            assertEquals("unexpected entry count", threadCount * entriesPerThread, keptEntries + countDropped(content));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testSyncPolicies() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 1000;
+
+        // Every how many entries one is an error.
+        final int errorEvery = 100;
+
+        // Synced on a timer, by size and after each error, in each write mode.
+        for (CRDLogWriteMode writeMode : CRDLogWriteMode.values()) {
+
+            CRDLog log = new CRDLog(folder.newFile("synclog-" + writeMode + ".txt"), null, new CRDLogSettings()
+                    .setWriteMode(writeMode)
+                    .setSyncIntervalMillis(10)
+                    .setSyncIntervalBytes(4096)
+                    .setSyncOnError(true));
+
+            try {
+
+                for (int i = 0; i < expectedEntries; i++) {
+
+                    if (i % errorEvery == 0) {
+
+                        log.error(TAG, "Log entry %d.", i);
+
+                    } else {
+
+                        log.info(TAG, "Log entry %d.", i);
+                    }
+                }
+
+                // Syncing loses or reorders nothing.
+                String content = getContent(log);
+                assertEquals("unexpected entry count", expectedEntries, countMatches(Pattern.compile("Log entry \\d+\\."), content));
+                assertTrue("unexpected order", content.indexOf("Log entry 998.") < content.indexOf("Log entry 999."));
+
+            } finally {
+
+                log.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFlushAndClose() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 1000;
+
+        File logFile = folder.newFile("closelog.txt");
+        CRDLog log = new CRDLog(logFile, null);
+
+        for (int i = 0; i < expectedEntries; i++) {
+
+            log.info(TAG, "Log entry %d.", i);
+        }
+
+        assertTrue("flushAndWait timed out", log.flushAndWait(DEFAULT_TEST_TIMEOUT));
+
+        log.close();
+
+        // Entries logged after closing are ignored.
+        log.info(TAG, "Log entry after close.");
+
+        CRDLog reopened = new CRDLog(logFile, null);
+
+        try {
+
+            String content = getContent(reopened);
+            assertEquals("unexpected entry count", expectedEntries, countMatches(Pattern.compile("Log entry \\d+\\."), content));
+            assertEquals("unexpected entry after close", 0, countMatches(Pattern.compile("Log entry after close.", Pattern.LITERAL), content));
+
+        } finally {
+
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 1000;
+
+        File logFile = folder.newFile("metricslog.txt");
+        CRDLog log = new CRDLog(logFile, null, new CRDLogSettings().setMetricsEnabled(true));
+
+        try {
+
+            // Metrics are only gathered when enabled.
+            CRDLog plainLog = new CRDLog(folder.newFile("plainlog.txt"), null);
+            assertNull("unexpected metrics", plainLog.getMetrics());
+            plainLog.close();
+
+            // Report the metrics every 10 ms.
+            final AtomicReference<CRDLogMetrics> reported = new AtomicReference<CRDLogMetrics>();
+            final CountDownLatch reportLatch = new CountDownLatch(1);
+            log.setMetricsListener(new CRDLogMetricsInterface() {
+
+                @Override
+                public void onLogMetrics(CRDLogMetrics metrics) {
+
+                    if (reported.compareAndSet(null, metrics)) {
+
+                        reportLatch.countDown();
+                    }
+                }
+            }, 10);
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            assertTrue("metrics report timed out", reportLatch.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+            assertNotNull("metrics report null", reported.get());
+
+            // Once everything is written, every entry is counted.
+            assertTrue("flushAndWait timed out", log.flushAndWait(DEFAULT_TEST_TIMEOUT));
+            CRDLogMetrics metrics = log.getMetrics();
+            assertNotNull("metrics null", metrics);
+            assertEquals("unexpected messages written", expectedEntries, metrics.getMessagesWritten());
+            assertEquals("unexpected messages dropped", 0, metrics.getMessagesDropped());
+            assertEquals("unexpected bytes written", logFile.length(), metrics.getBytesWritten());
+            assertEquals("unexpected enqueue count", expectedEntries, metrics.getEnqueueLatency().getCount());
+            assertTrue("unexpected peak queue depth", metrics.getPeakQueueDepth() >= 1);
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testSinks() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 1000;
+
+        // Every how many entries one is an error.
+        final int errorEvery = 100;
+
+        // The messages written to the filtered sink.
+        final List<String> errors = new ArrayList<String>();
+
+        // Sink that blocks until released, to show that it holds up nothing but itself.
+        final CountDownLatch release = new CountDownLatch(1);
+        CRDLogSink blockedSink = new CRDLogSink() {
+
+            @Override
+            public void write(long timestamp, CRDLogLevel level, String tag, String message, Throwable throwable) throws InterruptedIOException {
+
+                try {
+
+                    release.await();
+
+                } catch (InterruptedException exception) {
+
+                    throw new InterruptedIOException();
+                }
+            }
+
+            @Override
+            public void flush() {
+
+            }
+
+            @Override
+            public void close() {
+
+            }
+        };
+
+        // Sink that only receives errors with the test tag.
+        CRDLogSink errorSink = new CRDLogSink() {
+
+            @Override
+            public void write(long timestamp, CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+                synchronized (errors) {
+
+                    errors.add(message);
+                }
+            }
+
+            @Override
+            public void flush() {
+
+            }
+
+            @Override
+            public void close() {
+
+            }
+        };
+
+        CRDLogMemorySink memorySink = new CRDLogMemorySink(10);
+
+        CRDLog log = new CRDLog(folder.newFile("sinklog.txt"), null, new CRDLogSettings()
+                .setSinkQueueCapacity(2048)
+                .addSink(blockedSink)
+                .addSink(errorSink, CRDLogLevel.ERROR, TAG)
+                .addSink(memorySink));
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                if (i % errorEvery == 0) {
+
+                    log.error(TAG, "Log entry %d.", i);
+                    log.error("Other", "Other entry %d.", i);
+
+                } else {
+
+                    log.info(TAG, "Log entry %d.", i);
+                }
+            }
+
+            // The log file is written even though one of the sinks is blocked.
+            assertTrue("flushAndWait timed out", log.flushAndWait(DEFAULT_TEST_TIMEOUT));
+            assertEquals("unexpected entry count", expectedEntries, countMatches(Pattern.compile("\\[" + TAG + "\\]: Log entry \\d+\\."), getContent(log)));
+
+        } finally {
+
+            release.countDown();
+            log.close();
+        }
+
+        // The filtered sink got only the errors with the test tag.
+        synchronized (errors) {
+
+            assertEquals("unexpected error count", expectedEntries / errorEvery, errors.size());
+            assertEquals("unexpected error", "Log entry 0.", errors.get(0));
+        }
+
+        // The memory sink kept the last lines written.
+        List<String> lines = memorySink.getLines();
+        assertEquals("unexpected line count", 10, lines.size());
+        assertTrue("unexpected last line", lines.get(9).endsWith("[" + TAG + "]: Log entry " + (expectedEntries - 1) + ".\r\n"));
+    }
+
+    @Test
+    public void testFlightRecorder() throws Exception {
+
+        // Total number of expected entries.
+        final int expectedEntries = 1000;
+
+        // The number of entries held by the flight recorder.
+        final int recorderCapacity = 50;
+
+        // The entry logged as an error.
+        final int errorEntry = 500;
+
+        CRDLog log = new CRDLog(folder.newFile("flightlog.txt"), null, new CRDLogSettings().setFlightRecorderCapacity(recorderCapacity));
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                if (i == errorEntry) {
+
+                    log.error(TAG, "Log entry %d.", i);
+
+                } else {
+
+                    log.info(TAG, "Log entry %d.", i);
+                }
+            }
+
+            // Only the error and the entries just before it should be in the log file.
+            String content = getContent(log);
+            assertEquals("unexpected entry count", recorderCapacity + 1, countMatches(Pattern.compile("Log entry \\d+\\."), content));
+            assertTrue("missing first recorded entry", content.contains("Log entry " + (errorEntry - recorderCapacity) + "."));
+            assertFalse("unexpected entry before recorder", content.contains("Log entry " + (errorEntry - recorderCapacity - 1) + "."));
+            assertFalse("unexpected entry after error", content.contains("Log entry " + (errorEntry + 1) + "."));
+
+            // Dumping the flight recorder writes the entries held since the error.
+            log.dumpFlightRecorder();
+            content = getContent(log);
+            assertEquals("unexpected entry count after dump", recorderCapacity * 2 + 1, countMatches(Pattern.compile("Log entry \\d+\\."), content));
+            assertTrue("missing last entry", content.contains("Log entry " + (expectedEntries - 1) + "."));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testRateLimiting() throws Exception {
+
+        // Total number of entries logged on the limited tag.
+        final int loggedEntries = 1000;
+
+        // The number of entries let through at once on the limited tag.
+        final int burst = 5;
+
+        File file = folder.newFile("ratelog.txt");
+        CRDLog log = new CRDLog(file, null, new CRDLogSettings().setRateLimit("Limited", 0.001, burst));
+
+        try {
+
+            for (int i = 0; i < loggedEntries; i++) {
+
+                log.info("Limited", "Limited entry %d.", i);
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            // Errors are never suppressed.
+            log.error("Limited", "Limited error.");
+
+            // Only the burst gets through on the limited tag, while other tags are untouched.
+            String content = getContent(log);
+            assertEquals("unexpected limited entry count", burst, countMatches(Pattern.compile("Limited entry \\d+\\."), content));
+            assertEquals("unexpected entry count", loggedEntries, countMatches(Pattern.compile("Log entry \\d+\\."), content));
+            assertTrue("missing error", content.contains("Limited error."));
+
+        } finally {
+
+            log.close();
+        }
+
+        // Closing the log writes how many entries were suppressed.
+        log = new CRDLog(file, null, new CRDLogSettings());
+
+        try {
+
+            assertTrue("missing suppressed report", getContent(log).contains((loggedEntries - burst) + " messages tagged Limited suppressed"));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testRateLimitedDynamicTags() throws Exception {
+
+        // Number of distinct tags made up at runtime, well over the number tracked separately.
+        final int dynamicTags = CRDLogRateLimiter.MAX_DEFAULT_TAGS * 4;
+
+        CRDLogRateLimiter rateLimiter = CRDLogRateLimiter.create(new CRDLogSettings().setRateLimit("Limited", 0.001, 1).setDefaultRateLimit(100, 1));
+
+        for (int i = 0; i < dynamicTags; i++) {
+
+            rateLimiter.tryAcquire(CRDLogLevel.INFO, "Dynamic" + i);
+        }
+
+        // Only up to the limit of tags gets a state of its own, and the rest share one.
+        assertEquals("unexpected tracked tag count", CRDLogRateLimiter.MAX_DEFAULT_TAGS, rateLimiter.defaultTagCount());
+        assertEquals("unexpected state count", CRDLogRateLimiter.MAX_DEFAULT_TAGS + 2, rateLimiter.states().size());
+
+        // A tag with a rule of its own keeps its state.
+        assertTrue("limited tag not let through", rateLimiter.tryAcquire(CRDLogLevel.INFO, "Limited"));
+        assertFalse("limited tag let through", rateLimiter.tryAcquire(CRDLogLevel.INFO, "Limited"));
+
+        // Once the tracked tags have gone quiet, their states are dropped to make room for new tags.
+        Thread.sleep(1100);
+
+        assertTrue("new tag not let through", rateLimiter.tryAcquire(CRDLogLevel.INFO, "New"));
+        assertEquals("unexpected tracked tag count after going quiet", 1, rateLimiter.defaultTagCount());
+        assertFalse("new tag not tracked", rateLimiter.tryAcquire(CRDLogLevel.INFO, "New"));
+        assertFalse("limited tag let through after going quiet", rateLimiter.tryAcquire(CRDLogLevel.INFO, "Limited"));
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+
+        // Total number of times the entry is repeated.
+        final int repeatedEntries = 1000;
+
+        File file = folder.newFile("coalescelog.txt");
+        CRDLog log = new CRDLog(file, null, new CRDLogSettings().setCoalesceWindowMillis(60000));
+
+        try {
+
+            log.warn(TAG, "Repeated entry.");
+            for (int i = 0; i < repeatedEntries; i++) {
+
+                log.warn(TAG, "Repeated entry.");
+            }
+
+            log.info(TAG, "Other entry.");
+
+            // Only the first of the repeats is written while the window lasts.
+            String content = getContent(log);
+            assertEquals("unexpected repeated entry count", 1, countMatches(Pattern.compile("Repeated entry\\."), content));
+            assertTrue("missing other entry", content.contains("Other entry."));
+
+        } finally {
+
+            log.close();
+        }
+
+        // Closing the log writes the summary of the repeats.
+        log = new CRDLog(file, null, new CRDLogSettings());
+
+        try {
+
+            String content = getContent(log);
+            assertTrue("missing summary", content.contains("Message repeated " + repeatedEntries + " times in "));
+            assertTrue("summary before other entry", content.indexOf("Other entry.") < content.indexOf("Message repeated"));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testCoalescingInterleaved() throws Exception {
+
+        File file = folder.newFile("interleavedlog.txt");
+        CRDLog log = new CRDLog(file, null, new CRDLogSettings().setCoalesceWindowMillis(60000));
+
+        try {
+
+            // The repeat of the first entry comes after the other entry, so it isn't the last message written.
+            log.info(TAG, "First entry.");
+            log.info(TAG, "Other entry.");
+            log.info(TAG, "First entry.");
+
+        } finally {
+
+            log.close();
+        }
+
+        log = new CRDLog(file, null, new CRDLogSettings());
+
+        try {
+
+            String content = getContent(log);
+            assertEquals("unexpected first entry count", 1, countMatches(Pattern.compile("\\]: First entry\\."), content));
+            assertTrue("missing summary naming the message", Pattern.compile("Message repeated 1 time in \\d+ ms: First entry\\.").matcher(content).find());
+            assertFalse("summary pointing at the other entry", content.contains("Last message repeated"));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testCoalescingAfterClear() throws Exception {
+
+        CRDLog log = new CRDLog(folder.newFile("clearcoalescelog.txt"), null, new CRDLogSettings().setCoalesceWindowMillis(60000));
+
+        try {
+
+            log.info(TAG, "Cleared entry.");
+            log.info(TAG, "Cleared entry.");
+            log.clear();
+
+            // The entry is gone from the log, so its repeat is written again rather than summed up.
+            log.info(TAG, "Cleared entry.");
+
+            String content = getContent(log);
+            assertEquals("unexpected entry count after clear", 1, countMatches(Pattern.compile("Cleared entry\\."), content));
+            assertFalse("unexpected summary after clear", content.contains("repeated"));
+
+            log.info(TAG, "Drained entry.");
+
+            final CountDownLatch done = new CountDownLatch(1);
+            log.drain(new CRDLogDrainInterface() {
+
+                @Override
+                public void onLogDrained(List<File> logFiles) {
+
+                    done.countDown();
+                }
+            });
+
+            assertTrue("drain timed out", done.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+
+            // The entry is handed off with the drained files, so its repeat starts the new file.
+            log.info(TAG, "Drained entry.");
+
+            content = getContent(log);
+            assertEquals("unexpected entry count after drain", 1, countMatches(Pattern.compile("Drained entry\\."), content));
+            assertFalse("unexpected summary after drain", content.contains("repeated"));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testStackTraces() throws Exception {
+
+        // Total number of times the exception is logged.
+        final int loggedExceptions = 10;
+
+        CRDLog log = new CRDLog(folder.newFile("tracelog.txt"), null, new CRDLogSettings().setMaxStackTraceFrames(1));
+
+        try {
+
+            for (int i = 0; i < loggedExceptions; i++) {
+
+                log.error(TAG, new IllegalStateException("Exception " + i + ".", new IllegalArgumentException("Cause.")));
+            }
+
+            // The stack trace is written in full once, and referred to by its fingerprint after that.
+            String content = getContent(log);
+            Matcher matcher = Pattern.compile("\\[(#[0-9a-f]{16})\\] java.lang.IllegalStateException: Exception 0\\.").matcher(content);
+            assertTrue("missing full stack trace", matcher.find());
+            assertEquals("unexpected full stack trace count", 1, countMatches(Pattern.compile("Caused by: java.lang.IllegalArgumentException: Cause\\."), content));
+            assertEquals("unexpected reference count", loggedExceptions - 1, countMatches(Pattern.compile("\\[same stack trace as " + matcher.group(1) + "\\]"), content));
+            assertTrue("missing last exception", content.contains("Exception " + (loggedExceptions - 1) + "."));
+
+            // Only the first frame of the exception is written, and those of the cause are all in common with it.
+            assertEquals("unexpected frame count", 1, countMatches(Pattern.compile("\tat "), content));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testFailingStackTraces() throws Exception {
+
+        // Number of times the failing exception is logged, written in full once and referred to after that.
+        final int loggedExceptions = 2;
+
+        // Console that leaves the failing exception alone, so only the log file renders it.
+        CRDLogConsole quietConsole = new CRDLogConsole() {
+
+            @Override
+            public boolean print(CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+                return true;
+            }
+        };
+
+        CRDLog log = new CRDLog(folder.newFile("failingtracelog.txt"), null, new CRDLogSettings().setConsole(quietConsole));
+
+        try {
+
+            log.info(TAG, "First entry.");
+
+            for (int i = 0; i < loggedExceptions; i++) {
+
+                log.error(TAG, new FailingException());
+            }
+
+            log.info(TAG, "Last entry.");
+
+            assertTrue("flushAndWait timed out", log.flushAndWait(DEFAULT_TEST_TIMEOUT));
+
+            // The exception is written with its class name in place of its message, along with its stack frames.
+            String content = getContent(log);
+            assertTrue("missing first entry", content.contains("First entry."));
+            assertTrue("missing last entry", content.contains("Last entry."));
+            assertEquals("unexpected exception count", loggedExceptions, countMatches(Pattern.compile(Pattern.quote(FailingException.class.getName())), content));
+            assertTrue("missing stack frames", content.contains("testFailingStackTraces"));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testSnapshotReads() throws Exception {
+
+        // Number of entries logged before and after the read.
+        final int expectedEntries = 100;
+
+        CRDLog log = new CRDLog(folder.newFile("snapshotlog.txt"), null);
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            final AtomicReference<String> content = new AtomicReference<String>();
+            final CountDownLatch released = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(1);
+
+            // Hold up the read until the entries logged after it are written.
+            log.get(new CRDLogContentInterface() {
+
+                @Override
+                public void onLogContent(String logContent) {
+
+                    try {
+
+                        released.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS);
+
+                    } catch (InterruptedException exception) {
+
+                        Thread.currentThread().interrupt();
+                    }
+
+                    content.set(logContent);
+                    done.countDown();
+                }
+            });
+
+            for (int i = expectedEntries; i < expectedEntries * 2; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            // The entries logged after the read are written while it is still going on.
+            assertTrue("writes held up by read", log.flushAndWait(DEFAULT_TEST_TIMEOUT));
+            released.countDown();
+            assertTrue("read timed out", done.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+
+            // The read only sees the entries logged before it.
+            assertEquals("unexpected entry count in snapshot", expectedEntries, countMatches(Pattern.compile("Log entry \\d+\\."), content.get()));
+            assertEquals("unexpected entry count", expectedEntries * 2, countMatches(Pattern.compile("Log entry \\d+\\."), getContent(log)));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testSnapshotReadsOfDeletedFiles() throws Exception {
+
+        // Number of entries logged before the reads, and after them to roll over past the segments kept.
+        final int expectedEntries = 100;
+        final int laterEntries = 1000;
+
+        // Number of entries read from the end of the log.
+        final int tailEntries = 10;
+
+        File logFile = new File(folder.newFolder("deletedsnapshot"), "snapshotlog.txt");
+        CRDLog log = new CRDLog(logFile, null, new CRDLogSettings()
+                .setIndexInterval(1024)
+                .setSearchIndexEnabled(true)
+                .setMaxSegmentSize(4096)
+                .setMaxSegmentCount(3));
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            final AtomicReference<String> tail = new AtomicReference<String>();
+            final AtomicReference<String> range = new AtomicReference<String>();
+            final AtomicReference<List<CRDLogSearchHit>> hits = new AtomicReference<List<CRDLogSearchHit>>();
+            final CountDownLatch released = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(3);
+
+            // Hold up the reads until the files they were queued on are rolled over and cleared.
+            log.get(new CRDLogContentInterface() {
+
+                @Override
+                public void onLogContent(String logContent) {
+
+                    try {
+
+                        released.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS);
+
+                    } catch (InterruptedException exception) {
+
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+
+            log.tail(tailEntries, new CRDLogContentInterface() {
+
+                @Override
+                public void onLogContent(String logContent) {
+
+                    tail.set(logContent);
+                    done.countDown();
+                }
+            });
+
+            log.range(0, Long.MAX_VALUE, new CRDLogContentInterface() {
+
+                @Override
+                public void onLogContent(String logContent) {
+
+                    range.set(logContent);
+                    done.countDown();
+                }
+            });
+
+            log.search("log entry", new CRDLogSearchInterface() {
+
+                @Override
+                public void onSearchResults(List<CRDLogSearchHit> searchHits) {
+
+                    hits.set(searchHits);
+                    done.countDown();
+                }
+            });
+
+            for (int i = 0; i < laterEntries; i++) {
+
+                log.info(TAG, "Later entry %d.", i);
+            }
+
+            log.clear();
+
+            assertTrue("flushAndWait timed out", log.flushAndWait(DEFAULT_TEST_TIMEOUT));
+            released.countDown();
+            assertTrue("reads timed out", done.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+
+            // The reads see the files as they were when queued, though they are all gone since.
+            assertNotNull("tail null", tail.get());
+            assertEquals("unexpected tail count", tailEntries, countMatches(Pattern.compile("Log entry \\d+\\."), tail.get()));
+            assertTrue("missing last entry in tail", tail.get().contains("Log entry " + (expectedEntries - 1) + "."));
+
+            assertNotNull("range null", range.get());
+            int rangeEntries = countMatches(Pattern.compile("Log entry \\d+\\."), range.get());
+            assertTrue("missing entries in range", rangeEntries > tailEntries);
+            assertTrue("missing last entry in range", range.get().contains("Log entry " + (expectedEntries - 1) + "."));
+            assertFalse("later entry in range", range.get().contains("Later entry"));
+
+            assertNotNull("hits null", hits.get());
+            assertEquals("unexpected hit count", rangeEntries, hits.get().size());
+
+        } finally {
+
+            log.close();
+        }
+
+        // Reading a log that was never written to leaves no file behind.
+        File unwrittenFile = new File(folder.newFolder("unwritten"), "unwrittenlog.txt");
+        log = new CRDLog(unwrittenFile, null);
+
+        try {
+
+            assertNull("unexpected tail", readEntries(log, tailEntries, 0, 0));
+            assertFalse("log file created", unwrittenFile.exists());
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    @Test
+    public void testDrain() throws Exception {
+
+        // Expected header to be written at the start of each file.
+        final String expectedHeader = "Header written";
+
+        // Number of entries logged before and after the drain.
+        final int expectedEntries = 100;
+
+        File logFile = folder.newFile("drainlog.txt");
+        CRDLog log = new CRDLog(logFile, new CRDLogHeaderInterface() {
+
+            @Override
+            public String onProvideHeader() {
+
+                return expectedHeader + "\n";
+            }
+        });
+
+        try {
+
+            for (int i = 0; i < expectedEntries; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            final AtomicReference<List<File>> drained = new AtomicReference<List<File>>();
+            final CountDownLatch done = new CountDownLatch(1);
+
+            log.drain(new CRDLogDrainInterface() {
+
+                @Override
+                public void onLogDrained(List<File> logFiles) {
+
+                    drained.set(logFiles);
+                    done.countDown();
+                }
+            });
+
+            for (int i = expectedEntries; i < expectedEntries * 2; i++) {
+
+                log.info(TAG, "Log entry %d.", i);
+            }
+
+            assertTrue("drain timed out", done.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+
+            // Everything logged before the drain is in the file handed off, which is no longer the log file.
+            assertEquals("unexpected drained file count", 1, drained.get().size());
+            File drainedFile = drained.get().get(0);
+            assertFalse("log file handed off", drainedFile.equals(logFile));
+            assertEquals("drained file in another directory", logFile.getParentFile(), drainedFile.getParentFile());
+
+            String drainedContent = new String(Files.readAllBytes(drainedFile.toPath()), "UTF-8");
+            assertEquals("unexpected header count in drained file", 1, countMatches(Pattern.compile(expectedHeader, Pattern.LITERAL), drainedContent));
+            assertEquals("unexpected entry count in drained file", expectedEntries, countMatches(Pattern.compile("Log entry \\d+\\."), drainedContent));
+            assertTrue("first entry missing from drained file", drainedContent.contains("Log entry 0."));
+
+            // Everything logged after it starts the log over, with a header of its own.
+            String content = getContent(log);
+            assertEquals("unexpected header count", 1, countMatches(Pattern.compile(expectedHeader, Pattern.LITERAL), content));
+            assertEquals("unexpected entry count", expectedEntries, countMatches(Pattern.compile("Log entry \\d+\\."), content));
+            assertTrue("first entry after drain missing", content.contains("Log entry " + expectedEntries + "."));
+
+            // Draining again hands off a file of its own.
+            final AtomicReference<List<File>> drainedAgain = new AtomicReference<List<File>>();
+            final CountDownLatch doneAgain = new CountDownLatch(1);
+
+            log.drain(new CRDLogDrainInterface() {
+
+                @Override
+                public void onLogDrained(List<File> logFiles) {
+
+                    drainedAgain.set(logFiles);
+                    doneAgain.countDown();
+                }
+            });
+
+            assertTrue("drain timed out", doneAgain.await(DEFAULT_TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+            assertEquals("unexpected drained file count", 1, drainedAgain.get().size());
+            assertFalse("drained file reused", drainedAgain.get().get(0).equals(drainedFile));
+            assertTrue("earlier drained file removed", drainedFile.exists());
+            assertNull("log not empty after drain", getContent(log));
+
+        } finally {
+
+            log.close();
+        }
+    }
+
+    //endregion
+}
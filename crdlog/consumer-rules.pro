@@ -0,0 +1,4 @@
+# The default console of the log on Android is loaded by name, so keep it for apps that shrink their code.
+-keep class com.chrisdisdero.crdlog.CRDLogAndroidConsole {
+    public <init>();
+}
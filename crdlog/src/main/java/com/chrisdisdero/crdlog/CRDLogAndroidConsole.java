@@ -0,0 +1,100 @@
+package com.chrisdisdero.crdlog;
+
+import android.util.Log;
+
+/**
+ * Class that prints the messages logged by {@link CRDLog} to logcat with the corresponding android.util.Log method.
+ *
+ * This is the default console of the log on Android, found by {@link CRDLog} when this Android adapter of the
+ * library is on the class path, so apps don't need to set it.
+ *
+ * @author cdisdero
+ *
+ *
+Copyright © 2017 Christopher Disdero.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+public class CRDLogAndroidConsole implements CRDLogConsole {
+
+    //region CRDLogConsole
+
+    /**
+     * Prints a message to logcat.  When a throwable was logged, it is passed to android.util.Log, which prints its
+     * stack trace, rather than the message.
+     *
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The tag of the message.
+     * @param message The message, or the stack trace of the throwable if one was logged.
+     * @param throwable The {@link Throwable} logged, or null if none.
+     *
+     * @return True if android.util.Log wrote the message.
+     */
+    @Override
+    public boolean print(CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+        return println(level, tag, message, throwable) > 0;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Writes a message to the android.util.Log method corresponding to its level.
+     *
+     * @param level The {@link CRDLogLevel} of the message.
+     * @param tag The tag of the message.
+     * @param message The message.
+     * @param throwable The {@link Throwable} logged, or null if none.
+     *
+     * @return The result of the android.util.Log method, which is positive if the message was written.
+     */
+    private static int println(CRDLogLevel level, String tag, String message, Throwable throwable) {
+
+        if (throwable != null) {
+
+            switch (level) {
+
+                case DEBUG:
+                    return Log.d(tag, "", throwable);
+
+                case INFO:
+                    return Log.i(tag, "", throwable);
+
+                case WARN:
+                    return Log.w(tag, "", throwable);
+
+                default:
+                    return Log.e(tag, "", throwable);
+            }
+        }
+
+        switch (level) {
+
+            case DEBUG:
+                return Log.d(tag, message);
+
+            case INFO:
+                return Log.i(tag, message);
+
+            case WARN:
+                return Log.w(tag, message);
+
+            default:
+                return Log.e(tag, message);
+        }
+    }
+
+    //endregion
+}